@@ -21,10 +21,6 @@
 package se.kirc.geisa;
 
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A class that implements the basics needed for consuming results. This
@@ -39,14 +35,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public abstract class AbstractResultConsumer implements Runnable {
 	/**
-	 * A queue containing all future results to process.
+	 * A queue containing all future results to process, closed when all
+	 * results are submitted.
 	 */
-	protected BlockingQueue<Future<Iterable<Map<ResultColumn, String>>>> queue;
-
-	/**
-	 * Semaphore used to determine when all results are submitted.
-	 */
-	protected AtomicBoolean done;
+	protected OrderedResultQueue queue;
 
 	/**
 	 * A list of columns used for the output header.
@@ -56,19 +48,14 @@ public abstract class AbstractResultConsumer implements Runnable {
 	/**
 	 * Sole constructor.
 	 * 
-	 * @param done
-	 *            An atomic boolean used to signal that no more entries will be
-	 *            put into the queue.
 	 * @param columns
 	 *            A list of columns to use as the output header.
 	 * @param queue
 	 *            The queue containing all future results.
 	 */
-	protected AbstractResultConsumer(AtomicBoolean done,
-			List<ResultColumn> columns,
-			BlockingQueue<Future<Iterable<Map<ResultColumn, String>>>> queue) {
+	protected AbstractResultConsumer(List<ResultColumn> columns,
+			OrderedResultQueue queue) {
 		// Store a reference to the arguments.
-		this.done = done;
 		this.columns = columns;
 		this.queue = queue;
 
@@ -0,0 +1,100 @@
+/*
+ * BatchSizer.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+/**
+ * Sizes the batches of markers submitted as one task from the measured time
+ * per marker, so that each batch takes about the same time to evaluate
+ * whatever the cost of the markers. The batches are multiples of a grain of
+ * markers, the smallest part a {@link BatchTask} is split into.
+ */
+public class BatchSizer {
+	/**
+	 * The number of markers a batch is split down to.
+	 */
+	public final static int GRAIN = 8;
+
+	/**
+	 * The time spent evaluating one batch, in nanoseconds.
+	 */
+	public final static long TARGET_DURATION = 250000000L;
+
+	/**
+	 * The largest batch.
+	 */
+	public final static int MAX_BATCH_SIZE = 1 << 16;
+
+	/**
+	 * The number of markers after which the older measurements are given half
+	 * the weight.
+	 */
+	private final static long WINDOW = 4096;
+
+	private int initial;
+	private long markers;
+	private long duration;
+
+	/**
+	 * Constructs a new sizer.
+	 * 
+	 * @param initial
+	 *            the batch size used until the first batch is measured.
+	 */
+	public BatchSizer(int initial) {
+		this.initial = round(initial);
+	}
+
+	/**
+	 * Round a batch size up to whole grains, within the limits.
+	 */
+	private static int round(long size) {
+		size = (size + GRAIN - 1) / GRAIN * GRAIN;
+		return (int) Math.max(GRAIN, Math.min(MAX_BATCH_SIZE, size));
+	}
+
+	/**
+	 * Record the time spent evaluating some markers.
+	 * 
+	 * @param markers
+	 *            the number of markers.
+	 * @param duration
+	 *            the time in nanoseconds.
+	 */
+	public synchronized void record(int markers, long duration) {
+		this.markers += markers;
+		this.duration += duration;
+		if (this.markers > WINDOW) {
+			this.markers /= 2;
+			this.duration /= 2;
+		}
+	}
+
+	/**
+	 * Get the size of the next batch.
+	 * 
+	 * @return the number of markers, a multiple of {@link #GRAIN}.
+	 */
+	public synchronized int getBatchSize() {
+		if (markers == 0)
+			return initial;
+		return round(TARGET_DURATION * markers / Math.max(1, duration));
+	}
+}
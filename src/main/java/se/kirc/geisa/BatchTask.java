@@ -0,0 +1,90 @@
+/*
+ * BatchTask.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A batch of markers evaluated on a fork/join pool. The batch is split in
+ * halves down to grains of {@link BatchSizer#GRAIN} markers, which are
+ * evaluated as a {@link Task} each, so idle workers can steal part of a batch.
+ * The grains lie at the same markers whatever the size of the batch, as long
+ * as the batches are multiples of the grain, so the results do not depend on
+ * the batch sizes.
+ */
+public class BatchTask extends RecursiveTask<List<TaskResult>> implements
+		Callable<Iterable<TaskResult>> {
+	private static final long serialVersionUID = 3346213526917804471L;
+
+	private List<TaskConfiguration> configurations;
+	private BatchSizer sizer;
+
+	/**
+	 * Constructs a new batch.
+	 * 
+	 * @param configurations
+	 *            the task configurations of the markers.
+	 * @param sizer
+	 *            the sizer recording the time spent per marker.
+	 */
+	public BatchTask(List<TaskConfiguration> configurations, BatchSizer sizer) {
+		this.configurations = configurations;
+		this.sizer = sizer;
+	}
+
+	public Iterable<TaskResult> call() {
+		return invoke();
+	}
+
+	@Override
+	protected List<TaskResult> compute() {
+		int size = configurations.size();
+		List<TaskResult> results = new ArrayList<TaskResult>();
+
+		if (size <= BatchSizer.GRAIN) {
+			long start = System.nanoTime();
+			try {
+				for (TaskResult result : new Task(configurations).call())
+					results.add(result);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			sizer.record(size, System.nanoTime() - start);
+			return results;
+		}
+
+		// Split at a whole number of grains and evaluate the first half
+		// while the second may be stolen.
+		int half = (size / BatchSizer.GRAIN + 1) / 2 * BatchSizer.GRAIN;
+		BatchTask second = new BatchTask(configurations.subList(half, size),
+				sizer);
+		second.fork();
+		results.addAll(new BatchTask(configurations.subList(0, half), sizer)
+				.compute());
+		results.addAll(second.join());
+		return results;
+	}
+}
@@ -25,17 +25,17 @@ import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Consumer implementation which outputs the results to individual files, one
@@ -69,8 +69,26 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 		"ORa_risk_factor_permutation_pvalue","ORa_risk_factor_lower_limit_permutation_pvalue", 
 		"ORa_risk_factor_higher_limit_permutation_pvalue","APP_permutation_pvalue", 
 		"NO_succeded_additive_logistic_regression","Multiplicative_interaction_term_permutation_pvalue", 
-		"NO_succeded_multiplicative_logistic_regression"
+		"NO_succeded_multiplicative_logistic_regression","NO_permutations"
 	};
+
+	/**
+	 * Get the columns read from the permutation results, unless they are
+	 * written raw.
+	 */
+	static Set<ResultColumn> getPermutationColumns() {
+		Set<ResultColumn> columns=EnumSet.of(ResultColumn.AP,ResultColumn.APP,
+				ResultColumn.MULT,ResultColumn.STABLELRA,ResultColumn.STABLELRM);
+		columns.addAll(Arrays.asList(INDEX_RESULTCOLUMN));
+		return columns;
+	}
+
+	/**
+	 * Positions of the columns deciding when a marker is retired in the
+	 * adaptive permutation mode.
+	 */
+	final static int INDEX_APP=Arrays.asList(INDEX_RESULTCOLUMN).indexOf(ResultColumn.APP);
+	final static int INDEX_MULT=Arrays.asList(INDEX_RESULTCOLUMN).indexOf(ResultColumn.MULT);
 	
 	final static String[] TotalPermutationResultColumn={
 		"Significance Limit","APP_permutation_pvalue", 
@@ -85,14 +103,52 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 	private boolean permutationOutput;
 	private boolean totalPermutationOutput;
 	private boolean negativeapp;
+	private int adaptiveLimit;
+	private RetiredMarkers retired;
+	private double screening;
+	private InteractionSchedule schedule;
+
+	/**
+	 * The original and permutation results of the markers of one interaction
+	 * marker, kept until all its results are consumed.
+	 */
+	private static class InteractionResults {
+		private String interactionMarker;
+		private List<String> markers=new ArrayList<String>();
+		private List<PermutationData[]> results=new ArrayList<PermutationData[]>();
+		// Position in markers by marker ordinal
+		private int[] index;
+		private int consumed;
+
+		private InteractionResults(String interactionMarker,int noMarkers) {
+			this.interactionMarker=interactionMarker;
+			this.index=new int[noMarkers];
+			Arrays.fill(index,-1);
+		}
+
+		private PermutationData[] add(String marker,int ordinal) {
+			PermutationData[] data=new PermutationData[INDEX_RESULTCOLUMN.length];
+			for (int i1=0; i1<data.length; i1++)
+				data[i1]=new PermutationData();
+			index[ordinal]=markers.size();
+			markers.add(marker);
+			results.add(data);
+			return data;
+		}
+
+		/**
+		 * Get the results of a marker, null if its original results are
+		 * missing.
+		 */
+		private PermutationData[] get(int ordinal) {
+			return index[ordinal]<0 ? null : results.get(index[ordinal]);
+		}
+	}
 
 	/**
 	 * Constructs a new result consumer which saves each permutation in its own
 	 * file in the provided output directory.
 	 * 
-	 * @param done
-	 *            An atomic boolean used to signal that no more entries will be
-	 *            put into the queue.
 	 * @param columns
 	 *            A list of columns to use as the output header.
 	 * @param directory
@@ -103,16 +159,24 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 	 * 			  List of significance cutoff values for permuted APP
 	 * @param MULTLimits
 	 * 			  List of significance cutoff values for permuted MULT           
+	 * @param adaptiveLimit
+	 * 			  Exceed count at which a marker is retired, 0 if disabled
+	 * @param retired
+	 * 			  The markers retired from further permutations
+	 * @param screening
+	 * 			  Score test p-value below which a marker is fully analyzed, 0 if disabled
+	 * @param schedule
+	 * 			  The submission progress of each interaction marker
 	 * @param queue
 	 *            The queue containing all future results.
 	 * @throws FileNotFoundException
 	 */
-	public FileOutputResultConsumer(AtomicBoolean signal,
-			List<ResultColumn> columns,File directory,int permutations,boolean permutationOutput,
+	public FileOutputResultConsumer(List<ResultColumn> columns,File directory,int permutations,boolean permutationOutput,
 			boolean totalPermutationOutput,boolean negativeapp,List<Double> APpLimits,List<Double> MULTLimits,int noMarkers,
-			BlockingQueue<Future<Iterable<Map<ResultColumn, String>>>> queue) {
+			int adaptiveLimit,RetiredMarkers retired,double screening,
+			InteractionSchedule schedule,OrderedResultQueue queue) {
 		// Call the parent's constructor.
-		super(signal, columns, queue);
+		super(columns, queue);
 
 		// Store a reference to the output directory.
 		this.directory = directory;
@@ -123,6 +187,10 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 		this.permutationOutput=permutationOutput;
 		this.totalPermutationOutput=totalPermutationOutput;
 		this.negativeapp=negativeapp;
+		this.adaptiveLimit=adaptiveLimit;
+		this.retired=retired;
+		this.screening=screening;
+		this.schedule=schedule;
 	}
 		
 	private double [] getTotalPermutationArray(List<Double> permutedResults, List<Double>cutoffLimits) {
@@ -137,35 +205,125 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 		return result;
 	}
 	
-	private void printResults(PrintStream out,Map<ResultColumn, String> result) {
+	/**
+	 * Format a column of a result as text.
+	 */
+	private static String format(TaskResult result,ResultColumn resultColumn) {
+		switch (resultColumn) {
+			case INTERACTION:
+				return String.valueOf(result.getInteractionMarker());
+			case CHR:
+				return String.valueOf(result.getChromosome());
+			case SNP:
+				return result.getMarker();
+			case RISK:
+				return Character.toString(result.getRiskAllele().getValue());
+			case MAJOR:
+				return Character.toString(result.getMajorAllele().getValue());
+			case MINOR:
+				return Character.toString(result.getMinorAllele().getValue());
+			case SCREEN:
+				if (Double.isNaN(result.get(resultColumn)))
+					return "NA";
+				return String.valueOf(result.get(resultColumn));
+			case STABLELRA:
+			case STABLELRM:
+				if (Double.isNaN(result.get(resultColumn)))
+					return "NA";
+				return result.isSet(resultColumn)?
+						Messages.getString("status.iteration.converging.yes"):
+						Messages.getString("status.iteration.converging.no");
+			case PERM:
+				return String.valueOf(result.getPermutation());
+			case IND00_0: case IND00_1: case IND10_0: case IND10_1:
+			case IND01_0: case IND01_1: case IND11_0: case IND11_1:
+			case RECODE:
+				return String.valueOf((int)result.get(resultColumn));
+			default:
+				return String.valueOf(result.get(resultColumn));
+		}
+	}
+	
+	/**
+	 * Check whether a column is left out of the result files.
+	 */
+	private boolean isHidden(ResultColumn resultColumn) {
+		return resultColumn==ResultColumn.PERM || resultColumn==ResultColumn.THRESHOLD ||
+				(resultColumn==ResultColumn.SCREEN && screening==0);
+	}
+	
+	/**
+	 * Check whether the full analysis of a marker was skipped by the score
+	 * test screen.
+	 */
+	private boolean isScreened(TaskResult result) {
+		return screening>0 && result.get(ResultColumn.SCREEN)>=screening;
+	}
+	
+	private void printResults(PrintStream out,TaskResult result) {
 		// Print all columns, separated by a tab delimiter. Lock the
 		// output stream while doing this, nobody should interfere.
 		synchronized (out) {
 			for (ResultColumn resultColumn : ResultColumn.values()) {
-				if (resultColumn==ResultColumn.PERM || resultColumn==ResultColumn.THRESHOLD)
+				if (isHidden(resultColumn))
 					continue;
 				if (resultColumn.ordinal()>1)
 					out.print("\t");
-				out.print(result.get(resultColumn));	
+				out.print(format(result,resultColumn));	
 			}
 			out.println();
 		}
 	}
 	
-	private void printPermutationResults(PrintStream outp,List<String>originalMarkers,
-			PermutationData[][] originalResults,String oldInteractionMarker) {
+	private void printPermutationResults(PrintStream outp,InteractionResults interaction) {
 		synchronized(outp) {
-			for (int i1=0; i1<originalMarkers.size(); i1++) {
-				outp.print(oldInteractionMarker+"\t"+originalMarkers.get(i1));
-				for (int i2=0; i2<INDEX_RESULTCOLUMN.length; i2++) {
-					outp.print("\t"+originalResults[i1][i2].PermutationPValue());
-					originalResults[i1][i2].clear();
-				}
-				outp.println();
+			for (int i1=0; i1<interaction.markers.size(); i1++) {
+				PermutationData[] data=interaction.results.get(i1);
+				outp.print(interaction.interactionMarker+"\t"+interaction.markers.get(i1));
+				int performed=data[0].getPermutations();
+				for (int i2=0; i2<INDEX_RESULTCOLUMN.length; i2++)
+					outp.print("\t"+data[i2].PermutationPValue());
+				outp.println("\t"+performed);
+				retired.remove(interaction.interactionMarker,interaction.markers.get(i1));
 			}
 		}
 	}
 
+	/**
+	 * Get the results of an interaction marker, started on its first batch.
+	 */
+	private InteractionResults getInteraction(Map<String,InteractionResults> interactions,
+			LinkedList<InteractionResults> unwritten,String interactionMarker) {
+		InteractionResults interaction=interactions.get(interactionMarker);
+		if (interaction==null) {
+			interaction=new InteractionResults(interactionMarker,noMarkers);
+			interactions.put(interactionMarker,interaction);
+			unwritten.add(interaction);
+		}
+		return interaction;
+	}
+
+	/**
+	 * Write the permutation results of the interaction markers whose results
+	 * are all consumed, in the order they were started.
+	 * 
+	 * @param all
+	 *            true to write all remaining interaction markers.
+	 */
+	private void printFinished(PrintStream outp,Map<String,InteractionResults> interactions,
+			LinkedList<InteractionResults> unwritten,boolean all) {
+		while (!unwritten.isEmpty()) {
+			InteractionResults interaction=unwritten.getFirst();
+			if (!all && !schedule.isComplete(interaction.interactionMarker,interaction.consumed))
+				break;
+			if (outp!=null)
+				printPermutationResults(outp,interaction);
+			unwritten.removeFirst();
+			interactions.remove(interaction.interactionMarker);
+			schedule.remove(interaction.interactionMarker);
+		}
+	}
+
 	/*
 	 * The runnable method for this class.
 	 */
@@ -173,28 +331,26 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 		PrintStream out=null,outp=null;
 		StringBuilder header;
 		int permutation;
-		String s1,oldInteractionMarker,interactionMarker="";
+		String s1,interactionMarker;
 
 		try {
 			// Record Max AP or TMULT per permutation. permutation=0 is original data
-			List<Double> permutedAPP=new LinkedList<Double>();
-			List<Double> permutedMult=new LinkedList<Double>();
+			List<Double> permutedAPP=new ArrayList<Double>(permutations+1);
+			List<Double> permutedMult=new ArrayList<Double>(permutations+1);
 			for (int i1=0; i1<=permutations; i1++) {
 				permutedAPP.add(MAX_P_VALUE);
 				permutedMult.add(MAX_P_VALUE);
 			}			
-			// Set the original results and permuted results
-			PermutationData[][] originalResults=new PermutationData[noMarkers][INDEX_RESULTCOLUMN.length];
-			for (int i1=0; i1<noMarkers; i1++)
-				for (int i2=0; i2<INDEX_RESULTCOLUMN.length; i2++)
-					originalResults[i1][i2]=new PermutationData();
-			List<String> originalMarkers=new LinkedList<String>();
+			// The original and permuted results of each interaction marker
+			// still receiving results.
+			Map<String,InteractionResults> interactions=new HashMap<String,InteractionResults>();
+			LinkedList<InteractionResults> unwritten=new LinkedList<InteractionResults>();
 			// Open file for results
 			s1=directory.getPath()+File.separator+"results.txt";
 			out=new PrintStream(new FileOutputStream(s1,false));
 			header=new StringBuilder();
 			for (ResultColumn resultColumn : ResultColumn.values()) {
-				if (resultColumn==ResultColumn.PERM || resultColumn==ResultColumn.THRESHOLD)
+				if (isHidden(resultColumn))
 					continue;
 				if (resultColumn.ordinal()>1)
 					header.append("\t");
@@ -210,41 +366,58 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 				outp.println();				
 			}
 			// Loop for as long as there's work to be done.
-			while (!queue.isEmpty() || !done.get()) {
-				Future<Iterable<Map<ResultColumn, String>>> future = queue.take();
-				Iterable<Map<ResultColumn, String>> results = future.get();
-				for (Map<ResultColumn, String> result : results) {
-					oldInteractionMarker=interactionMarker;
-					interactionMarker=result.get(ResultColumn.INTERACTION);
-					if (!oldInteractionMarker.equals(interactionMarker) && originalMarkers.size()>0) {
-						// Writing marker specific permuted results
-						printPermutationResults(outp,originalMarkers,originalResults,oldInteractionMarker);
-						originalMarkers.clear();					
-					}
-					permutation = Integer.valueOf(result.get(ResultColumn.PERM));
-					boolean stableAdditive=result.get(ResultColumn.STABLELRA).equals(Messages.getString("status.iteration.converging.yes"));
-					boolean stableMultiplicative=result.get(ResultColumn.STABLELRM).equals(Messages.getString("status.iteration.converging.yes"));
-					boolean noCalcNegativeAPP=!negativeapp && Double.parseDouble(result.get(ResultColumn.AP))<0;
-					String marker=result.get(ResultColumn.SNP);
+			OrderedResultQueue.SequencedTask future;
+			while ((future = queue.take()) != null) {
+				// Each batch holds the results of one interaction marker,
+				// counted as consumed even if the batch failed.
+				InteractionResults interaction=getInteraction(interactions,unwritten,
+						future.getInteractionMarker());
+				interaction.consumed++;
+				Iterable<TaskResult> results;
+				try {
+					results = future.get();
+				} catch (ExecutionException e) {
+					// A failed batch is reported and its results left out.
+					e.printStackTrace();
+					printFinished(outp,interactions,unwritten,false);
+					continue;
+				}
+				for (TaskResult result : results) {
+					interactionMarker=result.getInteractionMarker();
+					permutation = result.getPermutation();
+					String marker=result.getMarker();
+					// Results already submitted for a retired marker are disregarded.
+					if (permutation>0 && retired.isRetired(interactionMarker,marker))
+						continue;
+					boolean stableAdditive=result.isSet(ResultColumn.STABLELRA);
+					boolean stableMultiplicative=result.isSet(ResultColumn.STABLELRM);
+					boolean noCalcNegativeAPP=!negativeapp && result.get(ResultColumn.AP)<0;
 					if (stableAdditive && !noCalcNegativeAPP) {
-						double d1=Double.parseDouble(result.get(ResultColumn.APP));
+						double d1=result.get(ResultColumn.APP);
 						permutedAPP.set(permutation,Math.min(d1, permutedAPP.get(permutation)));
 					}
 					if (stableMultiplicative) {
-						double d1=Double.parseDouble(result.get(ResultColumn.MULT));
+						double d1=result.get(ResultColumn.MULT);
 						permutedMult.set(permutation,Math.min(d1, permutedMult.get(permutation)));
 					}
 					if (permutation==0) {
 						printResults(out,result);
 						if (permutations==0)
 							continue;
-						originalMarkers.add(marker);
+						PermutationData[] original=interaction.add(marker,result.getMarkerIndex());
+						// A screened marker has no original results to compare
+						// with. It is retired at once in the adaptive mode.
+						if (isScreened(result)) {
+							if (adaptiveLimit>0)
+								retired.retire(interactionMarker,marker);
+							continue;
+						}
 						for (int i1=0; i1<INDEX_RESULTCOLUMN.length; i1++) {
 							if (INDEX_RESULTCOLUMN[i1]==ResultColumn.STABLELRA ||
 									INDEX_RESULTCOLUMN[i1]==ResultColumn.STABLELRM)
-								originalResults[originalMarkers.size()-1][i1].setDefaultConvergenceThreshold(Double.parseDouble(result.get(ResultColumn.THRESHOLD)));
+								original[i1].setDefaultConvergenceThreshold(result.get(ResultColumn.THRESHOLD));
 							else
-								originalResults[originalMarkers.size()-1][i1].setValue(result.get(INDEX_RESULTCOLUMN[i1]));
+								original[i1].setValue(result.get(INDEX_RESULTCOLUMN[i1]));
 						}
 						continue;
 					}	
@@ -258,17 +431,26 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 						printResults(outp2,result);
 						outp2.close();
 					}
-					int index=originalMarkers.indexOf(marker);
+					// The permutations of a marker whose original batch failed
+					// are left out.
+					PermutationData[] original=interaction.get(result.getMarkerIndex());
+					if (original==null)
+						continue;
 					for (int i1=0; i1<INDEX_RESULTCOLUMN.length; i1++)
-						originalResults[index][i1].setPositivePermutation(result.get(INDEX_RESULTCOLUMN[i1]),
+						original[i1].setPositivePermutation(result.get(INDEX_RESULTCOLUMN[i1]),
 								stableAdditive,stableMultiplicative,INDEX_RESULTCOLUMN[i1],noCalcNegativeAPP);
+					// Retire the marker once both its APP and MULT p-values are
+					// clearly non-significant, or could not be compared at all.
+					if (adaptiveLimit>0 && original[INDEX_APP].isSettled(adaptiveLimit) &&
+							original[INDEX_MULT].isSettled(adaptiveLimit))
+						retired.retire(interactionMarker,marker);
 					
 				}
+				printFinished(outp,interactions,unwritten,false);
 			}
 			out.close();
+			printFinished(outp,interactions,unwritten,true);
 			if (permutations>0) {
-				printPermutationResults(outp,originalMarkers,originalResults,interactionMarker);
-				originalMarkers.clear();	
 				outp.close();		
 				// Writing lowest permutation results for each permutation
 				if (totalPermutationOutput) {
@@ -280,6 +462,13 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 					}
 					outp.close();
 				}
+				// The minima of the permutations are not taken over all
+				// markers in the adaptive mode, and are not reported.
+				if (adaptiveLimit>0)
+					System.err.println(String.format(Messages.getString("status.output.adaptive"),
+							Calendar.getInstance()));
+			}
+			if (permutations>0 && adaptiveLimit==0) {
 				// Calculating Total permuted results
 				APpLimits.add(permutedAPP.get(0));
 				MULTLimits.add(permutedMult.get(0));
@@ -311,9 +500,6 @@ public class FileOutputResultConsumer extends AbstractResultConsumer {
 		} catch (InterruptedException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
-		} catch (ExecutionException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		} catch (FileNotFoundException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -27,38 +27,51 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
 import java.util.StringTokenizer;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 
 import se.kirc.geisa.conf.Configuration;
+import se.kirc.geisa.count.IndividualMasks;
 import se.kirc.geisa.data.plink.AbstractDataSet;
 import se.kirc.geisa.data.plink.AffectionStatus;
 import se.kirc.geisa.data.plink.DataSet;
 import se.kirc.geisa.data.plink.DataSetReader;
 import se.kirc.geisa.data.plink.DataSetReaderFactory;
 import se.kirc.geisa.data.plink.Genotype;
-import se.kirc.geisa.data.plink.Sex;
+import se.kirc.geisa.data.plink.MarkerSelection;
 import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.store.AbstractDataStore;
 import se.kirc.geisa.data.store.DataStore;
 import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.DataStoreType;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.IndividualTable;
+import se.kirc.geisa.data.store.MarkerCatalog;
+import se.kirc.geisa.data.store.file.DataStoreSnapshot;
+import se.kirc.geisa.data.store.file.MappedBedDataStore;
 import se.kirc.geisa.data.store.file.MarkerOrderedFileDataStore;
+import se.kirc.geisa.data.store.file.StreamingBedDataStore;
 import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
+import se.kirc.geisa.data.store.memory.SegmentedMemoryDataStore;
+import se.kirc.geisa.remote.Coordinator;
+import se.kirc.geisa.remote.Protocol;
+import se.kirc.geisa.remote.Worker;
 
 /**
  * The main class in the application (driver).
@@ -77,15 +90,21 @@ public class Geisa {
 	private Configuration configuration;
 
 	/**
-	 * Random number generator used for permutations.
+	 * Generator of the permutations.
 	 */
-	private Random random;
+	private PermutationGenerator generator;
 
 	/**
 	 * The executor service (thread pool).
 	 */
 	private ExecutorService executor;
 
+	/**
+	 * The coordinator handing the tasks to remote workers, null if the
+	 * tasks are run locally.
+	 */
+	private Coordinator coordinator;
+
 	/**
 	 * Constructs a new Geisa class with the given configuration.
 	 * 
@@ -93,6 +112,16 @@ public class Geisa {
 	 */
 	private List<Double> APpLimits=new LinkedList<Double>();
 	private List<Double> MULTLimits=new LinkedList<Double>();
+
+	/**
+	 * Markers retired from further permutations in the adaptive mode.
+	 */
+	private RetiredMarkers retired=new RetiredMarkers();
+
+	/**
+	 * The submission progress of each interaction marker.
+	 */
+	private InteractionSchedule schedule=new InteractionSchedule();
 	
 	public Geisa(Configuration configuration) {
 		// Store a reference to the configuration.
@@ -202,14 +231,81 @@ public class Geisa {
 		br.close();
 	}
 	
-	private DataStore getDataStore(DataSet dataSet) throws IOException {
+	/**
+	 * Get the selection of markers to load from the regions and the extract
+	 * file. The interaction markers of a marker file are always loaded.
+	 * 
+	 * @return the selection, or null if all markers are loaded.
+	 */
+	private MarkerSelection getMarkerSelection(List<String> interactionMarkers)
+			throws IOException {
+		if (configuration.getRegions() == null
+				&& configuration.getExtractFile() == null)
+			return null;
+
+		MarkerSelection selection = new MarkerSelection();
+
+		if (configuration.getRegions() != null)
+			selection.addRegions(configuration.getRegions());
+		if (configuration.getExtractFile() != null) {
+			List<String> ids = new ArrayList<String>();
+			BufferedReader br = new BufferedReader(new FileReader(
+					configuration.getExtractFile()));
+			String s1;
+
+			while ((s1 = br.readLine()) != null) {
+				if (s1.trim().length() == 0)
+					continue;
+				ids.add(new StringTokenizer(s1).nextToken());
+			}
+			br.close();
+			selection.addExtract(ids);
+		}
+		if (configuration.getMarkerFile() != null)
+			for (String interactionMarker : interactionMarkers)
+				selection.addRequired(interactionMarker);
+		return selection;
+	}
+
+	private DataStore getDataStore(DataSet dataSet, MarkerSelection selection)
+			throws IOException {
 		DataStore store = null;
+		File snapshot = configuration.getSnapshotFile();
+		byte[] hash = null;
+
+		// Map the snapshot of the same input files, if there is one.
+		if (snapshot != null) {
+			if (!(dataSet instanceof BinaryDataSet))
+				throw new IOException(
+						"Only a binary data set can have a snapshot.");
+
+			BinaryDataSet binary = (BinaryDataSet) dataSet;
+
+			// A selection is identified by its regions and files.
+			hash = DataStoreSnapshot.hash(selection == null ? null
+					: configuration.getRegionsText(), binary.getBEDFile(),
+					binary.getBIMFile(), binary.getFAMFile(),
+					binary.getInteractionFile(),
+					selection == null ? null : configuration.getExtractFile(),
+					selection == null ? null : configuration.getMarkerFile());
+			store = DataStoreSnapshot.open(snapshot, hash);
+			if (store != null) {
+				System.err.println(String.format(
+						Messages.getString("info.snapshot.open"), snapshot));
+				return store;
+			}
+		}
 
 		// Get the corresponding data set reader, then load the individuals and
 		// markers.
 		DataSetReader reader = DataSetReaderFactory.createDataSetReader(dataSet);
+		reader.setMarkerSelection(selection);
 		Collection<IndividualEntry> individuals = reader.loadIndividuals();
-		Collection<MarkerEntry> markers = reader.loadMarkers();
+		MarkerCatalog markers = reader.loadMarkers();
+		if (selection != null)
+			System.err.println(String.format(
+					Messages.getString("info.selection"), markers.getSize(),
+					markers.getRowCount()));
 
 		// Create a data store based on our preferences. We always use marker
 		// ordered data stores.
@@ -217,13 +313,53 @@ public class Geisa {
 			case FILE:
 				store = new MarkerOrderedFileDataStore(individuals, markers);
 				break;
+			case OFFHEAP:
+				store = new SegmentedMemoryDataStore(individuals, markers);
+				break;
+			case MAPPED:
+				// The genotypes are viewed directly in the BED file.
+				if (!(dataSet instanceof BinaryDataSet))
+					throw new IOException(
+							"Only a binary data set can be memory mapped.");
+				store = new MappedBedDataStore(individuals, markers,
+						((BinaryDataSet) dataSet).getBEDFile());
+				break;
+			case STREAM:
+				// The rows are read from the BED file as they are scheduled.
+				if (!(dataSet instanceof BinaryDataSet))
+					throw new IOException(
+							"Only a binary data set can be streamed.");
+				store = new StreamingBedDataStore(individuals, markers,
+						((BinaryDataSet) dataSet).getBEDFile());
+				break;
 			default:
 				store = new MarkerOrderedMemoryDataStore(individuals, markers);
 		}
 
 		// Populate the data store with interaction data and genotypes.
 		reader.loadInteractionData(store);
-		reader.loadGenotypes(store);
+		if (configuration.getDataStoreType() != DataStoreType.MAPPED
+				&& configuration.getDataStoreType() != DataStoreType.STREAM) {
+			long start = System.nanoTime();
+
+			reader.setThreads(configuration.getWorkers());
+			reader.loadGenotypes(store);
+
+			// Report the load throughput.
+			double seconds = (System.nanoTime() - start) / 1e9;
+			double megabytes = ((individuals.size() - 1) / AbstractDataStore.GENOTYPE_DENSITY + 1)
+					* (double) markers.getSize() / (1 << 20);
+
+			System.err.println(String.format(Messages.getString("info.load"),
+					markers.getSize(), megabytes, seconds, megabytes / seconds));
+		}
+
+		// Write a snapshot for the next run.
+		if (snapshot != null) {
+			DataStoreSnapshot.write(snapshot, hash, store);
+			System.err.println(String.format(
+					Messages.getString("info.snapshot.write"), snapshot));
+		}
 
 		return store;
 	}
@@ -231,21 +367,23 @@ public class Geisa {
 	/**
 	 * Get the correct result consumer as specified by the configuration.
 	 * 
-	 * @param done
-	 *            AtomicBoolean signaling when the execution is done.
+	 * @param queue
+	 *            the queue of future results, closed when the execution is
+	 *            done.
 	 * @return a {@link Runnable} result consumer.
 	 */
-	private Runnable getResultConsumer(AtomicBoolean done,
-			BlockingQueue<Future<Iterable<Map<ResultColumn, String>>>> queue,int noMarkers) {
+	private Runnable getResultConsumer(OrderedResultQueue queue,int noMarkers) {
 		Runnable consumer;
 
 		// create a file output result consumer which splits each
 		// permutation into its own file.
-		consumer = new FileOutputResultConsumer(done,
+		consumer = new FileOutputResultConsumer(
 				configuration.getColumns(),configuration.getOutputDirectory(),
 				configuration.getPermutations(),configuration.getPermutationOutput(),
 				configuration.getTotalPermutationOutput(),
-				configuration.getNegativeAPP(),APpLimits,MULTLimits,noMarkers,queue);
+				configuration.getNegativeAPP(),APpLimits,MULTLimits,noMarkers,
+				configuration.getAdaptiveLimit(),retired,configuration.getScreening(),
+				schedule,queue);
 		return consumer;
 	}
 	
@@ -259,6 +397,232 @@ public class Geisa {
 				throw new IOException(String.format(Messages.getString("options.error.nodelete"),f1.getName()));
 		return fileExists;
 	}
+	/**
+	 * Wait for all the given tasks to complete. Failed tasks are reported by
+	 * the result consumer.
+	 * 
+	 * @param futures
+	 *            the tasks.
+	 * @throws InterruptedException
+	 */
+	private void awaitAll(List<Future<Iterable<TaskResult>>> futures)
+			throws InterruptedException {
+		for (Future<Iterable<TaskResult>> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// Reported by the consumer.
+			}
+		}
+	}
+
+	/**
+	 * The permutation sweep of one interaction marker.
+	 */
+	private class InteractionSweep {
+		private String interactionMarker;
+		private byte[] interactions;
+		private WarmStarts warmStarts;
+		/**
+		 * The tasks of the original data, awaited before the permutations
+		 * start from their estimates.
+		 */
+		private List<Future<Iterable<TaskResult>>> originals;
+
+		/**
+		 * The markers still receiving permutations.
+		 */
+		private int[] active;
+
+		/**
+		 * The next permutation to submit.
+		 */
+		private int next;
+
+		private InteractionSweep(String interactionMarker, byte[] interactions,
+				int markers) {
+			this.interactionMarker = interactionMarker;
+			this.interactions = interactions;
+			// The warm starts are local to the process, and are not used
+			// with remote workers. With fork/join the batch boundaries
+			// depend on timing, so only the estimates of the same marker
+			// are used.
+			if (configuration.getWarmStart() && coordinator == null) {
+				warmStarts = new WarmStarts(markers,
+						!configuration.getForkJoin());
+				originals = new ArrayList<Future<Iterable<TaskResult>>>();
+			}
+			active = new int[markers];
+			for (int m = 0; m < markers; ++m)
+				active[m] = m;
+		}
+	}
+
+	/**
+	 * Get the interaction variables of an interaction marker. With a marker
+	 * file they are derived from the genotypes of the interaction marker,
+	 * otherwise they are those of the interaction file.
+	 * 
+	 * @return the interaction variables, -1 if missing.
+	 * @throws IOException
+	 *             if a read error occurs.
+	 */
+	private byte[] getInteractionVariables(DataStore dataStore,
+			IndividualTable individuals, String interactionMarker)
+			throws IOException {
+		byte[] affectionStatus = individuals.getAffectionStatus();
+		byte[] interactions = individuals.getInteractionVariables();
+		MarkerCatalog markers = dataStore.getMarkers();
+
+		// Replace the interaction variables if marker file present. Interaction from PED
+		if (configuration.getMarkerFile()!=null) { 
+			interactions = new byte[individuals.getSize()];
+			Arrays.fill(interactions, (byte) IndividualMasks.MISSING_INTERACTION);
+			DataStoreEntry entry=dataStore.getEntry(markers.getIndex(interactionMarker));
+			Iterator<Genotype> genit = entry.iterator();
+			float[] alleles = new float[4];
+			int offset;
+			for (int i = 0; genit.hasNext(); ++i) {
+				Genotype genotype = genit.next();
+				offset=(affectionStatus[i]==AffectionStatus.AFFECTED.getValue()?Task.INDEX_CASE_PRIMARY:Task.INDEX_CONTROL_PRIMARY);
+				switch (genotype) {
+					case HOMOZYGOTE_PRIMARY:
+						alleles[offset]+=2;
+						break;
+					case HOMOZYGOTE_SECONDARY:
+						alleles[offset+1]+=2;
+						break;			
+					case HETEROZYGOTE:
+						alleles[offset+1]++;
+						alleles[offset]++;
+						break;
+				}
+			}
+			float ratioRiskAllelePrimary=alleles[Task.INDEX_CASE_PRIMARY]/alleles[Task.INDEX_CONTROL_PRIMARY];
+			float ratioRiskAlleleSecondary=alleles[Task.INDEX_CASE_SECONDARY]/alleles[Task.INDEX_CONTROL_SECONDARY];
+			Genotype riskHomozygoteGenotype=(ratioRiskAllelePrimary>ratioRiskAlleleSecondary?Genotype.HOMOZYGOTE_PRIMARY:Genotype.HOMOZYGOTE_SECONDARY);
+			int interactionVariable;
+			int individual = 0;
+			for (Genotype genotype : entry) {
+				interactionVariable=-1;
+				switch (genotype) {
+					case HETEROZYGOTE:
+						interactionVariable=(configuration.getModelType()==ModelType.DOMINANT?1:0);
+						break;
+					case HOMOZYGOTE_PRIMARY:
+						interactionVariable=(riskHomozygoteGenotype==Genotype.HOMOZYGOTE_PRIMARY?1:0);
+						break;
+					case HOMOZYGOTE_SECONDARY:
+						interactionVariable=(riskHomozygoteGenotype==Genotype.HOMOZYGOTE_SECONDARY?1:0);
+						break;
+				}
+				interactions[individual++] = (byte) interactionVariable;
+			}
+		}
+		return interactions;
+	}
+
+	/**
+	 * Submit the next permutation block of an interaction marker. The
+	 * original data is analyzed on its own first, so that all the original
+	 * results are consumed before any permuted ones. The permutations are
+	 * then evaluated in blocks, where each task performs all permutations of
+	 * the block for its markers.
+	 * 
+	 * @return false if all permutations of the interaction marker are
+	 *         submitted.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the queue.
+	 */
+	private boolean submitBlock(InteractionSweep sweep, DataStore dataStore,
+			IndividualTable individuals, Map<Integer, ShuffledStatuses> shared,
+			OrderedResultQueue queue, BatchSizer sizer)
+			throws InterruptedException {
+		int permutations = configuration.getPermutations();
+		int p = sweep.next;
+
+		if (p > permutations)
+			return false;
+		// The permutations are started from the original estimates,
+		// which all have to be recorded first.
+		if (p > 0 && sweep.originals != null) {
+			awaitAll(sweep.originals);
+			sweep.originals = null;
+		}
+		// Only schedule the markers still receiving permutations.
+		if (configuration.getAdaptiveLimit() > 0 && p > 0) {
+			int remaining = 0;
+			for (int marker : sweep.active)
+				if (!retired.isRetired(sweep.interactionMarker, dataStore.getMarkers().getId(marker)))
+					sweep.active[remaining++] = marker;
+			sweep.active = Arrays.copyOf(sweep.active, remaining);
+			if (sweep.active.length == 0)
+				return false;
+		}
+		int block = (p == 0 ? 1 : Math.min(
+				configuration.getPermutationBlock(), permutations - p + 1));
+
+		for (int k = 0; k < block; ++k) {
+			String msg1;
+			if (p + k == 0)
+				msg1 = String.format(
+						Messages.getString("status.original.calculation.begin"),
+						Calendar.getInstance());
+			else
+				msg1 = String.format(
+					Messages.getString("status.iteration.begin"),
+					Calendar.getInstance(), p + k, permutations);
+			System.err.println(msg1);
+		}
+		// The shuffled affection statuses are generated by the workers and
+		// shared by all markers in the block, and with shared permutations
+		// by all interaction markers.
+		ShuffledStatuses statuses;
+		if (shared == null)
+			statuses = new ShuffledStatuses(generator,
+					PermutationGenerator.stream(sweep.interactionMarker), p,
+					block, individuals.getAffectionStatus());
+		else {
+			statuses = shared.get(p);
+			if (statuses == null) {
+				statuses = new ShuffledStatuses(generator,
+						PermutationGenerator.SHARED_STREAM, p, block,
+						individuals.getAffectionStatus());
+				shared.put(p, statuses);
+			}
+		}
+		PermutationBlock permutationBlock = new PermutationBlock(statuses,
+				individuals, sweep.interactions);
+		// The parameters shared by all markers of the block. The
+		// genotypes are read by the workers.
+		TaskContext context = new TaskContext(dataStore,
+				sweep.interactionMarker, permutationBlock,
+				configuration.getCutOff(), configuration.getModelType(),
+				configuration.getIteration(), configuration.getThreshold(),
+				sweep.warmStarts, configuration.getScreening());
+
+		// Split the markers into batches.
+		int[] active = sweep.active;
+		int next = 0;
+		while (next < active.length) {
+			int batchSize = (sizer == null ? configuration.getBatchSize() : sizer.getBatchSize());
+			List<TaskConfiguration> configs = new ArrayList<TaskConfiguration>(batchSize);
+			for (int i = 0; i < batchSize && next < active.length; ++i)
+				configs.add(new TaskConfiguration(context, active[next++]));
+			Callable<Iterable<TaskResult>> task = (sizer == null ? new Task(
+					configs) : new BatchTask(configs, sizer));
+			if (coordinator != null)
+				task = coordinator.remote(task);
+			Future<Iterable<TaskResult>> future = queue.submit(task,
+					sweep.interactionMarker);
+			schedule.submit(sweep.interactionMarker);
+			if (p == 0 && sweep.originals != null)
+				sweep.originals.add(future);
+		}
+		sweep.next = p + block;
+		return true;
+	}
+
 	/**
 	 * The main method of this class.
 	 * 
@@ -268,8 +632,6 @@ public class Geisa {
 	 *             if the program is interrupted.
 	 */
 	public void run() throws IOException, InterruptedException {
-		AtomicBoolean done = new AtomicBoolean(false);
-
 		// Print some information message.
 		System.err.println("Geisa version: "+getPOMProjectVersion());
 		System.err.println(Messages.getString("info.header"));
@@ -280,12 +642,25 @@ public class Geisa {
 		System.err.println(String.format(Messages.getString("info.header.limit"),configuration.getLimitFileText()));
 		System.err.println(String.format(Messages.getString("info.header.outputdir"),configuration.getOutputDirectory()));
 		System.err.println(String.format(Messages.getString("info.header.permutations"),configuration.getPermutations()));
+		System.err.println(String.format(Messages.getString("info.header.permutationblock"),configuration.getPermutationBlock()));
+		System.err.println(String.format(Messages.getString("info.header.permutationadaptive"),configuration.getAdaptiveLimit()));
 		System.err.println(String.format(Messages.getString("info.header.modeltype"),configuration.getModelType().toString()));
 		System.err.println(String.format(Messages.getString("info.header.seed"),configuration.getSeed()));
 		System.err.println(String.format(Messages.getString("info.header.threads"),configuration.getWorkers()));
+		System.err.println(String.format(Messages.getString("info.header.forkjoin"),configuration.getForkJoin()));
+		System.err.println(String.format(Messages.getString("info.header.listen"),configuration.getListenPortText()));
+		System.err.println(String.format(Messages.getString("info.header.remotekey"),configuration.getRemoteKeyFileText()));
+		System.err.println(String.format(Messages.getString("info.header.workertimeout"),configuration.getWorkerTimeout()));
+		System.err.println(String.format(Messages.getString("info.header.interactionwindow"),configuration.getInteractionWindow()));
+		System.err.println(String.format(Messages.getString("info.header.sharedpermutations"),configuration.getSharedPermutations()));
 		System.err.println(String.format(Messages.getString("info.header.cutoff"),configuration.getCutOff()));
 		System.err.println(String.format(Messages.getString("info.header.iteration"),configuration.getIteration()));
 		System.err.println(String.format(Messages.getString("info.header.threshold"),configuration.getThreshold()));
+		System.err.println(String.format(Messages.getString("info.header.warmstart"),configuration.getWarmStart()));
+		System.err.println(String.format(Messages.getString("info.header.screening"),configuration.getScreening()));
+		System.err.println(String.format(Messages.getString("info.header.snapshot"),configuration.getSnapshotFileText()));
+		System.err.println(String.format(Messages.getString("info.header.region"),configuration.getRegionsText()));
+		System.err.println(String.format(Messages.getString("info.header.extract"),configuration.getExtractFileText()));
 		
 		// Deleting previous result files
 		DeleteResultFile("results.txt");
@@ -302,166 +677,155 @@ public class Geisa {
 		out.println(String.format(Messages.getString("info.header.marker"),configuration.getMarkerFileText()));
 		out.println(String.format(Messages.getString("info.header.limit"),configuration.getLimitFileText()));
 		out.println(String.format(Messages.getString("info.header.permutations"),configuration.getPermutations()));
+		out.println(String.format(Messages.getString("info.header.permutationadaptive"),configuration.getAdaptiveLimit()));
 		out.println(String.format(Messages.getString("info.header.modeltype"),configuration.getModelType().toString()));
 		out.println(String.format(Messages.getString("info.header.seed"),configuration.getSeed()));
 		out.println(String.format(Messages.getString("info.header.threads"),configuration.getWorkers()));
+		out.println(String.format(Messages.getString("info.header.forkjoin"),configuration.getForkJoin()));
+		out.println(String.format(Messages.getString("info.header.listen"),configuration.getListenPortText()));
+		out.println(String.format(Messages.getString("info.header.remotekey"),configuration.getRemoteKeyFileText()));
+		out.println(String.format(Messages.getString("info.header.workertimeout"),configuration.getWorkerTimeout()));
+		out.println(String.format(Messages.getString("info.header.interactionwindow"),configuration.getInteractionWindow()));
+		out.println(String.format(Messages.getString("info.header.sharedpermutations"),configuration.getSharedPermutations()));
 		out.println(String.format(Messages.getString("info.header.cutoff"),configuration.getCutOff()));
 		out.println(String.format(Messages.getString("info.header.iteration"),configuration.getIteration()));
 		out.println(String.format(Messages.getString("info.header.threshold"),configuration.getThreshold()));
+		out.println(String.format(Messages.getString("info.header.warmstart"),configuration.getWarmStart()));
+		out.println(String.format(Messages.getString("info.header.screening"),configuration.getScreening()));
+		out.println(String.format(Messages.getString("info.header.snapshot"),configuration.getSnapshotFileText()));
+		out.println(String.format(Messages.getString("info.header.region"),configuration.getRegionsText()));
+		out.println(String.format(Messages.getString("info.header.extract"),configuration.getExtractFileText()));
 		out.close();
 		// We assume that the configuration is sane. It should've passed
 		// validation by now. Get the data set and all interactionmarkers
 		AbstractDataSet dataSet = getDataSet();
-		DataStore dataStore = getDataStore(dataSet);
+		List<String> interactionMarkers=getInteractionMarkers(dataSet);
+		DataStore dataStore = getDataStore(dataSet,
+				getMarkerSelection(interactionMarkers));
 		if (!dataStore.isVariablePresentInInteractionFile() && configuration.getMarkerFile()==null)
 			throw new IOException(String.format(Messages.getString("options.error.missinginteractionvariables")));		
 					
-		List<String> interactionMarkers=getInteractionMarkers(dataSet);
+		MarkerCatalog markers = dataStore.getMarkers();
 		getSignificanceLimits(configuration.getLimitFile());
-		// Get the set of markers that are used in the analysis
+		// Check wether interactionmarkers are present in the dataset
 		if (configuration.getMarkerFile()!=null) {
-			List<String> allMarkers=new LinkedList<String>();
-			for (MarkerEntry markerEntry : dataStore.getMarkers().values())
-				allMarkers.add(markerEntry.getId());
-			// Check wether interactionmarkers are present in the dataset
 			for (String interactionMarker : interactionMarkers)
-				if (!allMarkers.contains(interactionMarker))
+				if (markers.getIndex(interactionMarker) < 0)
 					throw new IOException(String.format(Messages.getString("options.error.missinginteractionmarker"),interactionMarker));		
 		}
-		// Executor service with a fixed number of worker threads.
-		executor = Executors.newFixedThreadPool(configuration.getWorkers() + 1);
+		// Executor service with a fixed number of worker threads, or a
+		// work-stealing pool where the batches are sized from their
+		// measured duration and split among the idle workers.
+		// With a coordinator the tasks are run by the remote workers, and
+		// the local threads only wait for their results.
+		BatchSizer sizer = null;
+		if (configuration.getListenPort() > 0) {
+			// Of the permutation results only the columns read by the
+			// consumer are sent back, unless they are written raw.
+			coordinator = new Coordinator(configuration.getListenAddress(),
+					configuration.getListenPort(),
+					Protocol.readKey(configuration.getRemoteKeyFile()),
+					dataStore, configuration.getPermutationOutput() ? null
+							: FileOutputResultConsumer.getPermutationColumns(),
+					configuration.getWorkerTimeout() * 1000L);
+			executor = Executors.newCachedThreadPool();
+			System.err.println(String.format(
+					Messages.getString("status.remote.listen"),
+					Calendar.getInstance(), coordinator.getPort()));
+		} else if (configuration.getForkJoin()) {
+			executor = new ForkJoinPool(configuration.getWorkers());
+			sizer = new BatchSizer(configuration.getBatchSize());
+		} else
+			executor = Executors.newFixedThreadPool(configuration.getWorkers() + 1);
 		
-		// Create a job queue.
-		LinkedBlockingQueue<Future<Iterable<Map<ResultColumn, String>>>> queue = new LinkedBlockingQueue<Future<Iterable<Map<ResultColumn, String>>>>(
+		// Create a job queue. The results are collected as the tasks
+		// complete and consumed in submission order; a slow task holds
+		// back the output, not the submission.
+		OrderedResultQueue queue = new OrderedResultQueue(executor,
 				configuration.getQueueSize());
 
 		// Create a consumer and start it.
-		Thread consumer = new Thread(getResultConsumer(done, queue,dataStore.getMarkers().values().size()));
+		Thread consumer = new Thread(getResultConsumer(queue,markers.getSize()));
 		consumer.start();
 
-		// Generate a list of affection statuses and interaction variables.
-		List<AffectionStatus> originalAffectionStatus = new LinkedList<AffectionStatus>();
-		List<Integer> interactionVariables = new LinkedList<Integer>();
-		List<List<Float>> covariates = new LinkedList<List<Float>>();
-		List<Sex> sexes = new LinkedList<Sex>();
-		for (IndividualEntry entry : dataStore.getIndividuals().values()) {
-				originalAffectionStatus.add(entry.getAffectionStatus());
-				interactionVariables.add(entry.getInteractionVariable());
-				sexes.add(entry.getSex());
-				if (entry.getCovariate()!=null)
-					if (entry.getCovariate().size()>0)
-						covariates.add(entry.getCovariate());
-		}
-		ModelType modelType = configuration.getModelType();
+		// The columns of the individuals.
+		IndividualTable individuals = new IndividualTable(dataStore.getIndividuals().values());
 
-		// Perform all permutations.
-		int permutations = configuration.getPermutations();
-		int cutoff = configuration.getCutOff();
-		// Iterate through all unique interaction Markers
-		for (String interactionMarker : interactionMarkers) {
-			// Initiate random for every Interaction Marker
-			random = new Random(configuration.getSeed());
-			List<AffectionStatus> affectionStatus = new LinkedList<AffectionStatus>(originalAffectionStatus);
-			
-			// Empty all interaction variables if marker file present. Interaction from PED
-			if (configuration.getMarkerFile()!=null) { 
-				interactionVariables.clear();
-				MarkerEntry markerEntry=dataStore.getMarkers().get(interactionMarker);
-				int index=dataStore.getMarkerIndex(markerEntry);
-				DataStoreEntry entry=dataStore.getEntry(index);
-				Iterator<Genotype> genit = entry.iterator();
-				Iterator<AffectionStatus> affit = affectionStatus.iterator();
-				float[] alleles = new float[4];
-				int offset;
-				while (genit.hasNext()) {
-					Genotype genotype = genit.next();
-					AffectionStatus status = affit.next();	
-					offset=(status==AffectionStatus.AFFECTED?Task.INDEX_CASE_PRIMARY:Task.INDEX_CONTROL_PRIMARY);
-					switch (genotype) {
-						case HOMOZYGOTE_PRIMARY:
-							alleles[offset]+=2;
-							break;
-						case HOMOZYGOTE_SECONDARY:
-							alleles[offset+1]+=2;
-							break;			
-						case HETEROZYGOTE:
-							alleles[offset+1]++;
-							alleles[offset]++;
-							break;
-					}
-				}
-				float ratioRiskAllelePrimary=alleles[Task.INDEX_CASE_PRIMARY]/alleles[Task.INDEX_CONTROL_PRIMARY];
-				float ratioRiskAlleleSecondary=alleles[Task.INDEX_CASE_SECONDARY]/alleles[Task.INDEX_CONTROL_SECONDARY];
-				Genotype riskHomozygoteGenotype=(ratioRiskAllelePrimary>ratioRiskAlleleSecondary?Genotype.HOMOZYGOTE_PRIMARY:Genotype.HOMOZYGOTE_SECONDARY);
-				int interactionVariable;
-				for (Genotype genotype : entry) {
-					interactionVariable=-1;
-					switch (genotype) {
-						case HETEROZYGOTE:
-							interactionVariable=(configuration.getModelType()==ModelType.DOMINANT?1:0);
-							break;
-						case HOMOZYGOTE_PRIMARY:
-							interactionVariable=(riskHomozygoteGenotype==Genotype.HOMOZYGOTE_PRIMARY?1:0);
-							break;
-						case HOMOZYGOTE_SECONDARY:
-							interactionVariable=(riskHomozygoteGenotype==Genotype.HOMOZYGOTE_SECONDARY?1:0);
-							break;
-					}
-					interactionVariables.add(interactionVariable);
+		// The interaction variables of all interaction markers are derived
+		// once up front.
+		Map<String, byte[]> interactions = new HashMap<String, byte[]>();
+		for (String interactionMarker : interactionMarkers)
+			interactions.put(interactionMarker, getInteractionVariables(
+					dataStore, individuals, interactionMarker));
+
+		// Perform all permutations. A window of interaction markers is
+		// analysed at the same time, each submitting one permutation block
+		// in turn. The original data of the interaction markers is still
+		// submitted in the order of the marker file.
+		generator = new PermutationGenerator(configuration.getSeed());
+		Map<Integer, ShuffledStatuses> shared = null;
+		if (configuration.getSharedPermutations())
+			shared = new LinkedHashMap<Integer, ShuffledStatuses>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Integer, ShuffledStatuses> eldest) {
+					return size() > 2 * configuration.getInteractionWindow();
 				}
+			};
+		LinkedList<String> waiting = new LinkedList<String>(interactionMarkers);
+		List<InteractionSweep> sweeps = new LinkedList<InteractionSweep>();
+		// A coordinator without workers fails its tasks, and nothing more
+		// is submitted.
+		while ((!waiting.isEmpty() || !sweeps.isEmpty())
+				&& (coordinator == null || coordinator.getFailure() == null)) {
+			while (sweeps.size() < configuration.getInteractionWindow() && !waiting.isEmpty()) {
+				String interactionMarker = waiting.removeFirst();
+				String msg = String.format(Messages.getString("status.interactionmarker.begin"),interactionMarker);
+				System.err.println(msg);
+				sweeps.add(new InteractionSweep(interactionMarker,
+						interactions.remove(interactionMarker), markers.getSize()));
 			}
-			String msg = String.format(Messages.getString("status.interactionmarker.begin"),interactionMarker);
-			System.err.println(msg);
-			
-			for (int p = 0; p <= permutations; ++p) {
-				String msg1;
-				if (p==0)
-					msg1 = String.format(
-							Messages.getString("status.original.calculation.begin"),
-							Calendar.getInstance());
-				else
-					msg1 = String.format(
-						Messages.getString("status.iteration.begin"),
-						Calendar.getInstance(), p, permutations);
-				System.err.println(msg1);
-	
-				// List containing all task configurations to be performed per
-				// batch.
-				Iterator<MarkerEntry> it = dataStore.getMarkers().values().iterator();
-				List<TaskConfiguration> configs = null;
-	
-				while (it.hasNext()) {
-					configs = new LinkedList<TaskConfiguration>();
-					// Split into batches.
-					for (int i = 0; i < configuration.getBatchSize() && it.hasNext(); ++i) {
-						MarkerEntry marker = it.next();
-						int index = dataStore.getMarkerIndex(marker);
-						DataStoreEntry entry = dataStore.getEntry(index);
-						List<Integer>variables=new LinkedList<Integer>(interactionVariables);
-						TaskConfiguration config = new TaskConfiguration(
-								marker.getChromosome(), marker.getId(), interactionMarker, entry,
-								sexes, affectionStatus, variables, covariates,
-								marker.getFirstAllele(), marker.getSecondAllele(),
-								p, cutoff, modelType,
-								configuration.getIteration(),configuration.getThreshold());
-	
-						// Add the config to the list.
-						configs.add(config);
-					}
-					if (configs.size()>0) {
-						// Call the producer and add the future to both queues. If empty skip=No Selected markers
-						Future<Iterable<Map<ResultColumn, String>>> future = executor.submit(new Task(configs));
-						queue.put(future);
-					}
+			for (Iterator<InteractionSweep> it = sweeps.iterator(); it.hasNext(); ) {
+				InteractionSweep sweep = it.next();
+				if (!submitBlock(sweep, dataStore, individuals, shared, queue, sizer)) {
+					schedule.complete(sweep.interactionMarker);
+					it.remove();
 				}
-	
-				// Randomize all the affection statuses.
-				affectionStatus = new LinkedList<AffectionStatus>(affectionStatus);
-				Collections.shuffle(affectionStatus, random);
 			}
 		}
 		// Signal that the execution is complete.
-		done.set(true);
+		queue.close();
 		executor.shutdown();
+		if (coordinator != null) {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			coordinator.close();
+			if (coordinator.getFailure() != null)
+				throw coordinator.getFailure();
+		}
+	}
+
+	/**
+	 * Work for a remote coordinator on the same data set.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occours or the coordinator rejects the data
+	 *             set.
+	 * @throws InterruptedException
+	 *             if the program is interrupted.
+	 */
+	public void work() throws IOException, InterruptedException {
+		AbstractDataSet dataSet = getDataSet();
+		DataStore dataStore = getDataStore(dataSet,
+				getMarkerSelection(getInteractionMarkers(dataSet)));
+
+		System.err.println(String.format(
+				Messages.getString("status.remote.worker"),
+				Calendar.getInstance(), configuration.getCoordinator()));
+		new Worker(dataStore, configuration.getWorkers(),
+				Protocol.readKey(configuration.getRemoteKeyFile())).run(
+				configuration.getCoordinatorHost(),
+				configuration.getCoordinatorPort());
 	}
 }
@@ -0,0 +1,78 @@
+/*
+ * InteractionSchedule.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The progress of the submission of the tasks of each interaction marker. The
+ * scheduler in {@link Geisa} records every task it submits and when the last
+ * one of an interaction marker is submitted, so the result consumer knows
+ * when all results of an interaction marker are in.
+ */
+public class InteractionSchedule {
+	private Map<String, Integer> submitted = new HashMap<String, Integer>();
+	private Set<String> complete = new HashSet<String>();
+
+	/**
+	 * Record a task submitted for an interaction marker.
+	 */
+	public synchronized void submit(String interactionMarker) {
+		Integer count = submitted.get(interactionMarker);
+
+		submitted.put(interactionMarker, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Record that no more tasks are submitted for an interaction marker.
+	 */
+	public synchronized void complete(String interactionMarker) {
+		complete.add(interactionMarker);
+	}
+
+	/**
+	 * Check whether all tasks of an interaction marker are consumed.
+	 * 
+	 * @param interactionMarker
+	 *            the interaction marker.
+	 * @param consumed
+	 *            the number of its tasks consumed.
+	 * @return true if no more tasks will follow.
+	 */
+	public synchronized boolean isComplete(String interactionMarker,
+			int consumed) {
+		if (!complete.contains(interactionMarker))
+			return false;
+		Integer count = submitted.get(interactionMarker);
+		return consumed == (count == null ? 0 : count);
+	}
+
+	/**
+	 * Forget an interaction marker once all its results are written.
+	 */
+	public synchronized void remove(String interactionMarker) {
+		submitted.remove(interactionMarker);
+		complete.remove(interactionMarker);
+	}
+}
@@ -87,6 +87,9 @@ public class Main {
 
 		// Hand over program control to the Geisa component.
 		Geisa geisa = new Geisa(configuration);
-		geisa.run();
+		if (configuration.getCoordinator() != null)
+			geisa.work();
+		else
+			geisa.run();
 	}
 }
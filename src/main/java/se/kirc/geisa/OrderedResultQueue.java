@@ -0,0 +1,217 @@
+/*
+ * OrderedResultQueue.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The results of the submitted tasks, collected as the tasks complete and
+ * taken in the order the tasks were submitted. A completed task waits in a
+ * reorder buffer until all tasks submitted before it are taken. At most a
+ * fixed number of tasks are running at a time, counted until they complete,
+ * so a slow task holds back the output but not the submission of new tasks.
+ * The tasks submitted but not yet taken, including the reorder buffer, are
+ * bounded by a larger number, after which a submission blocks.
+ */
+public class OrderedResultQueue {
+	/**
+	 * A task tagged with its sequence number and interaction marker,
+	 * announcing itself when done.
+	 */
+	public class SequencedTask extends FutureTask<Iterable<TaskResult>> {
+		private long sequence;
+		private String interactionMarker;
+
+		private SequencedTask(Callable<Iterable<TaskResult>> task,
+				long sequence, String interactionMarker) {
+			super(task);
+			this.sequence = sequence;
+			this.interactionMarker = interactionMarker;
+		}
+
+		/**
+		 * Get the interaction marker of the task, which is known even if
+		 * the task failed.
+		 * 
+		 * @return the interaction marker, or null if not given.
+		 */
+		public String getInteractionMarker() {
+			return interactionMarker;
+		}
+
+		@Override
+		protected void done() {
+			running.release();
+			completed.add(this);
+		}
+	}
+
+	/**
+	 * The number of tasks which may be submitted but not yet taken, for
+	 * each task which may be running.
+	 */
+	public final static int REORDER_FACTOR = 4;
+
+	private Executor executor;
+
+	/**
+	 * The tasks which may be submitted but not yet completed.
+	 */
+	private Semaphore running;
+
+	/**
+	 * The tasks which may be submitted but not yet taken.
+	 */
+	private Semaphore window;
+
+	/**
+	 * The tasks in completion order, and the queue itself once it is closed.
+	 */
+	private BlockingQueue<Object> completed = new LinkedBlockingQueue<Object>();
+
+	/**
+	 * The completed tasks waiting for an earlier task, by sequence number.
+	 * Only used by the taking thread.
+	 */
+	private Map<Long, SequencedTask> buffer = new HashMap<Long, SequencedTask>();
+
+	private long submitted;
+	private long taken;
+	private volatile long total = -1;
+
+	/**
+	 * Constructs a new queue with a reorder buffer of
+	 * {@link #REORDER_FACTOR} times the capacity.
+	 * 
+	 * @param executor
+	 *            the executor running the tasks.
+	 * @param capacity
+	 *            the number of tasks which may be submitted but not yet
+	 *            completed.
+	 */
+	public OrderedResultQueue(Executor executor, int capacity) {
+		this(executor, capacity, REORDER_FACTOR * capacity);
+	}
+
+	/**
+	 * Constructs a new queue.
+	 * 
+	 * @param executor
+	 *            the executor running the tasks.
+	 * @param capacity
+	 *            the number of tasks which may be submitted but not yet
+	 *            completed.
+	 * @param window
+	 *            the number of tasks which may be submitted but not yet
+	 *            taken, at least the capacity.
+	 */
+	public OrderedResultQueue(Executor executor, int capacity, int window) {
+		if (window < capacity)
+			throw new IllegalArgumentException("window < capacity");
+
+		this.executor = executor;
+		this.running = new Semaphore(capacity);
+		this.window = new Semaphore(window);
+	}
+
+	/**
+	 * Submit a task, waiting while the queue is full. Only one thread may
+	 * submit tasks.
+	 * 
+	 * @param task
+	 *            the task.
+	 * @return the future result of the task.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public Future<Iterable<TaskResult>> submit(
+			Callable<Iterable<TaskResult>> task) throws InterruptedException {
+		return submit(task, null);
+	}
+
+	/**
+	 * Submit a task of an interaction marker, waiting while the queue is
+	 * full. Only one thread may submit tasks.
+	 * 
+	 * @param task
+	 *            the task.
+	 * @param interactionMarker
+	 *            the interaction marker of the task.
+	 * @return the future result of the task.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public Future<Iterable<TaskResult>> submit(
+			Callable<Iterable<TaskResult>> task, String interactionMarker)
+			throws InterruptedException {
+		window.acquire();
+		running.acquire();
+		SequencedTask sequenced = new SequencedTask(task, submitted++,
+				interactionMarker);
+		executor.execute(sequenced);
+		return sequenced;
+	}
+
+	/**
+	 * Signal that no more tasks will be submitted.
+	 */
+	public void close() {
+		total = submitted;
+		completed.add(this);
+	}
+
+	/**
+	 * Take the next task in submission order, waiting for it to complete.
+	 * 
+	 * @return the completed task, or null if the queue is closed and all tasks
+	 *         are taken.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public SequencedTask take() throws InterruptedException {
+		while (true) {
+			SequencedTask next = buffer.remove(taken);
+
+			if (next != null) {
+				++taken;
+				window.release();
+				return next;
+			}
+			if (taken == total)
+				return null;
+
+			// Buffer tasks until the next one completes.
+			Object task = completed.take();
+			if (task instanceof SequencedTask) {
+				SequencedTask sequenced = (SequencedTask) task;
+				buffer.put(sequenced.sequence, sequenced);
+			}
+		}
+	}
+}
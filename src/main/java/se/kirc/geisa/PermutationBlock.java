@@ -0,0 +1,137 @@
+/*
+ * PermutationBlock.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.io.Serializable;
+
+import se.kirc.geisa.count.IndividualMasks;
+import se.kirc.geisa.data.store.IndividualTable;
+
+/**
+ * A block of consecutive permutations of one interaction marker. The block
+ * only holds the original individual data and the shuffled affection
+ * statuses, which may be shared with other interaction markers; the masks are
+ * generated by the first worker asking for them and then shared by all tasks
+ * of the block.
+ */
+public class PermutationBlock implements Serializable {
+	private static final long serialVersionUID = -4735526061911842740L;
+
+	private ShuffledStatuses statuses;
+	private IndividualTable individuals;
+	private byte[] interactionVariables;
+
+	/**
+	 * The masks of each permutation, generated on first use.
+	 */
+	private transient IndividualMasks[] masks;
+
+	/**
+	 * The score test null models of each permutation, fitted on first use.
+	 */
+	private transient ScoreScreen[] screens;
+
+	/**
+	 * Constructs a new {@link PermutationBlock}.
+	 *
+	 * @param statuses
+	 *            the shuffled affection statuses of the block.
+	 * @param individuals
+	 *            the individuals with their original affection statuses.
+	 * @param interactionVariables
+	 *            the interaction variables of the interaction marker, -1 if
+	 *            missing.
+	 */
+	public PermutationBlock(ShuffledStatuses statuses,
+			IndividualTable individuals, byte[] interactionVariables) {
+		this.statuses = statuses;
+		this.individuals = individuals;
+		this.interactionVariables = interactionVariables;
+	}
+
+	/**
+	 * Get the individuals.
+	 */
+	public IndividualTable getIndividuals() {
+		return individuals;
+	}
+
+	/**
+	 * Get the first permutation of the block.
+	 */
+	public int getFirst() {
+		return statuses.getFirst();
+	}
+
+	/**
+	 * Get the number of permutations in the block.
+	 */
+	public int getSize() {
+		return statuses.getSize();
+	}
+
+	/**
+	 * Get the affection status, interaction variable and sex masks of each
+	 * permutation in the block, starting with {@link #getFirst()}.
+	 *
+	 * @return the individual masks.
+	 */
+	public synchronized IndividualMasks[] getMasks() {
+		if (masks == null) {
+			byte[][] shuffled = statuses.getStatuses();
+			IndividualMasks[] result = new IndividualMasks[shuffled.length];
+
+			for (int k = 0; k < shuffled.length; ++k)
+				result[k] = new IndividualMasks(shuffled[k],
+						interactionVariables, individuals.getSexes());
+			masks = result;
+		}
+
+		return masks;
+	}
+
+	/**
+	 * Get the score test null model of each permutation in the block,
+	 * starting with {@link #getFirst()}. The covariates of the individuals are
+	 * the same for all markers of the block.
+	 *
+	 * @param iterations
+	 *            the maximum number of iterations of the null fits.
+	 * @param threshold
+	 *            the convergence threshold of the null fits.
+	 * @return the null models.
+	 */
+	public synchronized ScoreScreen[] getScreens(int iterations,
+			double threshold) {
+		if (screens == null) {
+			IndividualMasks[] masks = getMasks();
+			ScoreScreen[] result = new ScoreScreen[masks.length];
+
+			for (int k = 0; k < masks.length; ++k)
+				result[k] = new ScoreScreen(masks[k],
+						individuals.getCovariates(),
+						individuals.getCovariateCount(), iterations, threshold);
+			screens = result;
+		}
+
+		return screens;
+	}
+}
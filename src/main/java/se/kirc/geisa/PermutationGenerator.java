@@ -0,0 +1,164 @@
+/*
+ * PermutationGenerator.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counter based generator of permutations. Permutation k of a stream is
+ * derived directly from (seed, stream, k) with a SplitMix64 generator and a
+ * Fisher-Yates shuffle, so permutations can be generated in any order, by any
+ * thread or on any node, and always come out the same. Permutation 0 is the
+ * identity, i.e. the original data.
+ */
+public class PermutationGenerator implements Serializable {
+	private static final long serialVersionUID = 2890443261127154309L;
+
+	private final static long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * The stream used by all interaction markers when they share their
+	 * permutations.
+	 */
+	public final static long SHARED_STREAM = 0;
+
+	private long seed;
+
+	/**
+	 * Constructs a new generator.
+	 *
+	 * @param seed
+	 *            the seed shared by all streams.
+	 */
+	public PermutationGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Get the stream of a name, e.g. an interaction marker. The hash of a
+	 * string is the same on every JVM.
+	 *
+	 * @param name
+	 *            the name of the stream.
+	 * @return the stream.
+	 */
+	public static long stream(String name) {
+		return mix(name.hashCode());
+	}
+
+	/**
+	 * The SplitMix64 finalizer.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Get permutation k of the stream as an index array, where position i of
+	 * the permuted data holds the original position permutation[i].
+	 *
+	 * @param stream
+	 *            the stream.
+	 * @param k
+	 *            the permutation number.
+	 * @param size
+	 *            the number of elements.
+	 * @return the permutation.
+	 */
+	public int[] permutation(long stream, int k, int size) {
+		int[] permutation = new int[size];
+
+		for (int i = 0; i < size; ++i)
+			permutation[i] = i;
+		if (k == 0)
+			return permutation;
+
+		long state = mix(mix(mix(seed) ^ stream) ^ k);
+
+		// Fisher-Yates shuffle.
+		for (int i = size - 1; i > 0; --i) {
+			int bound = i + 1;
+			int j;
+
+			// Unbiased bounded integer, as in java.util.Random.nextInt(int).
+			do {
+				state += GOLDEN_GAMMA;
+				int r = (int) (mix(state) >>> 33);
+
+				j = r % bound;
+				if (r - j + (bound - 1) >= 0)
+					break;
+			} while (true);
+
+			int swap = permutation[i];
+			permutation[i] = permutation[j];
+			permutation[j] = swap;
+		}
+
+		return permutation;
+	}
+
+	/**
+	 * Get permutation k of the stream applied to a list.
+	 *
+	 * @param values
+	 *            the original values.
+	 * @param stream
+	 *            the stream.
+	 * @param k
+	 *            the permutation number.
+	 * @return a new list with the permuted values.
+	 */
+	public <T> List<T> permute(List<T> values, long stream, int k) {
+		int[] permutation = permutation(stream, k, values.size());
+		List<T> result = new ArrayList<T>(values.size());
+
+		for (int i = 0; i < permutation.length; ++i)
+			result.add(values.get(permutation[i]));
+
+		return result;
+	}
+
+	/**
+	 * Get permutation k of the stream applied to an array.
+	 *
+	 * @param values
+	 *            the original values.
+	 * @param stream
+	 *            the stream.
+	 * @param k
+	 *            the permutation number.
+	 * @return a new array with the permuted values.
+	 */
+	public byte[] permute(byte[] values, long stream, int k) {
+		int[] permutation = permutation(stream, k, values.length);
+		byte[] result = new byte[values.length];
+
+		for (int i = 0; i < permutation.length; ++i)
+			result[i] = values[permutation[i]];
+
+		return result;
+	}
+}
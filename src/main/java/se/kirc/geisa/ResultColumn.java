@@ -40,7 +40,7 @@ public enum ResultColumn {
 	IND00_1("No_cases_test_0_risk_0"), IND10_1("No_cases_test_1_risk_0"), IND10_0("No_controls_test_1_risk_0"), 
 	IND01_1("No_cases_test_0_risk_1"), IND01_0("No_controls_test_0_risk_1"), IND11_1("No_cases_test_1_risk_1"), 
 	IND11_0("No_controls_test_1_risk_1"), MINOR("Test_marker_minor_allele"), MAJOR("Test_marker_major_allele"), RISK("Test_marker_risk_allele"), 
-	RECODE("recode_code"),THRESHOLD("Temporary_threshold");
+	RECODE("recode_code"),SCREEN("Screening_pvalue"),THRESHOLD("Temporary_threshold");
 
 	/**
 	 * The key for the enum instance.
@@ -0,0 +1,57 @@
+/*
+ * RetiredMarkers.java
+ * Copyright (C) 2011-2012  KIRC
+ * 
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ * 
+ * GEISA is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License as published by the Free Software 
+ * Foundation; either version 2 of the License, or (at your option) any later 
+ * version.
+ * 
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation, 
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The markers that no longer receive permutations in the adaptive permutation
+ * mode, per interaction marker. The result consumer retires the markers and
+ * the scheduler in {@link Geisa} only submits the markers still active.
+ */
+public class RetiredMarkers {
+	private Set<String> markers = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private static String key(String interactionMarker, String marker) {
+		return interactionMarker + "\t" + marker;
+	}
+
+	/**
+	 * Stop the permutations of a marker.
+	 */
+	public void retire(String interactionMarker, String marker) {
+		markers.add(key(interactionMarker, marker));
+	}
+
+	public boolean isRetired(String interactionMarker, String marker) {
+		return markers.contains(key(interactionMarker, marker));
+	}
+
+	/**
+	 * Forget a marker once all its results are written.
+	 */
+	public void remove(String interactionMarker, String marker) {
+		markers.remove(key(interactionMarker, marker));
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * ScoreScreen.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.distribution.ChiSquaredDistributionImpl;
+
+import se.kirc.geisa.count.Bits;
+import se.kirc.geisa.count.IndividualMasks;
+import se.kirc.math.regression.FastLogisticRegression;
+import se.kirc.math.regression.LogisticRegressionConfiguration;
+
+/**
+ * Score (Rao) test of the interaction term of a test marker, used to screen
+ * out clearly null markers before the full logistic regressions. The null
+ * model holds the interaction variable and the covariates and is fitted once
+ * per interaction marker and permutation. The main effect of the test marker
+ * is not estimated but projected out of the score of the interaction term
+ * (Neyman's C(alpha) test), so the statistic of a marker is calculated in a
+ * single pass over the individuals carrying the risk factor.
+ * 
+ * Individuals with an unknown genotype of the test marker are kept in the
+ * null model, and the projection is exact to first order in the main effect,
+ * so the p-value approximates the multiplicative interaction p-value. It is
+ * only used to decide which markers are clearly null.
+ */
+public class ScoreScreen {
+	private final static double SINGULARITY_THRESHOLD = 1e-11;
+
+	private final static ChiSquaredDistributionImpl chisq = new ChiSquaredDistributionImpl(1);
+
+	private double[] covariates;
+	private int covariateLength;
+	private int individuals;
+	private long[] envPresent;
+	private long[] included;
+
+	/**
+	 * Residual y - p and weight p(1 - p) of each individual in the null model.
+	 */
+	private double[] residual;
+	private double[] weight;
+
+	/**
+	 * The inverse of the information matrix of the null model (intercept,
+	 * interaction variable and covariates), or null if the fit failed.
+	 */
+	private double[] inverse;
+	private int size;
+
+	/**
+	 * Fits the null model of a permutation.
+	 * 
+	 * @param masks
+	 *            the individual masks of the permutation.
+	 * @param covariates
+	 *            the covariates, one column per covariate.
+	 * @param covariateLength
+	 *            the number of covariates.
+	 * @param iterations
+	 *            the maximum number of iterations of the fit.
+	 * @param threshold
+	 *            the convergence threshold of the fit.
+	 */
+	public ScoreScreen(IndividualMasks masks, double[] covariates,
+			int covariateLength, int iterations, double threshold) {
+		int individuals = masks.getSize();
+		int columns = 1 + covariateLength;
+		long[] known = masks.getKnown();
+		long[] cases = masks.getCases();
+
+		this.covariates = covariates;
+		this.individuals = individuals;
+		this.covariateLength = covariateLength;
+		this.envPresent = masks.getEnvPresent(false);
+		this.included = new long[known.length];
+		this.size = columns + 1;
+
+		// Individuals with an unknown covariate are left out, as in the full
+		// models.
+		double[] x = new double[individuals * columns];
+		double[] y = new double[individuals];
+		int rows = 0;
+
+		for (int w = 0; w < known.length; ++w) {
+			for (long bits = known[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int row = rows * columns;
+				boolean complete = true;
+
+				x[row] = Bits.get(envPresent, i) ? 1 : 0;
+				for (int j = 0; j < covariateLength; ++j) {
+					double covar = covariates[j * individuals + i];
+
+					if (Double.isNaN(covar))
+						complete = false;
+					x[row + 1 + j] = covar;
+				}
+				if (complete) {
+					Bits.set(included, i);
+					y[rows++] = Bits.get(cases, i) ? 1 : 0;
+				}
+			}
+		}
+
+		LogisticRegressionConfiguration config = new LogisticRegressionConfiguration();
+
+		config.setXData(x, rows, columns);
+		config.setYData(y);
+		config.setBetaData(new double[size]);
+		config.setIterations(iterations);
+		config.setConvergenceThreshold(threshold);
+
+		FastLogisticRegression regression = new FastLogisticRegression(config);
+
+		if (!(regression.getDifference() <= threshold))
+			return;
+
+		residual = new double[individuals];
+		weight = new double[individuals];
+		for (int w = 0; w < included.length; ++w) {
+			for (long bits = included[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				double z = regression.getBeta(0) + regression.getBeta(1)
+						* (Bits.get(envPresent, i) ? 1 : 0);
+
+				for (int j = 0; j < covariateLength; ++j)
+					z += regression.getBeta(2 + j)
+							* covariates[j * individuals + i];
+
+				double p = 1 / (1 + Math.exp(-z));
+
+				residual[i] = (Bits.get(cases, i) ? 1 : 0) - p;
+				weight[i] = p * (1 - p);
+			}
+		}
+
+		double[] result = new double[size * size];
+
+		for (int a = 0; a < size; ++a)
+			for (int b = 0; b < size; ++b) {
+				result[a * size + b] = regression.getVarianceCovariance(a, b);
+				if (Double.isNaN(result[a * size + b])
+						|| Double.isInfinite(result[a * size + b]))
+					return;
+			}
+		inverse = result;
+	}
+
+	/**
+	 * Get the p-value of the score statistic of the interaction term of a
+	 * test marker.
+	 * 
+	 * @param risk
+	 *            the individuals carrying the risk factor.
+	 * @return the p-value, or NaN if it is not available.
+	 * @throws MathException
+	 *             if the distribution cannot be evaluated.
+	 */
+	public double getPValue(long[] risk) throws MathException {
+		if (inverse == null)
+			return Double.NaN;
+
+		// Score, information and cross information with the null model of
+		// the risk factor (1) and the interaction term (2). The interaction
+		// term is a subset of the risk factor, so their cross information is
+		// the information of the interaction term.
+		double[] cross1 = new double[size];
+		double[] cross2 = new double[size];
+		double score1 = 0;
+		double score2 = 0;
+		double information1 = 0;
+		double information2 = 0;
+
+		for (int w = 0; w < risk.length; ++w) {
+			for (long bits = risk[w] & included[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				boolean exposed = Bits.get(envPresent, i);
+
+				score1 += residual[i];
+				information1 += weight[i];
+				if (exposed) {
+					score2 += residual[i];
+					information2 += weight[i];
+				}
+				for (int j = 0; j < covariateLength; ++j) {
+					double value = weight[i]
+							* covariates[j * individuals + i];
+
+					cross1[2 + j] += value;
+					if (exposed)
+						cross2[2 + j] += value;
+				}
+			}
+		}
+		cross1[0] = information1;
+		cross1[1] = information2;
+		cross2[0] = information2;
+		cross2[1] = information2;
+
+		// The information of the two terms adjusted for the null model.
+		double i11 = information1 - product(cross1, cross1);
+		double i12 = information2 - product(cross1, cross2);
+		double i22 = information2 - product(cross2, cross2);
+
+		// The score of the interaction term adjusted for the risk factor, and
+		// its variance.
+		double variance = i22 - i12 * i12 / i11;
+
+		if (!(variance > SINGULARITY_THRESHOLD * i22))
+			return Double.NaN;
+
+		double effective = score2 - i12 / i11 * score1;
+
+		return 1 - chisq.cumulativeProbability(effective * effective
+				/ variance);
+	}
+
+	/**
+	 * a' inverse b.
+	 */
+	private double product(double[] a, double[] b) {
+		double result = 0;
+
+		for (int k = 0; k < size; ++k) {
+			double row = 0;
+
+			for (int l = 0; l < size; ++l)
+				row += inverse[k * size + l] * b[l];
+			result += a[k] * row;
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * ShuffledStatuses.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.io.Serializable;
+
+/**
+ * The shuffled affection statuses of a block of consecutive permutations of
+ * one permutation stream. The statuses are generated by the first worker
+ * asking for them. They do not depend on the interaction marker, so the
+ * blocks of all interaction markers sharing a stream may share them.
+ */
+public class ShuffledStatuses implements Serializable {
+	private static final long serialVersionUID = 6302190148391659413L;
+
+	private PermutationGenerator generator;
+	private long stream;
+	private int first;
+	private int size;
+	private byte[] affectionStatus;
+
+	/**
+	 * The statuses of each permutation, generated on first use.
+	 */
+	private transient byte[][] statuses;
+
+	/**
+	 * Constructs a new {@link ShuffledStatuses}.
+	 *
+	 * @param generator
+	 *            the permutation generator.
+	 * @param stream
+	 *            the permutation stream.
+	 * @param first
+	 *            the first permutation of the block, 0 being the original
+	 *            data.
+	 * @param size
+	 *            the number of permutations in the block.
+	 * @param affectionStatus
+	 *            the original affection statuses.
+	 */
+	public ShuffledStatuses(PermutationGenerator generator, long stream,
+			int first, int size, byte[] affectionStatus) {
+		this.generator = generator;
+		this.stream = stream;
+		this.first = first;
+		this.size = size;
+		this.affectionStatus = affectionStatus;
+	}
+
+	/**
+	 * Get the first permutation of the block.
+	 */
+	public int getFirst() {
+		return first;
+	}
+
+	/**
+	 * Get the number of permutations in the block.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get the affection statuses of each permutation in the block, starting
+	 * with {@link #getFirst()}.
+	 *
+	 * @return the shuffled statuses.
+	 */
+	public synchronized byte[][] getStatuses() {
+		if (statuses == null) {
+			byte[][] result = new byte[size][];
+
+			for (int k = 0; k < size; ++k)
+				result[k] = generator.permute(affectionStatus, stream, first
+						+ k);
+			statuses = result;
+		}
+
+		return statuses;
+	}
+}
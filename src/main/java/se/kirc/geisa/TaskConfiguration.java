@@ -20,13 +20,12 @@
  */
 package se.kirc.geisa;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.List;
 
-import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.count.IndividualMasks;
 import se.kirc.geisa.data.plink.Allele;
 import se.kirc.geisa.data.plink.Genotype;
-import se.kirc.geisa.data.plink.Sex;
 
 /**
  * 
@@ -40,156 +39,61 @@ public class TaskConfiguration implements Serializable {
 	private static final long serialVersionUID = -9107471386157450509L;
 
 	/**
-	 * An iterable containing all the genotypes.
+	 * The parameters shared by all markers of the interaction marker and
+	 * block of permutations.
 	 */
-	private Iterable<Genotype> genotypes;
+	private TaskContext context;
 
 	/**
-	 * An iterable containing all the affection statuses (i.e. case/control).
+	 * The ordinal of the marker.
 	 */
-	private Iterable<Sex> sexes;
-	
-	private Iterable<AffectionStatus> affectionStatus;
+	private int marker;
 
 	/**
-	 * An iterable containing all the interaction variables.
-	 */
-	private Iterable<Integer> interactionVariables;
-
-	/**
-	 * The primary allele.
-	 */
-	private Allele primaryAllele;
-
-	/**
-	 * The secondary allele.
-	 */
-	private Allele secondaryAllele;
-
-	/**
-	 * An iterable containing the covariates. Support for multiple covariates is
-	 * a planned feature for a future release.
-	 */
-	private Iterable<List<Float>> covariates;
-
-	/**
-	 * The number of permutations to perform.
-	 */
-	private int permutation;
-
-	/**
-	 * The chromosome.
-	 */
-	private String chromosome;
-
-	/**
-	 * The name of the marker.
-	 */
-	private String marker;
-	/**
-	 * The name of the interaction marker.
-	 */
-	private String interactionMarker;
-	/**
-	 * The cut off value for each bin.
-	 */
-	private int cutoff;
-
-	/**
-	 * The model type used.
-	 */
-	private ModelType modelType;
-
-	private int iteration;
-	// the max number of logstic regression iterations
-	
-	private double threshold;
-	// the min number of logstic regression stable threshold
-	
-	/**
-	 * Constructs a new {@link TaskConfiguration} with the specified parameters.
+	 * Constructs a new {@link TaskConfiguration} of one marker.
 	 * 
-	 * @param chromosome
-	 *            the name of the chromosome.
+	 * @param context
+	 *            the shared parameters.
 	 * @param marker
-	 *            the name of the marker.
-	 * @param interactionmarker
-	 *            the name of the interactionmarker.
-	 * @param genotypes
-	 *            all the genotypes.
-	 * @param affectionStatus
-	 *            all the affection statuses.
-	 * @param interactionVariables
-	 *            all the interaction variables.
-	 * @param covariates
-	 *            all the covariates.
-	 * @param primaryAllele
-	 *            the primary {@link Allele}.
-	 * @param secondaryAllele
-	 *            the secondary {@link Allele}.
-	 * @param permutation
-	 *            the number of permutations to perform.
-	 * @param cutoff
-	 *            the cutoff value for the individual bins.
-	 * @param modelType
-	 *            the {@link ModelType} to use (e.g. DOMINANT).
+	 *            the ordinal of the marker.
 	 */
-	public TaskConfiguration(String chromosome, String marker, String interactionMarker,
-			Iterable<Genotype> genotypes,
-			Iterable<Sex> sexes,
-			Iterable<AffectionStatus> affectionStatus,
-			Iterable<Integer> interactionVariables,
-			Iterable<List<Float>> covariates, Allele primaryAllele,
-			Allele secondaryAllele, int permutation, int cutoff,
-			ModelType modelType,
-			int Iteration, double threshold) {
-		// Set all the supplied parameters.
-		this.chromosome = chromosome;
+	public TaskConfiguration(TaskContext context, int marker) {
+		this.context = context;
 		this.marker = marker;
-		this.interactionMarker=interactionMarker;
-		this.genotypes = genotypes;
-		this.sexes = sexes;
-		this.affectionStatus = affectionStatus;
-		this.primaryAllele = primaryAllele;
-		this.secondaryAllele = secondaryAllele;
-		this.interactionVariables = interactionVariables;
-		this.covariates = covariates;
-		this.permutation = permutation;
-		this.cutoff = cutoff;
-		this.modelType = modelType;
-		this.iteration = Iteration;
-		this.threshold = threshold;
 	}
 
 	/**
-	 * Get all the genotypes.
+	 * Get all the genotypes, read from the data store.
 	 * 
 	 * @return all the genotypes.
+	 * @throws IOException
+	 *             if a read error occurs.
 	 */
-	public Iterable<Genotype> getGenotypes() {
-		return genotypes;
+	public Iterable<Genotype> getGenotypes() throws IOException {
+		return context.getGenotypes(marker);
 	}
 
 	/**
-	 * Get all the affection statuses.
+	 * Announce that the genotypes from this marker to the given one are read
+	 * next, so that a file is read once for all of them.
 	 * 
-	 * @return the affection statuses.
+	 * @param last
+	 *            the ordinal of the last marker.
+	 * @throws IOException
+	 *             if a read error occurs.
 	 */
-	public Iterable<Sex> getSex() {
-		return sexes;
-	}
-	
-	public Iterable<AffectionStatus> getAffectionStatus() {
-		return affectionStatus;
+	public void prefetchGenotypes(int last) throws IOException {
+		context.prefetch(marker, last);
 	}
 
 	/**
-	 * Get the interaction variables.
+	 * Get the affection status, interaction variable and sex masks of each
+	 * permutation in the block, starting with {@link #getPermutation()}.
 	 * 
-	 * @return the interaction variables.
+	 * @return the individual masks.
 	 */
-	public Iterable<Integer> getInteractionVariables() {
-		return interactionVariables;
+	public IndividualMasks[] getMasks() {
+		return context.getBlock().getMasks();
 	}
 
 	/**
@@ -198,7 +102,7 @@ public class TaskConfiguration implements Serializable {
 	 * @return the primary allele.
 	 */
 	public Allele getPrimaryAllele() {
-		return primaryAllele;
+		return context.getMarkers().getFirstAllele(marker);
 	}
 
 	/**
@@ -207,25 +111,44 @@ public class TaskConfiguration implements Serializable {
 	 * @return the secondary allele.
 	 */
 	public Allele getSecondaryAllele() {
-		return secondaryAllele;
+		return context.getMarkers().getSecondAllele(marker);
 	}
 
 	/**
-	 * Get all the covariates.
+	 * Get all the covariates. Covariate j of individual i is found at
+	 * j * getSize() + i.
 	 * 
 	 * @return the covariates.
 	 */
-	public Iterable<List<Float>> getCovariates() {
-		return covariates;
+	public double[] getCovariates() {
+		return context.getBlock().getIndividuals().getCovariates();
+	}
+
+	/**
+	 * Get the number of covariates of each individual.
+	 * 
+	 * @return the number of covariates.
+	 */
+	public int getCovariateLength() {
+		return context.getBlock().getIndividuals().getCovariateCount();
+	}
+
+	/**
+	 * Get the number of individuals.
+	 * 
+	 * @return the number of individuals.
+	 */
+	public int getSize() {
+		return context.getBlock().getIndividuals().getSize();
 	}
 
 	/**
-	 * Get all the permutations.
+	 * Get the first permutation of the block.
 	 * 
-	 * @return all the permutations.
+	 * @return the first permutation.
 	 */
 	public int getPermutation() {
-		return permutation;
+		return context.getBlock().getFirst();
 	}
 
 	/**
@@ -234,7 +157,7 @@ public class TaskConfiguration implements Serializable {
 	 * @return the chromosome.
 	 */
 	public String getChromosome() {
-		return chromosome;
+		return context.getMarkers().getChromosome(marker);
 	}
 
 	/**
@@ -243,6 +166,15 @@ public class TaskConfiguration implements Serializable {
 	 * @return the name of the marker.
 	 */
 	public String getMarker() {
+		return context.getMarkers().getId(marker);
+	}
+
+	/**
+	 * Get the ordinal of the marker in the data set.
+	 * 
+	 * @return the ordinal of the marker.
+	 */
+	public int getMarkerIndex() {
 		return marker;
 	}
 	/**
@@ -251,7 +183,7 @@ public class TaskConfiguration implements Serializable {
 	 * @return the name of the marker.
 	 */
 	public String getInteractionMarker() {
-		return interactionMarker;
+		return context.getInteractionMarker();
 	}
 	/**
 	 * Get the cut off.
@@ -259,7 +191,7 @@ public class TaskConfiguration implements Serializable {
 	 * @return the cut off.
 	 */
 	public int getCutOff() {
-		return cutoff;
+		return context.getCutOff();
 	}
 
 	/**
@@ -268,23 +200,64 @@ public class TaskConfiguration implements Serializable {
 	 * @return the model type.
 	 */
 	public ModelType getModelType() {
-		return modelType;
+		return context.getModelType();
 	}
 
-	public boolean isDominantOrXMale(Sex sex) {
-		if (modelType.equals(ModelType.DOMINANT))
-			return true;
-		if (sex==null)
-			return false;
-		return (chromosome.equalsIgnoreCase("X") && sex==Sex.MALE);
-		}
+	/**
+	 * Get the individuals where a dominant model applies, i.e. all of them for
+	 * the dominant model and the males on the X chromosome otherwise.
+	 * The sexes are not permuted, so the mask is the same for the whole block.
+	 * 
+	 * @return the dominant mask.
+	 */
+	public long[] getDominantMask() {
+		IndividualMasks masks = context.getBlock().getMasks()[0];
+
+		if (context.getModelType().equals(ModelType.DOMINANT))
+			return masks.getAll();
+		if (context.getMarkers().isXChromosome(marker))
+			return masks.getMales();
+		return masks.getNone();
+	}
 
 	public int getIteration() {
-		return iteration;
+		return context.getIteration();
 	}
 
 	public double getThreshold() {
-		return threshold;
+		return context.getThreshold();
+	}
+
+	/**
+	 * Get the original estimates used as starting point.
+	 * 
+	 * @return the warm starts, or null if disabled.
+	 */
+	public WarmStarts getWarmStarts() {
+		return context.getWarmStarts();
+	}
+
+	/**
+	 * Get the score test p-value below which the marker receives the full
+	 * interaction analysis.
+	 * 
+	 * @return the screening threshold, or 0 if disabled.
+	 */
+	public double getScreening() {
+		return context.getScreening();
+	}
+
+	/**
+	 * Get the score test null model of each permutation in the block,
+	 * starting with {@link #getPermutation()}.
+	 * 
+	 * @return the null models, or null if screening is disabled.
+	 */
+	public ScoreScreen[] getScreens() {
+		if (context.getScreening() == 0)
+			return null;
+		return context.getBlock().getScreens(context.getIteration(),
+				context.getThreshold());
 	}
 
 }
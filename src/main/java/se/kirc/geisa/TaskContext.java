@@ -0,0 +1,163 @@
+/*
+ * TaskContext.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * The parameters shared by all markers of one interaction marker and one
+ * block of permutations. The context is built once and shared by reference,
+ * so a {@link TaskConfiguration} only adds the ordinal of its marker and the
+ * genotypes of the marker are read by the worker evaluating it. A context
+ * sent to a remote worker leaves the data store and the warm starts behind;
+ * the worker attaches its own copy of the data store.
+ */
+public class TaskContext implements Serializable {
+	private static final long serialVersionUID = 5108829387364093342L;
+
+	private transient DataStore dataStore;
+	private String interactionMarker;
+	private PermutationBlock block;
+	private int cutoff;
+	private ModelType modelType;
+	private int iteration;
+	private double threshold;
+	private transient WarmStarts warmStarts;
+	private double screening;
+
+	/**
+	 * Constructs a new {@link TaskContext} with the specified parameters.
+	 * 
+	 * @param dataStore
+	 *            the data store holding the genotypes and markers.
+	 * @param interactionMarker
+	 *            the name of the interaction marker.
+	 * @param block
+	 *            the block of permutations to perform, holding the
+	 *            individuals.
+	 * @param cutoff
+	 *            the cutoff value for the individual bins.
+	 * @param modelType
+	 *            the {@link ModelType} to use (e.g. DOMINANT).
+	 * @param iteration
+	 *            the max number of logistic regression iterations.
+	 * @param threshold
+	 *            the logistic regression convergence threshold.
+	 * @param warmStarts
+	 *            the original estimates of the interaction marker, or null
+	 *            if warm starts are disabled.
+	 * @param screening
+	 *            the screening threshold, or 0 if screening is disabled.
+	 */
+	public TaskContext(DataStore dataStore, String interactionMarker,
+			PermutationBlock block, int cutoff, ModelType modelType,
+			int iteration, double threshold, WarmStarts warmStarts,
+			double screening) {
+		this.dataStore = dataStore;
+		this.interactionMarker = interactionMarker;
+		this.block = block;
+		this.cutoff = cutoff;
+		this.modelType = modelType;
+		this.iteration = iteration;
+		this.threshold = threshold;
+		this.warmStarts = warmStarts;
+		this.screening = screening;
+	}
+
+	/**
+	 * Attach the data store of a remote worker, holding the same markers.
+	 * 
+	 * @param dataStore
+	 *            the data store.
+	 */
+	public void attach(DataStore dataStore) {
+		this.dataStore = dataStore;
+	}
+
+	/**
+	 * Get the genotypes of a marker.
+	 * 
+	 * @param marker
+	 *            the ordinal of the marker.
+	 * @return the genotypes.
+	 * @throws IOException
+	 *             if a read error occurs.
+	 */
+	public DataStoreEntry getGenotypes(int marker) throws IOException {
+		return dataStore.getEntry(marker);
+	}
+
+	/**
+	 * Announce that the genotypes of a range of markers are read next by the
+	 * calling thread.
+	 * 
+	 * @param first
+	 *            the ordinal of the first marker.
+	 * @param last
+	 *            the ordinal of the last marker.
+	 * @throws IOException
+	 *             if a read error occurs.
+	 */
+	public void prefetch(int first, int last) throws IOException {
+		dataStore.prefetch(first, last);
+	}
+
+	public MarkerCatalog getMarkers() {
+		return dataStore.getMarkers();
+	}
+
+	public String getInteractionMarker() {
+		return interactionMarker;
+	}
+
+	public PermutationBlock getBlock() {
+		return block;
+	}
+
+	public int getCutOff() {
+		return cutoff;
+	}
+
+	public ModelType getModelType() {
+		return modelType;
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	public WarmStarts getWarmStarts() {
+		return warmStarts;
+	}
+
+	public double getScreening() {
+		return screening;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * TaskResult.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import se.kirc.geisa.data.plink.Allele;
+
+/**
+ * The result of one marker in one permutation. The identifying columns are
+ * kept as they are, while all numeric columns (including the counts, the
+ * recode and the convergence flags) are stored in a flat array indexed by the
+ * ordinal of their {@link ResultColumn}. Formatting to text is left to the
+ * writer.
+ */
+public class TaskResult implements Serializable {
+	private static final long serialVersionUID = 4207815730623815307L;
+
+	private final static int COLUMNS = ResultColumn.values().length;
+
+	private int permutation;
+	private String interactionMarker;
+	private String chromosome;
+	private String marker;
+	private int markerIndex;
+	private Allele riskAllele;
+	private Allele majorAllele;
+	private Allele minorAllele;
+
+	/**
+	 * The numeric columns, NaN when not available.
+	 */
+	private double[] values = new double[COLUMNS];
+
+	/**
+	 * Constructs a new result with all numeric columns unavailable.
+	 * 
+	 * @param permutation
+	 *            the permutation, 0 for the original data.
+	 * @param interactionMarker
+	 *            the name of the interaction marker.
+	 * @param chromosome
+	 *            the chromosome.
+	 * @param marker
+	 *            the name of the marker.
+	 * @param markerIndex
+	 *            the ordinal of the marker.
+	 */
+	public TaskResult(int permutation, String interactionMarker,
+			String chromosome, String marker, int markerIndex) {
+		this.permutation = permutation;
+		this.interactionMarker = interactionMarker;
+		this.chromosome = chromosome;
+		this.marker = marker;
+		this.markerIndex = markerIndex;
+		Arrays.fill(values, Double.NaN);
+	}
+
+	public int getPermutation() {
+		return permutation;
+	}
+
+	public String getInteractionMarker() {
+		return interactionMarker;
+	}
+
+	public String getChromosome() {
+		return chromosome;
+	}
+
+	public String getMarker() {
+		return marker;
+	}
+
+	public int getMarkerIndex() {
+		return markerIndex;
+	}
+
+	public Allele getRiskAllele() {
+		return riskAllele;
+	}
+
+	public Allele getMajorAllele() {
+		return majorAllele;
+	}
+
+	public Allele getMinorAllele() {
+		return minorAllele;
+	}
+
+	/**
+	 * Set the risk, major and minor alleles.
+	 */
+	public void setAlleles(Allele riskAllele, Allele majorAllele,
+			Allele minorAllele) {
+		this.riskAllele = riskAllele;
+		this.majorAllele = majorAllele;
+		this.minorAllele = minorAllele;
+	}
+
+	/**
+	 * Get the value of a numeric column.
+	 * 
+	 * @param column
+	 *            the column.
+	 * @return the value, NaN if not available.
+	 */
+	public double get(ResultColumn column) {
+		return values[column.ordinal()];
+	}
+
+	/**
+	 * Set the value of a numeric column.
+	 * 
+	 * @param column
+	 *            the column.
+	 * @param value
+	 *            the value.
+	 */
+	public void set(ResultColumn column, double value) {
+		values[column.ordinal()] = value;
+	}
+
+	/**
+	 * Set a flag column, e.g. whether a logistic regression converged.
+	 * 
+	 * @param column
+	 *            the column.
+	 * @param flag
+	 *            the flag.
+	 */
+	public void set(ResultColumn column, boolean flag) {
+		values[column.ordinal()] = flag ? 1 : 0;
+	}
+
+	/**
+	 * Check whether a flag column is set. An unavailable flag is not set.
+	 * 
+	 * @param column
+	 *            the column.
+	 * @return true if the flag is set.
+	 */
+	public boolean isSet(ResultColumn column) {
+		return values[column.ordinal()] == 1;
+	}
+}
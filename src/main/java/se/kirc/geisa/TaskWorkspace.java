@@ -0,0 +1,261 @@
+/*
+ * TaskWorkspace.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.util.Arrays;
+
+import se.kirc.geisa.count.Bits;
+import se.kirc.geisa.count.GenotypePlanes;
+import se.kirc.math.regression.FastLogisticRegression;
+import se.kirc.math.regression.LogisticRegressionConfiguration;
+import se.kirc.math.regression.SaturatedLogisticRegression;
+
+/**
+ * Scratch space for the evaluation of markers, kept per worker thread and
+ * reused for every marker and permutation. It is sized by the number of
+ * individuals and covariates, which only change between runs, so the
+ * evaluation of a marker does not allocate any arrays of that size.
+ */
+final class TaskWorkspace {
+	private final static ThreadLocal<TaskWorkspace> WORKSPACES = new ThreadLocal<TaskWorkspace>();
+
+	/**
+	 * Number of columns of the additive and multiplicative designs, excluding
+	 * the covariates.
+	 */
+	private final static int DESIGN_COLUMNS = 3;
+
+	private int size;
+	private int covariateLength;
+	private GenotypePlanes genotypes;
+	private long[] valid;
+	private long[] riskFactors;
+	private int[] alleles = new int[4];
+	private int[][][] risk = new int[2][2][2];
+	private int[] cases = new int[4];
+	private int[] controls = new int[4];
+	private double[] prior;
+	private Design additive;
+	private Design multiplicative;
+
+	private TaskWorkspace(int size, int covariateLength) {
+		this.size = size;
+		this.covariateLength = covariateLength;
+		genotypes = new GenotypePlanes(size);
+		valid = new long[Bits.words(size)];
+		riskFactors = new long[Bits.words(size)];
+		prior = new double[DESIGN_COLUMNS + covariateLength + 1];
+		additive = new Design(size, DESIGN_COLUMNS + covariateLength,
+				SaturatedLogisticRegression.cellReference());
+		multiplicative = new Design(size, DESIGN_COLUMNS + covariateLength,
+				SaturatedLogisticRegression.factorial());
+	}
+
+	/**
+	 * Get the workspace of the current thread, replacing it if it was sized
+	 * for a different number of individuals or covariates.
+	 *
+	 * @param size
+	 *            the number of individuals.
+	 * @param covariateLength
+	 *            the number of covariates.
+	 * @return the workspace.
+	 */
+	static TaskWorkspace get(int size, int covariateLength) {
+		TaskWorkspace workspace = WORKSPACES.get();
+
+		if (workspace == null || workspace.size != size
+				|| workspace.covariateLength != covariateLength) {
+			workspace = new TaskWorkspace(size, covariateLength);
+			WORKSPACES.set(workspace);
+		}
+
+		return workspace;
+	}
+
+	GenotypePlanes getGenotypes() {
+		return genotypes;
+	}
+
+	long[] getValid() {
+		return valid;
+	}
+
+	long[] getRiskFactors() {
+		return riskFactors;
+	}
+
+	int[] getAlleles() {
+		return alleles;
+	}
+
+	int[][][] getRisk() {
+		return risk;
+	}
+
+	int[] getCases() {
+		return cases;
+	}
+
+	int[] getControls() {
+		return controls;
+	}
+
+	/**
+	 * Get space for the prior estimates of a fit.
+	 */
+	double[] getPrior() {
+		return prior;
+	}
+
+	/**
+	 * Forget the estimates of the previous fits, so that they are not used as
+	 * starting point in another task.
+	 */
+	void forget() {
+		additive.hasPrevious = false;
+		multiplicative.hasPrevious = false;
+	}
+
+	/**
+	 * Get the design and models of the additive analysis.
+	 */
+	Design getAdditive() {
+		return additive;
+	}
+
+	/**
+	 * Get the design and models of the multiplicative analysis.
+	 */
+	Design getMultiplicative() {
+		return multiplicative;
+	}
+
+	/**
+	 * The buffers of one design together with the models fitted to it. A
+	 * model is only valid until the design is used again.
+	 */
+	static final class Design {
+		private double[] x;
+		private double[] y;
+		private double[] beta;
+		private double[] previous;
+		private boolean hasPrevious;
+		private boolean warm;
+		private LogisticRegressionConfiguration configuration = new LogisticRegressionConfiguration();
+		private FastLogisticRegression regression = new FastLogisticRegression();
+		private SaturatedLogisticRegression saturated;
+
+		private Design(int size, int columns,
+				SaturatedLogisticRegression saturated) {
+			x = new double[size * columns];
+			y = new double[size];
+			beta = new double[columns + 1];
+			previous = new double[columns + 1];
+			this.saturated = saturated;
+		}
+
+		double[] getX() {
+			return x;
+		}
+
+		double[] getY() {
+			return y;
+		}
+
+		/**
+		 * Get the initial beta values of the next fit: the prior if given and
+		 * finite, otherwise zero except for the finite covariate estimates of
+		 * the previous remembered fit of this design.
+		 * 
+		 * @param prior
+		 *            the prior estimates, or null.
+		 * @return the initial beta values.
+		 */
+		double[] getStart(double[] prior) {
+			warm = true;
+			if (isFinite(prior, 0))
+				System.arraycopy(prior, 0, beta, 0, beta.length);
+			else if (hasPrevious && isFinite(previous, DESIGN_COLUMNS + 1)) {
+				Arrays.fill(beta, 0, DESIGN_COLUMNS + 1, 0);
+				System.arraycopy(previous, DESIGN_COLUMNS + 1, beta,
+						DESIGN_COLUMNS + 1, beta.length - DESIGN_COLUMNS - 1);
+			} else
+				return getColdStart();
+
+			return beta;
+		}
+
+		/**
+		 * Get initial beta values of zero.
+		 */
+		double[] getColdStart() {
+			warm = false;
+			Arrays.fill(beta, 0);
+
+			return beta;
+		}
+
+		/**
+		 * Check whether the last initial beta values came from a prior or a
+		 * previous fit.
+		 */
+		boolean isWarm() {
+			return warm;
+		}
+
+		/**
+		 * Check that the estimates from the given index on are finite, i.e.
+		 * come from a fit that did not diverge.
+		 */
+		private static boolean isFinite(double[] estimates, int from) {
+			if (estimates == null)
+				return false;
+			for (int i = from; i < estimates.length; ++i)
+				if (Double.isNaN(estimates[i]) || Double.isInfinite(estimates[i]))
+					return false;
+
+			return true;
+		}
+
+		/**
+		 * Remember the estimates of the last iterative fit as starting point
+		 * of the covariates of the next one.
+		 */
+		void remember() {
+			for (int i = 0; i < previous.length; ++i)
+				previous[i] = regression.getBeta(i);
+			hasPrevious = true;
+		}
+
+		LogisticRegressionConfiguration getConfiguration() {
+			return configuration;
+		}
+
+		FastLogisticRegression getRegression() {
+			return regression;
+		}
+
+		SaturatedLogisticRegression getSaturated() {
+			return saturated;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * WarmStarts.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The estimates of the original data of each marker of one interaction
+ * marker, used as starting point of the logistic regressions of the
+ * permutations. All original estimates are recorded before any permutation is
+ * evaluated, so the starting points do not depend on the scheduling.
+ * Whether a fit without estimates of its own marker starts from the previous
+ * fit of the task is set separately, since that depends on the batch
+ * boundaries.
+ */
+public class WarmStarts implements Serializable {
+	private static final long serialVersionUID = -2409960436618307721L;
+
+	private AtomicReferenceArray<double[]> additive;
+	private AtomicReferenceArray<double[]> multiplicative;
+	private boolean previous;
+
+	/**
+	 * Constructs empty starting points.
+	 * 
+	 * @param markers
+	 *            the number of markers.
+	 * @param previous
+	 *            whether fits without estimates of their own marker start
+	 *            from the previous fit of the task.
+	 */
+	public WarmStarts(int markers, boolean previous) {
+		additive = new AtomicReferenceArray<double[]>(markers);
+		multiplicative = new AtomicReferenceArray<double[]>(markers);
+		this.previous = previous;
+	}
+
+	/**
+	 * Check whether fits without estimates of their own marker start from the
+	 * previous fit of the task.
+	 */
+	public boolean isPrevious() {
+		return previous;
+	}
+
+	/**
+	 * Record the original estimates of a marker.
+	 * 
+	 * @param marker
+	 *            the ordinal of the marker.
+	 * @param additive
+	 *            the estimates of the additive model before any recode.
+	 * @param multiplicative
+	 *            the estimates of the multiplicative model, or null if it was
+	 *            not fitted.
+	 */
+	public void setOriginal(int marker, double[] additive,
+			double[] multiplicative) {
+		this.additive.set(marker, additive);
+		if (multiplicative != null)
+			this.multiplicative.set(marker, multiplicative);
+	}
+
+	/**
+	 * Get the original estimates of the additive model of a marker.
+	 * 
+	 * @return the estimates, or null if not available.
+	 */
+	public double[] getAdditive(int marker) {
+		return additive.get(marker);
+	}
+
+	/**
+	 * Get the original estimates of the multiplicative model of a marker.
+	 * 
+	 * @return the estimates, or null if not available.
+	 */
+	public double[] getMultiplicative(int marker) {
+		return multiplicative.get(marker);
+	}
+}
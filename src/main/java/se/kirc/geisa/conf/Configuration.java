@@ -21,12 +21,15 @@
 package se.kirc.geisa.conf;
 
 import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Calendar;
 import java.util.LinkedList;
 
 import se.kirc.geisa.Messages;
 import se.kirc.geisa.ModelType;
 import se.kirc.geisa.ResultColumn;
+import se.kirc.geisa.data.plink.MarkerSelection;
 import se.kirc.geisa.data.store.DataStoreType;
 import se.kirc.math.regression.LogisticRegressionConfiguration;
 
@@ -60,6 +63,39 @@ public class Configuration {
 	 */
 	private int batchSize;
 
+	/**
+	 * The amount of permutations to perform in each task.
+	 */
+	private int permutationBlock;
+
+	/**
+	 * The exceed count at which a marker stops receiving permutations, 0 if
+	 * all markers receive all permutations.
+	 */
+	private int adaptiveLimit;
+
+	/**
+	 * The score test p-value below which a marker receives the full
+	 * interaction analysis, 0 if no marker is screened.
+	 */
+	private double screening;
+
+	/**
+	 * The snapshot of the loaded data set, null if none is used.
+	 */
+	private File snapshotFile;
+
+	/**
+	 * The regions of the markers to analyse, null for all chromosomes.
+	 */
+	private String regions;
+
+	/**
+	 * The file listing the IDs of the markers to analyse, null for all
+	 * markers.
+	 */
+	private File extractFile;
+
 	/**
 	 * The minimum number of individuals in a group.
 	 */
@@ -70,6 +106,40 @@ public class Configuration {
 	 */
 	private int queueSize;
 
+	/**
+	 * The number of interaction markers analysed concurrently.
+	 */
+	private int interactionWindow;
+
+	/**
+	 * The TCP port a coordinator listens on for workers, 0 if disabled.
+	 */
+	private int listenPort;
+
+	/**
+	 * The address a coordinator listens on for workers, null for the
+	 * loopback address.
+	 */
+	private InetAddress listenAddress;
+
+	/**
+	 * The file holding the key shared by a coordinator and its workers, null
+	 * for none.
+	 */
+	private File remoteKeyFile;
+
+	/**
+	 * The time in seconds a coordinator waits for a worker while tasks are
+	 * waiting, 0 to wait forever.
+	 */
+	private int workerTimeout;
+
+	/**
+	 * The host and port of the coordinator a worker connects to, null if
+	 * disabled.
+	 */
+	private String coordinator;
+
 	/**
 	 * The data store type to use (e.g. memory or file based).
 	 */
@@ -121,6 +191,12 @@ public class Configuration {
 	
 	private boolean negativeapp=false;
 	
+	private boolean warmStart=false;
+	
+	private boolean forkJoin=false;
+	
+	private boolean sharedPermutations=false;
+	
 	public Configuration() {
 		// Create an empty list for the columns.
 		columns = new LinkedList<ResultColumn>();
@@ -219,6 +295,180 @@ public class Configuration {
 			throw new InvalidValueException("batchSize < 1");
 	}
 
+	/**
+	 * Returns the number of permutations each task evaluates for its markers.
+	 * 
+	 * @return the permutation block size.
+	 */
+	public int getPermutationBlock() {
+		return permutationBlock;
+	}
+
+	/**
+	 * Sets the number of permutations each task evaluates for its markers.
+	 * 
+	 * @param permutationBlock
+	 *            the number of permutations in each block.
+	 * @throws InvalidValueException
+	 *             if the size is less than 1.
+	 */
+	public void setPermutationBlock(int permutationBlock)
+			throws InvalidValueException {
+		if (permutationBlock > 0)
+			this.permutationBlock = permutationBlock;
+		else
+			throw new InvalidValueException("permutationBlock < 1");
+	}
+
+	/**
+	 * Returns the adaptive permutation limit. A marker stops receiving
+	 * permutations once both its APP and MULT exceed counts reach the limit.
+	 * 
+	 * @return the limit, or 0 if adaptive permutation is disabled.
+	 */
+	public int getAdaptiveLimit() {
+		return adaptiveLimit;
+	}
+
+	/**
+	 * Sets the adaptive permutation limit.
+	 * 
+	 * @param adaptiveLimit
+	 *            the exceed count, or 0 to disable adaptive permutation.
+	 * @throws InvalidValueException
+	 *             if the limit is less than 0.
+	 */
+	public void setAdaptiveLimit(int adaptiveLimit)
+			throws InvalidValueException {
+		if (adaptiveLimit >= 0)
+			this.adaptiveLimit = adaptiveLimit;
+		else
+			throw new InvalidValueException("adaptiveLimit < 0");
+	}
+
+	/**
+	 * Returns the screening threshold. Markers with a score test p-value at or
+	 * above the threshold are not given the full interaction analysis.
+	 * 
+	 * @return the threshold, or 0 if screening is disabled.
+	 */
+	public double getScreening() {
+		return screening;
+	}
+
+	/**
+	 * Sets the screening threshold.
+	 * 
+	 * @param screening
+	 *            the p-value threshold, or 0 to disable screening.
+	 * @throws InvalidValueException
+	 *             if the threshold is not between 0 and 1.
+	 */
+	public void setScreening(double screening) throws InvalidValueException {
+		if (screening >= 0 && screening <= 1)
+			this.screening = screening;
+		else
+			throw new InvalidValueException("screening not in [0, 1]");
+	}
+
+	/**
+	 * Returns the snapshot file of the loaded data set.
+	 * 
+	 * @return the snapshot file, or null if no snapshot is used.
+	 */
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public String getSnapshotFileText() {
+		return snapshotFile == null ? String.format(Messages
+				.getString("configuration.error.snapshotfile.missing"))
+				: snapshotFile.getPath();
+	}
+
+	/**
+	 * Sets the snapshot file. It is created if it does not exist.
+	 * 
+	 * @param snapshotFile
+	 *            the snapshot file.
+	 * @throws InvalidValueException
+	 *             if the file is a directory, or its directory does not
+	 *             exist.
+	 */
+	public void setSnapshotFile(File snapshotFile) throws InvalidValueException {
+		File directory = snapshotFile.getAbsoluteFile().getParentFile();
+
+		if (snapshotFile.isDirectory() || directory == null
+				|| !directory.isDirectory())
+			throw new InvalidValueException(
+					"snapshotFile.isDirectory() || !directory.isDirectory()");
+		else
+			this.snapshotFile = snapshotFile;
+	}
+
+	/**
+	 * Returns the regions of the markers to analyse.
+	 * 
+	 * @return the comma separated regions, or null for all chromosomes.
+	 */
+	public String getRegions() {
+		return regions;
+	}
+
+	public String getRegionsText() {
+		return regions == null ? String.format(Messages
+				.getString("configuration.error.regions.missing")) : regions;
+	}
+
+	/**
+	 * Sets the regions of the markers to analyse, as described in
+	 * {@link MarkerSelection}.
+	 * 
+	 * @param regions
+	 *            the comma separated regions.
+	 * @throws InvalidValueException
+	 *             if a region is malformed.
+	 */
+	public void setRegions(String regions) throws InvalidValueException {
+		try {
+			new MarkerSelection().addRegions(regions);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidValueException(e.getMessage());
+		}
+		this.regions = regions;
+	}
+
+	/**
+	 * Returns the file listing the IDs of the markers to analyse.
+	 * 
+	 * @return the extract file, or null for all markers.
+	 */
+	public File getExtractFile() {
+		return extractFile;
+	}
+
+	public String getExtractFileText() {
+		return extractFile == null ? String.format(Messages
+				.getString("configuration.error.extractfile.missing"))
+				: extractFile.getPath();
+	}
+
+	/**
+	 * Sets the file listing the IDs of the markers to analyse.
+	 * 
+	 * @param extractFile
+	 *            the extract file.
+	 * @throws InvalidValueException
+	 *             if the file does not exist, or is not a file.
+	 */
+	public void setExtractFile(File extractFile) throws InvalidValueException {
+		if (!extractFile.exists() || !extractFile.isFile())
+			throw new InvalidValueException(
+					"!extractFile.exists() || !extractFile.isFile()");
+		else
+			this.extractFile = extractFile;
+	}
+
 	/**
 	 * Returns the cut off value. When dividing the individuals (cases and
 	 * controls) into different categories (risk or no risk) this value is used
@@ -228,7 +478,7 @@ public class Configuration {
 	 * @return the cut off value.
 	 */
 	public int getCutOff() {
-		return batchSize;
+		return cutoff;
 	}
 
 	/**
@@ -241,7 +491,7 @@ public class Configuration {
 	 */
 	public void setCutOff(int cutoff) throws InvalidValueException {
 		if (cutoff >= 0)
-			this.batchSize = cutoff;
+			this.cutoff = cutoff;
 		else
 			throw new InvalidValueException("cutoff < 0");
 	}
@@ -335,6 +585,191 @@ public class Configuration {
 			throw new InvalidValueException("queueSize < 1");
 	}
 
+	/**
+	 * Returns the number of interaction markers analysed concurrently.
+	 * 
+	 * @return the number of interaction markers.
+	 */
+	public int getInteractionWindow() {
+		return interactionWindow;
+	}
+
+	/**
+	 * Sets the number of interaction markers analysed concurrently.
+	 * 
+	 * @param interactionWindow
+	 *            the number of interaction markers.
+	 * @throws InvalidValueException
+	 *             if the number is less than 1.
+	 */
+	public void setInteractionWindow(int interactionWindow)
+			throws InvalidValueException {
+		if (interactionWindow > 0)
+			this.interactionWindow = interactionWindow;
+		else
+			throw new InvalidValueException("interactionWindow < 1");
+	}
+
+	/**
+	 * Returns the TCP port a coordinator listens on for workers.
+	 * 
+	 * @return the port, or 0 if not a coordinator.
+	 */
+	public int getListenPort() {
+		return listenPort;
+	}
+
+	public String getListenPortText() {
+		return listenPort == 0 ? String.format(Messages
+				.getString("configuration.error.listen.missing"))
+				: (listenAddress == null ? InetAddress.getLoopbackAddress()
+						: listenAddress).getHostAddress() + ":" + listenPort;
+	}
+
+	/**
+	 * Sets the TCP port a coordinator listens on for workers.
+	 * 
+	 * @param listenPort
+	 *            the port.
+	 * @throws InvalidValueException
+	 *             if the port is not in [1, 65535].
+	 */
+	public void setListenPort(int listenPort) throws InvalidValueException {
+		if (listenPort > 0 && listenPort <= 65535)
+			this.listenPort = listenPort;
+		else
+			throw new InvalidValueException("listenPort not in [1, 65535]");
+	}
+
+	/**
+	 * Returns the address a coordinator listens on for workers.
+	 * 
+	 * @return the address, or null for the loopback address.
+	 */
+	public InetAddress getListenAddress() {
+		return listenAddress;
+	}
+
+	/**
+	 * Sets the address a coordinator listens on for workers.
+	 * 
+	 * @param listenAddress
+	 *            the host name or IP address of a local interface.
+	 * @throws InvalidValueException
+	 *             if the address cannot be resolved.
+	 */
+	public void setListenAddress(String listenAddress)
+			throws InvalidValueException {
+		try {
+			this.listenAddress = InetAddress.getByName(listenAddress);
+		} catch (UnknownHostException e) {
+			throw new InvalidValueException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the file holding the key shared by a coordinator and its
+	 * workers.
+	 * 
+	 * @return the key file, or null for none.
+	 */
+	public File getRemoteKeyFile() {
+		return remoteKeyFile;
+	}
+
+	public String getRemoteKeyFileText() {
+		return remoteKeyFile == null ? String.format(Messages
+				.getString("configuration.error.remotekeyfile.missing"))
+				: remoteKeyFile.getPath();
+	}
+
+	/**
+	 * Sets the file holding the key shared by a coordinator and its workers.
+	 * 
+	 * @param remoteKeyFile
+	 *            the key file.
+	 * @throws InvalidValueException
+	 *             if the file does not exist, or is not a file.
+	 */
+	public void setRemoteKeyFile(File remoteKeyFile)
+			throws InvalidValueException {
+		if (!remoteKeyFile.exists() || !remoteKeyFile.isFile())
+			throw new InvalidValueException(
+					"!remoteKeyFile.exists() || !remoteKeyFile.isFile()");
+		else
+			this.remoteKeyFile = remoteKeyFile;
+	}
+
+	/**
+	 * Returns the time a coordinator waits for a worker while tasks are
+	 * waiting, before the tasks fail.
+	 * 
+	 * @return the time in seconds, or 0 to wait forever.
+	 */
+	public int getWorkerTimeout() {
+		return workerTimeout;
+	}
+
+	/**
+	 * Sets the time a coordinator waits for a worker while tasks are
+	 * waiting, before the tasks fail.
+	 * 
+	 * @param workerTimeout
+	 *            the time in seconds, or 0 to wait forever.
+	 * @throws InvalidValueException
+	 *             if the time is negative.
+	 */
+	public void setWorkerTimeout(int workerTimeout)
+			throws InvalidValueException {
+		if (workerTimeout >= 0)
+			this.workerTimeout = workerTimeout;
+		else
+			throw new InvalidValueException("workerTimeout < 0");
+	}
+
+	/**
+	 * Returns the coordinator a worker connects to.
+	 * 
+	 * @return the host and port as host:port, or null if not a worker.
+	 */
+	public String getCoordinator() {
+		return coordinator;
+	}
+
+	public String getCoordinatorHost() {
+		return coordinator.substring(0, coordinator.lastIndexOf(':'));
+	}
+
+	public int getCoordinatorPort() {
+		return Integer.parseInt(coordinator.substring(coordinator
+				.lastIndexOf(':') + 1));
+	}
+
+	/**
+	 * Sets the coordinator a worker connects to.
+	 * 
+	 * @param coordinator
+	 *            the host and port as host:port.
+	 * @throws InvalidValueException
+	 *             if the host or port is missing or the port is not a number
+	 *             in [1, 65535].
+	 */
+	public void setCoordinator(String coordinator) throws InvalidValueException {
+		int separator = coordinator.lastIndexOf(':');
+		int port;
+
+		if (separator < 1)
+			throw new InvalidValueException("host:port expected");
+		try {
+			port = Integer.parseInt(coordinator.substring(separator + 1));
+		} catch (NumberFormatException e) {
+			throw new InvalidValueException(e.getMessage());
+		}
+		if (port < 1 || port > 65535)
+			throw new InvalidValueException("port not in [1, 65535]");
+		this.coordinator = coordinator;
+	}
+
 	/**
 	 * Returns the list of columns to use in the output.
 	 * 
@@ -426,30 +861,6 @@ public class Configuration {
 			this.interactionFile = interactionFile;
 	}
 
-	/**
-	 * Get the cut off.
-	 * 
-	 * @return the cut off.
-	 */
-	public int getCutoff() {
-		return cutoff;
-	}
-
-	/**
-	 * Set the cut off.
-	 * 
-	 * @param cutoff
-	 *            the cut off.
-	 * @throws InvalidValueException
-	 *             if the value is less than 0.
-	 */
-	public void setCutoff(int cutoff) throws InvalidValueException {
-		if (cutoff >= 0)
-			this.cutoff = cutoff;
-		else
-			throw new InvalidValueException("cutoff < 0");
-	}
-
 	/**
 	 * Get the model type.
 	 * 
@@ -584,4 +995,46 @@ public class Configuration {
 	public boolean getNegativeAPP() {
 		return negativeapp;
 	}
+	
+	/**
+	 * Sets whether the logistic regressions are started from the best
+	 * available prior estimates instead of zero.
+	 * 
+	 * @param warmStart
+	 *            true to enable warm starts.
+	 */
+	public void setWarmStart(boolean warmStart) {
+		this.warmStart=warmStart;
+	}
+	public boolean getWarmStart() {
+		return warmStart;
+	}
+	
+	/**
+	 * Sets whether the tasks are run on a work-stealing fork/join pool with
+	 * adaptive batch sizes instead of a fixed thread pool.
+	 * 
+	 * @param forkJoin
+	 *            true to use the fork/join pool.
+	 */
+	public void setForkJoin(boolean forkJoin) {
+		this.forkJoin=forkJoin;
+	}
+	public boolean getForkJoin() {
+		return forkJoin;
+	}
+	
+	/**
+	 * Sets whether all interaction markers share the same permutations of
+	 * the affection statuses instead of each having its own.
+	 * 
+	 * @param sharedPermutations
+	 *            true to share the permutations.
+	 */
+	public void setSharedPermutations(boolean sharedPermutations) {
+		this.sharedPermutations=sharedPermutations;
+	}
+	public boolean getSharedPermutations() {
+		return sharedPermutations;
+	}
 }
@@ -43,5 +43,24 @@ public class ConfigurationValidator {
 			throw new InvalidValueException(
 					Messages.getString("configuration.error.dataset.missing"));
 		// TODO: Fail if multiple data sets are used.
+
+		// In the adaptive permutation mode the retired markers are left out
+		// of the later permutations, so the minimum p-value of a permutation
+		// is not taken over all markers and the family-wise results would be
+		// biased.
+		if (configuration.getAdaptiveLimit() > 0
+				&& (configuration.getTotalPermutationOutput() || configuration
+						.getLimitFile() != null))
+			throw new InvalidValueException(
+					Messages.getString("configuration.error.adaptive.total"));
+
+		// A coordinator reachable from other hosts has to authenticate its
+		// workers.
+		if (configuration.getListenPort() > 0
+				&& configuration.getListenAddress() != null
+				&& !configuration.getListenAddress().isLoopbackAddress()
+				&& configuration.getRemoteKeyFile() == null)
+			throw new InvalidValueException(
+					Messages.getString("configuration.error.remotekey.missing"));
 	}
 }
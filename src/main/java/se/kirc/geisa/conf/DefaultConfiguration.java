@@ -54,8 +54,12 @@ public class DefaultConfiguration extends Configuration {
 			setSeed(System.currentTimeMillis());
 			setWorkers(Runtime.getRuntime().availableProcessors());
 			setQueueSize(getWorkers() * 20);
+			setInteractionWindow(2);
+			setWorkerTimeout(600);
 			setDataStoreType(DataStoreType.MEMORY);
 			setBatchSize(200);
+			setPermutationBlock(1);
+			setAdaptiveLimit(0);
 			setCutOff(10);
 			setModelType(ModelType.DOMINANT);
 
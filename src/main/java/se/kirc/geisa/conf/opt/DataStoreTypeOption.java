@@ -83,6 +83,12 @@ public class DataStoreTypeOption extends AbstractOptionHandler {
 					configuration.setDataStoreType(DataStoreType.MEMORY);
 				else if (value.equalsIgnoreCase("f"))
 					configuration.setDataStoreType(DataStoreType.FILE);
+				else if (value.equalsIgnoreCase("b"))
+					configuration.setDataStoreType(DataStoreType.MAPPED);
+				else if (value.equalsIgnoreCase("o"))
+					configuration.setDataStoreType(DataStoreType.OFFHEAP);
+				else if (value.equalsIgnoreCase("s"))
+					configuration.setDataStoreType(DataStoreType.STREAM);
 				else
 					throw new OptionHandlerException(String.format(
 							Messages.getString("options.error.datastoretype"),
@@ -186,6 +186,20 @@ public class OptionsParser {
 		handlers.add(new LimitFileOption(configuration));
 		handlers.add(new PermutationOutputOption(configuration));
 		handlers.add(new NegativeAPPOption(configuration));
+		handlers.add(new PermutationBlockOption(configuration));
+		handlers.add(new AdaptivePermutationOption(configuration));
+		handlers.add(new WarmStartOption(configuration));
+		handlers.add(new ScreeningOption(configuration));
+		handlers.add(new SnapshotOption(configuration));
+		handlers.add(new RegionOption(configuration));
+		handlers.add(new ExtractOption(configuration));
+		handlers.add(new ForkJoinOption(configuration));
+		handlers.add(new InteractionWindowOption(configuration));
+		handlers.add(new SharedPermutationsOption(configuration));
+		handlers.add(new ListenOption(configuration));
+		handlers.add(new ConnectOption(configuration));
+		handlers.add(new KeyFileOption(configuration));
+		handlers.add(new WorkerTimeoutOption(configuration));
 		
 		// Add all handlers to the options.
 		for (OptionHandler handler : handlers)
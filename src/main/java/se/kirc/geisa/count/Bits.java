@@ -0,0 +1,93 @@
+/*
+ * Bits.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.count;
+
+/**
+ * Helper methods for bit sets stored as long arrays, one bit per individual.
+ * Individual i is stored in bit i % 64 of word i / 64. Bits beyond the number
+ * of individuals are always zero.
+ */
+public final class Bits {
+	private Bits() {
+	}
+
+	/**
+	 * Get the number of words needed for the given number of bits.
+	 */
+	public static int words(int size) {
+		return (size + 63) >>> 6;
+	}
+
+	/**
+	 * Get the mask of the bits in use in the last word.
+	 */
+	public static long tailMask(int size) {
+		int remainder = size & 63;
+
+		return remainder == 0 ? -1L : (1L << remainder) - 1;
+	}
+
+	/**
+	 * Get a bit set with the first size bits set.
+	 */
+	public static long[] ones(int size) {
+		long[] bits = new long[words(size)];
+
+		for (int w = 0; w < bits.length; ++w)
+			bits[w] = -1L;
+		if (bits.length > 0)
+			bits[bits.length - 1] &= tailMask(size);
+
+		return bits;
+	}
+
+	public static boolean get(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public static void set(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Count the set bits.
+	 */
+	public static int count(long[] a) {
+		int count = 0;
+
+		for (int w = 0; w < a.length; ++w)
+			count += Long.bitCount(a[w]);
+
+		return count;
+	}
+
+	/**
+	 * Count the bits set in both a and b.
+	 */
+	public static int count(long[] a, long[] b) {
+		int count = 0;
+
+		for (int w = 0; w < a.length; ++w)
+			count += Long.bitCount(a[w] & b[w]);
+
+		return count;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * GenotypePlanes.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.count;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.store.AbstractDataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+
+/**
+ * The genotypes of one marker expanded into one bit plane per genotype, i.e.
+ * homozygote primary, unknown, heterozygote and homozygote secondary. Every
+ * individual has its bit set in exactly one of the planes.
+ */
+public class GenotypePlanes implements Serializable {
+	private static final long serialVersionUID = 6309548412839062457L;
+
+	private final static int GENOTYPES = 4;
+
+	/**
+	 * For every packed byte, a four bit mask per genotype value telling which
+	 * of the four individuals in the byte has that genotype. The mask for
+	 * genotype value v is found at bits 4v to 4v + 3.
+	 */
+	private final static int[] EXPANSION = new int[256];
+
+	static {
+		for (int b = 0; b < 256; ++b)
+			for (int slot = 0; slot < AbstractDataStore.GENOTYPE_DENSITY; ++slot)
+				EXPANSION[b] |= 1 << (((b >> slot * 2) & 0x3) * 4 + slot);
+	}
+
+	private int size;
+	private long[][] planes;
+
+	/**
+	 * Constructs empty planes for the given number of individuals.
+	 *
+	 * @param size
+	 *            the number of individuals.
+	 */
+	public GenotypePlanes(int size) {
+		this.size = size;
+		this.planes = new long[GENOTYPES][Bits.words(size)];
+	}
+
+	/**
+	 * Expand the genotypes of a marker. Packed data store entries are expanded
+	 * a byte at a time, other iterables one genotype at a time.
+	 *
+	 * @param genotypes
+	 *            the genotypes of the marker.
+	 * @param size
+	 *            the number of individuals.
+	 * @return the genotype planes.
+	 */
+	public static GenotypePlanes of(Iterable<Genotype> genotypes, int size) {
+		GenotypePlanes result = new GenotypePlanes(size);
+
+		result.fill(genotypes);
+
+		return result;
+	}
+
+	/**
+	 * Replace the content of the planes with the genotypes of another marker
+	 * with the same number of individuals.
+	 *
+	 * @param genotypes
+	 *            the genotypes of the marker.
+	 */
+	public void fill(Iterable<Genotype> genotypes) {
+		for (int v = 0; v < GENOTYPES; ++v)
+			Arrays.fill(planes[v], 0);
+
+		if (genotypes instanceof DataStoreEntry
+				&& ((DataStoreEntry) genotypes).getDensity() == AbstractDataStore.GENOTYPE_DENSITY)
+			expand(((DataStoreEntry) genotypes).getGenotypeBuffer());
+		else {
+			int index = 0;
+
+			for (Genotype genotype : genotypes) {
+				if (index >= size)
+					break;
+				Bits.set(planes[genotype.getValue()], index++);
+			}
+		}
+	}
+
+	/**
+	 * Expand packed genotypes with four individuals per byte, 16 bytes per
+	 * word.
+	 */
+	private void expand(ByteBuffer packed) {
+		int bytes = Math.min(packed.limit(),
+				(size + AbstractDataStore.GENOTYPE_DENSITY - 1)
+						/ AbstractDataStore.GENOTYPE_DENSITY);
+
+		for (int b = 0; b < bytes; ++b) {
+			int expansion = EXPANSION[packed.get(b) & 0xff];
+			int word = b >>> 4;
+			int shift = (b & 15) << 2;
+
+			for (int v = 0; v < GENOTYPES; ++v)
+				planes[v][word] |= (long) ((expansion >>> v * 4) & 0xf) << shift;
+		}
+
+		// Clear the padding after the last individual.
+		if (planes[0].length > 0) {
+			long tail = Bits.tailMask(size);
+
+			for (int v = 0; v < GENOTYPES; ++v)
+				planes[v][planes[v].length - 1] &= tail;
+		}
+	}
+
+	/**
+	 * Get the number of individuals.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get the plane of the given genotype. The array is not copied.
+	 */
+	public long[] getPlane(Genotype genotype) {
+		return planes[genotype.getValue()];
+	}
+}
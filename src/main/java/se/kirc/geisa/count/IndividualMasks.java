@@ -0,0 +1,217 @@
+/*
+ * IndividualMasks.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.count;
+
+import java.io.Serializable;
+import java.util.List;
+
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Sex;
+import se.kirc.geisa.data.store.IndividualTable;
+
+/**
+ * Bit masks over all individuals for the affection status, the interaction
+ * variable and the sex. They are shared by all markers of a permutation.
+ */
+public class IndividualMasks implements Serializable {
+	private static final long serialVersionUID = -3171985203655104032L;
+
+	/**
+	 * Interaction variable of individuals without interaction data.
+	 */
+	public final static int MISSING_INTERACTION = -1;
+
+	private int size;
+	private long[] cases;
+	private long[] controls;
+	private long[] envPresent;
+	private long[] envAbsent;
+	private long[] envSwappedAbsent;
+	private long[] envKnown;
+	private long[] known;
+	private long[] males;
+	private long[] all;
+	private long[] none;
+
+	/**
+	 * Constructs the masks from one entry per individual in each list.
+	 *
+	 * @param affectionStatus
+	 *            the affection statuses.
+	 * @param interactionVariables
+	 *            the interaction variables, -1 if missing.
+	 * @param sexes
+	 *            the sexes.
+	 */
+	public IndividualMasks(List<AffectionStatus> affectionStatus,
+			List<Integer> interactionVariables, List<Sex> sexes) {
+		this(values(affectionStatus), interactionValues(interactionVariables),
+				sexValues(sexes));
+	}
+
+	/**
+	 * Constructs the masks from the columns of an individual table.
+	 *
+	 * @param affectionStatus
+	 *            the affection status values.
+	 * @param interactionVariables
+	 *            the interaction variables, -1 if missing.
+	 * @param sexes
+	 *            the sex values.
+	 * @see se.kirc.geisa.data.store.IndividualTable
+	 */
+	public IndividualMasks(byte[] affectionStatus,
+			byte[] interactionVariables, byte[] sexes) {
+		size = affectionStatus.length;
+
+		int words = Bits.words(size);
+		int affected = AffectionStatus.AFFECTED.getValue();
+		int unaffected = AffectionStatus.UNAFFECTED.getValue();
+		int male = Sex.MALE.getValue();
+
+		cases = new long[words];
+		controls = new long[words];
+		envPresent = new long[words];
+		envAbsent = new long[words];
+		envKnown = new long[words];
+		males = new long[words];
+
+		for (int i = 0; i < size; ++i) {
+			int status = affectionStatus[i];
+			int interaction = interactionVariables[i];
+
+			if (status == affected)
+				Bits.set(cases, i);
+			else if (status == unaffected)
+				Bits.set(controls, i);
+
+			if (interaction != MISSING_INTERACTION)
+				Bits.set(envKnown, i);
+			if (interaction >= 1)
+				Bits.set(envPresent, i);
+			else if (interaction == 0)
+				Bits.set(envAbsent, i);
+
+			if (sexes[i] == male)
+				Bits.set(males, i);
+		}
+
+		// Derived masks.
+		known = new long[words];
+		envSwappedAbsent = new long[words];
+		for (int w = 0; w < words; ++w) {
+			known[w] = (cases[w] | controls[w]) & envKnown[w];
+			envSwappedAbsent[w] = envKnown[w] & ~envAbsent[w];
+		}
+		all = Bits.ones(size);
+		none = new long[words];
+	}
+
+	private static byte[] values(List<AffectionStatus> affectionStatus) {
+		byte[] result = new byte[affectionStatus.size()];
+		int i = 0;
+
+		for (AffectionStatus status : affectionStatus)
+			result[i++] = (byte) (status == null ? AffectionStatus.MISSING
+					.getValue() : status.getValue());
+
+		return result;
+	}
+
+	private static byte[] interactionValues(List<Integer> interactionVariables) {
+		byte[] result = new byte[interactionVariables.size()];
+		int i = 0;
+
+		for (int interaction : interactionVariables)
+			result[i++] = IndividualTable.toByte(interaction);
+
+		return result;
+	}
+
+	private static byte[] sexValues(List<Sex> sexes) {
+		byte[] result = new byte[sexes.size()];
+		int i = 0;
+
+		for (Sex sex : sexes)
+			result[i++] = (byte) (sex == null ? Sex.UNKNOWN.getValue() : sex
+					.getValue());
+
+		return result;
+	}
+
+	/**
+	 * Get the number of individuals.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public long[] getCases() {
+		return cases;
+	}
+
+	public long[] getControls() {
+		return controls;
+	}
+
+	/**
+	 * Get the individuals exposed to the interaction variable. If swapped,
+	 * the unexposed individuals are treated as exposed and vice versa.
+	 */
+	public long[] getEnvPresent(boolean swapped) {
+		return swapped ? envAbsent : envPresent;
+	}
+
+	/**
+	 * Get the individuals not exposed to the interaction variable. If
+	 * swapped, every individual with a known interaction variable other than
+	 * 0 is treated as unexposed.
+	 */
+	public long[] getEnvAbsent(boolean swapped) {
+		return swapped ? envSwappedAbsent : envAbsent;
+	}
+
+	/**
+	 * Get the individuals with a known affection status and interaction
+	 * variable.
+	 */
+	public long[] getKnown() {
+		return known;
+	}
+
+	public long[] getMales() {
+		return males;
+	}
+
+	/**
+	 * Get a mask with every individual set.
+	 */
+	public long[] getAll() {
+		return all;
+	}
+
+	/**
+	 * Get a mask with no individual set.
+	 */
+	public long[] getNone() {
+		return none;
+	}
+}
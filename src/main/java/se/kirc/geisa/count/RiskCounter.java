@@ -0,0 +1,208 @@
+/*
+ * RiskCounter.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.count;
+
+import java.util.Arrays;
+
+import se.kirc.geisa.data.plink.Genotype;
+
+/**
+ * Counting of alleles and of the 2x2x2 risk table with word wide operations on
+ * {@link GenotypePlanes} and {@link IndividualMasks}.
+ */
+public final class RiskCounter {
+	/**
+	 * Indices of the allele counts.
+	 */
+	public final static int CONTROL_PRIMARY = 0;
+	public final static int CONTROL_SECONDARY = 1;
+	public final static int CASE_PRIMARY = 2;
+	public final static int CASE_SECONDARY = 3;
+
+	private RiskCounter() {
+	}
+
+	/**
+	 * Count the primary and secondary alleles among the controls and cases.
+	 * Individuals with an unknown genotype or a missing affection status are
+	 * disregarded.
+	 *
+	 * @return the counts, indexed by CONTROL_PRIMARY, CONTROL_SECONDARY,
+	 *         CASE_PRIMARY and CASE_SECONDARY.
+	 */
+	public static int[] countAlleles(GenotypePlanes genotypes,
+			IndividualMasks masks) {
+		return countAlleles(genotypes, masks, new int[4]);
+	}
+
+	/**
+	 * Count the alleles into an existing array.
+	 *
+	 * @see #countAlleles(GenotypePlanes, IndividualMasks)
+	 */
+	public static int[] countAlleles(GenotypePlanes genotypes,
+			IndividualMasks masks, int[] alleles) {
+		long[] primary = genotypes.getPlane(Genotype.HOMOZYGOTE_PRIMARY);
+		long[] heterozygote = genotypes.getPlane(Genotype.HETEROZYGOTE);
+		long[] secondary = genotypes.getPlane(Genotype.HOMOZYGOTE_SECONDARY);
+		long[] controls = masks.getControls();
+		long[] cases = masks.getCases();
+
+		Arrays.fill(alleles, 0);
+
+		for (int w = 0; w < primary.length; ++w) {
+			int het;
+
+			het = Long.bitCount(heterozygote[w] & controls[w]);
+			alleles[CONTROL_PRIMARY] += 2 * Long.bitCount(primary[w] & controls[w]) + het;
+			alleles[CONTROL_SECONDARY] += 2 * Long.bitCount(secondary[w] & controls[w]) + het;
+
+			het = Long.bitCount(heterozygote[w] & cases[w]);
+			alleles[CASE_PRIMARY] += 2 * Long.bitCount(primary[w] & cases[w]) + het;
+			alleles[CASE_SECONDARY] += 2 * Long.bitCount(secondary[w] & cases[w]) + het;
+		}
+
+		return alleles;
+	}
+
+	/**
+	 * Get the individuals included in the analysis of a marker, i.e. those with
+	 * a known genotype, affection status and interaction variable.
+	 */
+	public static long[] valid(GenotypePlanes genotypes, IndividualMasks masks) {
+		return valid(genotypes, masks, new long[masks.getKnown().length]);
+	}
+
+	/**
+	 * Get the valid individuals into an existing array.
+	 *
+	 * @see #valid(GenotypePlanes, IndividualMasks)
+	 */
+	public static long[] valid(GenotypePlanes genotypes, IndividualMasks masks,
+			long[] valid) {
+		long[] unknown = genotypes.getPlane(Genotype.UNKNOWN);
+		long[] known = masks.getKnown();
+
+		for (int w = 0; w < valid.length; ++w)
+			valid[w] = known[w] & ~unknown[w];
+
+		return valid;
+	}
+
+	/**
+	 * Get the individuals carrying the risk factor. Individuals in the dominant
+	 * mask carry it with one or two risk alleles, all others only with two. An
+	 * uneven recode inverts the risk factor.
+	 *
+	 * @param genotypes
+	 *            the genotypes of the marker.
+	 * @param valid
+	 *            the individuals included in the analysis.
+	 * @param dominant
+	 *            the individuals where a dominant model applies.
+	 * @param twoRisk
+	 *            the homozygote genotype with two risk alleles.
+	 * @param uneven
+	 *            whether the risk factor is inverted.
+	 * @return the risk factors of the valid individuals.
+	 */
+	public static long[] riskFactors(GenotypePlanes genotypes, long[] valid,
+			long[] dominant, Genotype twoRisk, boolean uneven) {
+		return riskFactors(genotypes, valid, dominant, twoRisk, uneven,
+				new long[valid.length]);
+	}
+
+	/**
+	 * Get the risk factors into an existing array.
+	 *
+	 * @see #riskFactors(GenotypePlanes, long[], long[], Genotype, boolean)
+	 */
+	public static long[] riskFactors(GenotypePlanes genotypes, long[] valid,
+			long[] dominant, Genotype twoRisk, boolean uneven, long[] risk) {
+		long[] two = genotypes.getPlane(twoRisk);
+		long[] one = genotypes.getPlane(Genotype.HETEROZYGOTE);
+		long invert = uneven ? -1L : 0L;
+
+		for (int w = 0; w < risk.length; ++w)
+			risk[w] = ((two[w] | (dominant[w] & one[w])) ^ invert) & valid[w];
+
+		return risk;
+	}
+
+	/**
+	 * Count the 2x2x2 risk table. The first dimension is the risk factor, the
+	 * second the interaction variable and the third the affection status (0 for
+	 * controls, 1 for cases).
+	 *
+	 * @param risk
+	 *            the individuals carrying the risk factor.
+	 * @param valid
+	 *            the individuals included in the analysis.
+	 * @param envPresent
+	 *            the individuals exposed to the interaction variable.
+	 * @param envAbsent
+	 *            the individuals not exposed to the interaction variable.
+	 * @param masks
+	 *            the case and control masks.
+	 * @return the risk table.
+	 */
+	public static int[][][] countTable(long[] risk, long[] valid,
+			long[] envPresent, long[] envAbsent, IndividualMasks masks) {
+		return countTable(risk, valid, envPresent, envAbsent, masks,
+				new int[2][2][2]);
+	}
+
+	/**
+	 * Count the risk table into an existing table.
+	 *
+	 * @see #countTable(long[], long[], long[], long[], IndividualMasks)
+	 */
+	public static int[][][] countTable(long[] risk, long[] valid,
+			long[] envPresent, long[] envAbsent, IndividualMasks masks,
+			int[][][] data) {
+		long[] cases = masks.getCases();
+		long[] controls = masks.getControls();
+
+		for (int r = 0; r < 2; ++r)
+			for (int e = 0; e < 2; ++e)
+				Arrays.fill(data[r][e], 0);
+
+		for (int w = 0; w < risk.length; ++w) {
+			long r1 = risk[w];
+			long r0 = valid[w] & ~r1;
+			long e1 = envPresent[w];
+			long e0 = envAbsent[w];
+			long s1 = cases[w];
+			long s0 = controls[w];
+
+			data[0][0][0] += Long.bitCount(r0 & e0 & s0);
+			data[0][0][1] += Long.bitCount(r0 & e0 & s1);
+			data[0][1][0] += Long.bitCount(r0 & e1 & s0);
+			data[0][1][1] += Long.bitCount(r0 & e1 & s1);
+			data[1][0][0] += Long.bitCount(r1 & e0 & s0);
+			data[1][0][1] += Long.bitCount(r1 & e0 & s1);
+			data[1][1][0] += Long.bitCount(r1 & e1 & s0);
+			data[1][1][1] += Long.bitCount(r1 & e1 & s1);
+		}
+
+		return data;
+	}
+}
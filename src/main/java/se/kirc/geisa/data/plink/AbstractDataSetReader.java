@@ -13,11 +13,21 @@ import se.kirc.geisa.data.store.IndividualEntry;
 
 public abstract class AbstractDataSetReader implements DataSetReader {
 	private AbstractDataSet dataSet;
+	protected int threads = 1;
+	protected MarkerSelection selection;
 
 	protected AbstractDataSetReader(AbstractDataSet dataSet) {
 		this.dataSet = dataSet;
 	}
 
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setMarkerSelection(MarkerSelection selection) {
+		this.selection = selection;
+	}
+
 	/**
 	 * Load all interaction variable data and covariates into the data store.
 	 * 
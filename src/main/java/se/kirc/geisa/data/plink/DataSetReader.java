@@ -5,7 +5,7 @@ import java.util.Collection;
 
 import se.kirc.geisa.data.store.DataStore;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 public interface DataSetReader {
 	/**
@@ -18,6 +18,24 @@ public interface DataSetReader {
 	 */
 	void loadGenotypes(DataStore store) throws IOException;
 
+	/**
+	 * Set the number of threads used to load the genotypes. Readers that
+	 * cannot load in parallel use one.
+	 * 
+	 * @param threads
+	 *            the number of threads.
+	 */
+	void setThreads(int threads);
+
+	/**
+	 * Set the markers to load. The other markers are left out of the catalog
+	 * and their genotypes are not read.
+	 * 
+	 * @param selection
+	 *            the selection, or null to load all markers.
+	 */
+	void setMarkerSelection(MarkerSelection selection);
+
 	/**
 	 * Load all individuals from the data set.
 	 * 
@@ -30,11 +48,11 @@ public interface DataSetReader {
 	/**
 	 * Load all markers from the data set.
 	 * 
-	 * @return a collection of all markers in the data set.
+	 * @return the catalog of all markers in the data set.
 	 * @throws IOException
 	 *             if a read error occours.
 	 */
-	Collection<MarkerEntry> loadMarkers() throws IOException;
+	MarkerCatalog loadMarkers() throws IOException;
 
 	/**
 	 * Load all interaction variable data and covariates into the data store.
@@ -0,0 +1,136 @@
+/*
+ * MarkerSelection.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.data.plink;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The markers selected for the analysis, decided from the BIM entry alone so
+ * that the genotypes of the other markers are never read. A marker is selected
+ * if it is in any of the regions, when there are any, and in the extract list,
+ * when there is one. Required markers are always selected.
+ * 
+ * A region is written as a chromosome, optionally followed by an inclusive
+ * range of base pair positions, e.g. "6" or "6:29000000-34000000". Several
+ * regions are separated by commas.
+ */
+public class MarkerSelection {
+	private List<String> chromosomes = new ArrayList<String>();
+	private List<int[]> ranges = new ArrayList<int[]>();
+	private Set<String> extract;
+	private Set<String> required = new HashSet<String>();
+
+	/**
+	 * Add regions.
+	 * 
+	 * @param regions
+	 *            the comma separated regions.
+	 * @throws IllegalArgumentException
+	 *             if a region is malformed.
+	 */
+	public void addRegions(String regions) {
+		for (String region : regions.split(",")) {
+			region = region.trim();
+
+			int colon = region.indexOf(':');
+
+			if (colon < 0) {
+				addRegion(region, 0, Integer.MAX_VALUE);
+				continue;
+			}
+
+			String range = region.substring(colon + 1);
+			int dash = range.indexOf('-');
+
+			if (dash < 0)
+				throw new IllegalArgumentException("No range in " + region);
+			try {
+				addRegion(region.substring(0, colon),
+						Integer.parseInt(range.substring(0, dash).trim()),
+						Integer.parseInt(range.substring(dash + 1).trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid range in " + region);
+			}
+		}
+	}
+
+	/**
+	 * Add a region.
+	 * 
+	 * @param chromosome
+	 *            the chromosome.
+	 * @param first
+	 *            the first base pair position.
+	 * @param last
+	 *            the last base pair position, inclusive.
+	 * @throws IllegalArgumentException
+	 *             if the chromosome is empty or the range is empty.
+	 */
+	public void addRegion(String chromosome, int first, int last) {
+		if (chromosome.trim().length() == 0 || first > last)
+			throw new IllegalArgumentException("Invalid region " + chromosome
+					+ ":" + first + "-" + last);
+		chromosomes.add(chromosome.trim());
+		ranges.add(new int[] { first, last });
+	}
+
+	/**
+	 * Add marker IDs to the extract list.
+	 */
+	public void addExtract(Collection<String> ids) {
+		if (extract == null)
+			extract = new HashSet<String>();
+		extract.addAll(ids);
+	}
+
+	/**
+	 * Select a marker regardless of the regions and the extract list.
+	 */
+	public void addRequired(String id) {
+		required.add(id);
+	}
+
+	/**
+	 * Whether every marker is selected.
+	 */
+	public boolean isAll() {
+		return chromosomes.isEmpty() && extract == null;
+	}
+
+	public boolean isSelected(String id, String chromosome, int position) {
+		if (required.contains(id))
+			return true;
+		if (extract != null && !extract.contains(id))
+			return false;
+		if (chromosomes.isEmpty())
+			return true;
+		for (int r = 0; r < chromosomes.size(); ++r)
+			if (chromosomes.get(r).equalsIgnoreCase(chromosome)
+					&& position >= ranges.get(r)[0]
+					&& position <= ranges.get(r)[1])
+				return true;
+		return false;
+	}
+}
@@ -2,25 +2,50 @@ package se.kirc.geisa.data.plink.binary;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import se.kirc.geisa.data.plink.AbstractDataSetReader;
-import se.kirc.geisa.data.plink.Genotype;
 import se.kirc.geisa.data.plink.binary.bed.BedDecoder;
+import se.kirc.geisa.data.plink.binary.bed.BedOrder;
 import se.kirc.geisa.data.plink.binary.bim.BimDecoder;
 import se.kirc.geisa.data.plink.binary.bim.BimEntry;
 import se.kirc.geisa.data.plink.binary.fam.FamDecoder;
 import se.kirc.geisa.data.plink.binary.fam.FamEntry;
 import se.kirc.geisa.data.store.DataStore;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 public class BinaryDataSetReader extends AbstractDataSetReader {
+	/**
+	 * The size of the block of rows each loading thread reads at a time.
+	 */
+	private final static int ROW_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The size of the strip of columns read at a time when transposing.
+	 */
+	private final static int TRANSPOSE_BUFFER_SIZE = 1 << 24;
+
+	/**
+	 * The number of rows transposed together, a multiple of four.
+	 */
+	private final static int TILE_SIZE = 256;
+
 	private BinaryDataSet dataSet;
 
 	/**
@@ -60,8 +85,8 @@ public class BinaryDataSetReader extends AbstractDataSetReader {
 		return result;
 	}
 
-	public Collection<MarkerEntry> loadMarkers() throws IOException {
-		LinkedList<MarkerEntry> result = new LinkedList<MarkerEntry>();
+	public MarkerCatalog loadMarkers() throws IOException {
+		MarkerCatalog result = new MarkerCatalog();
 
 		// Get the BIM reader and construct a decoder using it.
 		FileInputStream in = new FileInputStream(dataSet.getBIMFile());
@@ -69,26 +94,34 @@ public class BinaryDataSetReader extends AbstractDataSetReader {
 		BimDecoder decoder = new BimDecoder(reader);
 		BimEntry entry;
 
-		// Read all the entries.
-		while ((entry = decoder.readEntry()) != null) {
-			// Construct a new marker entry and populate it.
-			// TODO: Make the marker entry contain all PLINK data.
-			MarkerEntry marker = new MarkerEntry(entry.getId());
-
-			// Set the marker's data.
-			marker.setChromosome(entry.getChromosome());
-			marker.setFirstAllele(entry.getFirstAllele());
-			marker.setSecondAllele(entry.getSecondAllele());
-
-			// Add the marker to the list.
-			result.add(marker);
+		// Read all the entries into the catalog, skipping the rows of the
+		// markers not selected.
+		try {
+			while ((entry = decoder.readEntry()) != null) {
+				int position = (int) entry.getBasePosition();
+
+				if (selection == null
+						|| selection.isSelected(entry.getId(),
+								entry.getChromosome(), position))
+					result.add(entry.getId(), entry.getChromosome(), position,
+							entry.getFirstAllele(), entry.getSecondAllele());
+				else
+					result.skipRow();
+			}
+		} finally {
+			reader.close();
 		}
+		result.trimToSize();
 
 		return result;
 	}
 
 	/**
-	 * Load all genotypes and populate the data store.
+	 * Load all genotypes and populate the data store. Rows of the BED file in
+	 * the order of the store are copied as entries, other files are
+	 * transposed. Only the genotypes of the markers in the catalog of the
+	 * store are read, which needs a marker ordered store if the catalog leaves
+	 * out markers.
 	 * 
 	 * @param store
 	 *            the data store to populate.
@@ -96,87 +129,231 @@ public class BinaryDataSetReader extends AbstractDataSetReader {
 	 *             if a read error occours.
 	 */
 	public void loadGenotypes(DataStore store) throws IOException {
-		Map<String, IndividualEntry> individuals = store.getIndividuals();
-		Map<String, MarkerEntry> markers = store.getMarkers();
+		int individuals = store.getIndividuals().size();
+		MarkerCatalog catalog = store.getMarkers();
+		int markers = catalog.getRowCount();
 
-		// Get the BED input stream and construct a decoder using it.
+		// Read the header to determine the mode of the file.
 		FileInputStream in = new FileInputStream(dataSet.getBEDFile());
-		BufferedInputStream input = new BufferedInputStream(in);
-		BedDecoder decoder = new BedDecoder(input, individuals.size(),
-				markers.size());
-		BinaryParser parser;
-		byte[] data;
-
-		// Determine the mode of the file and construct the correct parser.
-		switch (decoder.getMode()) {
+		BedOrder mode;
+
+		try {
+			mode = new BedDecoder(new BufferedInputStream(in), individuals,
+					markers).getMode();
+		} finally {
+			in.close();
+		}
+
+		boolean markerMajor;
+
+		switch (mode) {
 		case INDIVIDUAL:
-			parser = new IndividualOrderBinaryParser(store, markers);
+			markerMajor = false;
 			break;
 		case MARKER:
-			parser = new MarkerOrderBinaryParser(store, individuals);
+			markerMajor = true;
 			break;
 		default:
-			throw new IOException("Invalid BED mode: "
-					+ decoder.getMode().toString());
+			throw new IOException("Invalid BED mode: " + mode.toString());
 		}
 
-		// Read all the entries.
-		int index = 0;
+		if (!store.isMarkerOrdered() && !catalog.isComplete())
+			throw new IOException(
+					"A marker selection needs a marker ordered data store.");
 
-		while ((data = decoder.readEntry()) != null)
-			parser.parse(data, index++);
+		int rows = markerMajor ? markers : individuals;
+		int columns = markerMajor ? individuals : markers;
 
+		if (markerMajor == store.isMarkerOrdered())
+			loadRows(store, markerMajor ? catalog.getSize() : rows,
+					BedDecoder.getGenotypeSize(columns));
+		else
+			loadTransposed(store, rows, columns);
 	}
 
-	private static abstract class BinaryParser {
-		protected DataStore store;
-		protected int density;
+	/**
+	 * Load the rows of a BED file in the order of the store, split into one
+	 * contiguous range of entries per thread. Each thread reads blocks of
+	 * consecutive rows at their known offsets and copies them into the store.
+	 */
+	private void loadRows(final DataStore store, int rows, final int rowSize)
+			throws IOException {
+		RandomAccessFile file = new RandomAccessFile(dataSet.getBEDFile(), "r");
+		final FileChannel channel = file.getChannel();
+		int count = Math.min(threads, Math.max(1, rows));
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+		try {
+			for (int t = 0; t < count; ++t) {
+				final int first = (int) ((long) rows * t / count);
+				final int last = (int) ((long) rows * (t + 1) / count);
+
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						loadRows(store, channel, first, last, rowSize);
+						return null;
+					}
+				}));
+			}
 
-		public BinaryParser(DataStore store) {
-			this.store = store;
-			this.density = BedDecoder.GENOTYPES_PER_BYTE;
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			throw new IOException("Loading of the genotypes was interrupted.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause().toString());
+		} finally {
+			executor.shutdownNow();
+			file.close();
 		}
-
-		public abstract void parse(byte[] data, int index) throws IOException;
 	}
 
-	private static class IndividualOrderBinaryParser extends BinaryParser {
-		private Map<String, MarkerEntry> markers;
-
-		public IndividualOrderBinaryParser(DataStore store,
-				Map<String, MarkerEntry> markers) {
-			super(store);
-
-			this.markers = markers;
+	/**
+	 * Load the entries from first to last, exclusive. The rows of the markers
+	 * left out of the catalog are skipped.
+	 */
+	private static void loadRows(DataStore store, FileChannel channel,
+			int first, int last, int rowSize) throws IOException {
+		MarkerCatalog catalog = store.isMarkerOrdered() ? store.getMarkers()
+				: null;
+		int block = Math.max(1, ROW_BUFFER_SIZE / rowSize);
+		byte[] buffer = new byte[block * rowSize];
+		byte[] row = new byte[rowSize];
+
+		for (int index = first, rows; index < last; index += rows) {
+			int start = catalog == null ? index : catalog.getRow(index);
+
+			// The entries in consecutive rows of the file.
+			rows = 1;
+			while (rows < block && index + rows < last
+					&& (catalog == null || catalog.getRow(index + rows) == start
+							+ rows))
+				++rows;
+
+			readFully(channel, ByteBuffer.wrap(buffer, 0, rows * rowSize),
+					BedDecoder.HEADER_SIZE + (long) start * rowSize);
+
+			// Copy the block as a whole, so that a file store can buffer it
+			// as consecutive writes.
+			synchronized (store) {
+				for (int r = 0; r < rows; ++r) {
+					System.arraycopy(buffer, r * rowSize, row, 0, rowSize);
+					store.setEntry(index + r, row);
+				}
+			}
 		}
+	}
 
-		@Override
-		public void parse(byte[] data, int index) throws IOException {
-			for (int pos = 0; pos < markers.size(); ++pos) {
-				int genotype = (data[pos / density] >> (pos % density) * 2) & 0x3;
-
-				store.setGenotype(index, pos, Genotype.getByValue(genotype));
+	/**
+	 * Load a BED file in the other order than the store. The file is read in
+	 * strips of columns across all rows, and every strip is transposed into
+	 * complete entries of the store. Strips without any marker of the catalog
+	 * are skipped.
+	 */
+	private void loadTransposed(DataStore store, int rows, int columns)
+			throws IOException {
+		MarkerCatalog catalog = store.getMarkers();
+		int next = 0;
+
+		int rowSize = BedDecoder.getGenotypeSize(columns);
+		int stripSize = Math.max(1,
+				Math.min(rowSize, TRANSPOSE_BUFFER_SIZE / Math.max(1, rows)));
+		byte[] strip = new byte[rows * stripSize];
+		byte[][] entries = new byte[stripSize * BedDecoder.GENOTYPES_PER_BYTE][BedDecoder
+				.getGenotypeSize(rows)];
+		RandomAccessFile file = new RandomAccessFile(dataSet.getBEDFile(), "r");
+		FileChannel channel = file.getChannel();
+
+		try {
+			for (int offset = 0; offset < rowSize; offset += stripSize) {
+				int bytes = Math.min(stripSize, rowSize - offset);
+				int column = offset * BedDecoder.GENOTYPES_PER_BYTE;
+				int count = Math.min(bytes * BedDecoder.GENOTYPES_PER_BYTE,
+						columns - column);
+
+				if (store.isMarkerOrdered()
+						&& (next == catalog.getSize() || catalog.getRow(next) >= column
+								+ count))
+					continue;
+
+				// Read the strip of every row, at once if it is the whole row.
+				if (bytes == rowSize)
+					readFully(channel, ByteBuffer.wrap(strip, 0, rows * bytes),
+							BedDecoder.HEADER_SIZE);
+				else
+					for (int r = 0; r < rows; ++r)
+						readFully(channel,
+								ByteBuffer.wrap(strip, r * bytes, bytes),
+								BedDecoder.HEADER_SIZE + (long) r * rowSize
+										+ offset);
+
+				transpose(strip, rows, bytes, entries);
+				if (!store.isMarkerOrdered())
+					for (int c = 0; c < count; ++c)
+						store.setEntry(column + c, entries[c]);
+				else
+					for (; next < catalog.getSize()
+							&& catalog.getRow(next) < column + count; ++next)
+						store.setEntry(next, entries[catalog.getRow(next)
+								- column]);
 			}
+		} finally {
+			file.close();
 		}
 	}
 
-	private static class MarkerOrderBinaryParser extends BinaryParser {
-		private Map<String, IndividualEntry> individuals;
-
-		public MarkerOrderBinaryParser(DataStore store,
-				Map<String, IndividualEntry> individuals) {
-			super(store);
-
-			this.individuals = individuals;
+	/**
+	 * Transpose a strip of packed rows into packed entries, with stride bytes
+	 * per row. Each byte of four rows makes a 4x4 tile of genotypes, giving
+	 * one byte of four entries. The rows are taken in blocks of TILE_SIZE, so
+	 * that the bytes of a block stay in the cache across the columns.
+	 * 
+	 * @param strip
+	 *            the packed rows.
+	 * @param rows
+	 *            the number of rows.
+	 * @param stride
+	 *            the number of bytes per row.
+	 * @param entries
+	 *            at least 4 * stride entries of the packed size of the rows.
+	 */
+	static void transpose(byte[] strip, int rows, int stride, byte[][] entries) {
+		for (int tile = 0; tile < rows; tile += TILE_SIZE) {
+			int end = Math.min(tile + TILE_SIZE, rows);
+
+			for (int c = 0; c < stride; ++c)
+				for (int r = tile; r < end; r += BedDecoder.GENOTYPES_PER_BYTE) {
+					int packed = 0;
+
+					// The bytes of the four rows, row j at bits 8j to 8j + 7.
+					for (int j = 0; j < BedDecoder.GENOTYPES_PER_BYTE
+							&& r + j < rows; ++j)
+						packed |= (strip[(r + j) * stride + c] & 0xff) << 8 * j;
+
+					for (int k = 0; k < BedDecoder.GENOTYPES_PER_BYTE; ++k) {
+						int value = 0;
+
+						for (int j = 0; j < BedDecoder.GENOTYPES_PER_BYTE; ++j)
+							value |= ((packed >>> 8 * j + 2 * k) & 0x3) << 2 * j;
+						entries[c * BedDecoder.GENOTYPES_PER_BYTE + k][r
+								/ BedDecoder.GENOTYPES_PER_BYTE] = (byte) value;
+					}
+				}
 		}
+	}
 
-		@Override
-		public void parse(byte[] data, int index) throws IOException {
-			for (int pos = 0; pos < individuals.size(); ++pos) {
-				int genotype = (data[pos / density] >> (pos % density) * 2) & 0x3;
-				
-				store.setGenotype(pos, index, Genotype.getByValue(genotype));
-			}
-		}
+	/**
+	 * Fill a buffer from the given position of the file.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		int start = buffer.position();
+
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position() - start) < 0)
+				throw new EOFException("Truncated BED file.");
 	}
 }
@@ -10,6 +10,11 @@ public class BedDecoder {
 	private BedOrder mode;
 
 	public final static int GENOTYPES_PER_BYTE = 4;
+
+	/**
+	 * The number of bytes before the first entry.
+	 */
+	public final static int HEADER_SIZE = 3;
 	
 	/**
 	 * Returns the byte size needed to hold a specified amount of genotypes.
@@ -54,11 +59,19 @@ public class BedDecoder {
 	public byte[] readEntry() throws IOException {
 		byte data[] = new byte[size];
 
-		// If there's nothing to read, return null.
-		if (input.read(data) == -1)
-			return null;
-		else
-			return data;
+		int count = 0;
+
+		// A buffered read may return part of a large entry, so read until it
+		// is complete. If there's nothing to read, return null.
+		while (count < size) {
+			int read = input.read(data, count, size - count);
+
+			if (read == -1)
+				break;
+			count += read;
+		}
+
+		return count == 0 ? null : data;
 	}
 
 }
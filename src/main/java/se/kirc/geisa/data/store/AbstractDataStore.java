@@ -28,8 +28,6 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
-import se.kirc.geisa.data.plink.Genotype;
-
 /**
  * LinkedHashMap<K, V> is used to ensure insertion order.
  * 
@@ -44,10 +42,9 @@ public abstract class AbstractDataStore implements DataStore, Serializable {
 	public static final int GENOTYPE_DENSITY = 4;
 
 	protected Map<String, IndividualEntry> individuals;
-	protected Map<String, MarkerEntry> markers;
+	protected MarkerCatalog markers;
 
 	protected Map<IndividualEntry, Integer> individualIndices;
-	protected Map<MarkerEntry, Integer> markerIndices;
 
 	protected int entrySize;
 	protected int size;
@@ -57,12 +54,11 @@ public abstract class AbstractDataStore implements DataStore, Serializable {
 	 *
 	 */
 	protected AbstractDataStore(Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) {
+			MarkerCatalog markers) {
 		// Initialize the hash maps and index lists.
 		this.individuals = new LinkedHashMap<String, IndividualEntry>();
-		this.markers = new LinkedHashMap<String, MarkerEntry>();
+		this.markers = markers;
 		this.individualIndices = new HashMap<IndividualEntry, Integer>();
-		this.markerIndices = new HashMap<MarkerEntry, Integer>();
 		this.VariableInInteractionFile=false;
 		
 		// Add all the individuals.
@@ -70,15 +66,9 @@ public abstract class AbstractDataStore implements DataStore, Serializable {
 			this.individualIndices.put(entry, this.individuals.size());
 			this.individuals.put(entry.getId(), entry);
 		}
-		
-		// Add all the markers.
-		for (MarkerEntry entry : markers) {
-			this.markerIndices.put(entry, this.markers.size());
-			this.markers.put(entry.getId(), entry);
-		}
 	}
 	
-	public Map<String, MarkerEntry> getMarkers() {
+	public MarkerCatalog getMarkers() {
 		return markers;
 	}
 
@@ -86,16 +76,11 @@ public abstract class AbstractDataStore implements DataStore, Serializable {
 		return individuals;
 	}
 
-	public void setGenotype(IndividualEntry individual, MarkerEntry marker,
-			Genotype genotype) throws IOException {
-		setGenotype(getIndividualIndex(individual), getMarkerIndex(marker),
-				genotype);
-	}
-
-	public Genotype getGenotype(IndividualEntry individual, MarkerEntry marker)
-			throws IOException {
-		return getGenotype(getIndividualIndex(individual),
-				getMarkerIndex(marker));
+	/**
+	 * Get the number of bytes of an entry.
+	 */
+	public int getEntrySize() {
+		return entrySize;
 	}
 
 	public int getIndividualIndex(IndividualEntry individual) {
@@ -104,6 +89,10 @@ public abstract class AbstractDataStore implements DataStore, Serializable {
 		return index == null ? -1 : index;
 	}
 
+	public void prefetch(int first, int last) throws IOException {
+		// The entries are not read ahead.
+	}
+
 	public boolean isVariablePresentInInteractionFile() {
 		return VariableInInteractionFile;
 	}
@@ -111,10 +100,4 @@ public abstract class AbstractDataStore implements DataStore, Serializable {
 	public void setVariablePresentInInteractionFile(boolean isENVColumnPresent) {
 		this.VariableInInteractionFile=isENVColumnPresent;
 	}
-	
-	public int getMarkerIndex(MarkerEntry marker) {
-		Integer index = markerIndices.get(marker);
-
-		return index == null ? -1 : index;
-	}
 }
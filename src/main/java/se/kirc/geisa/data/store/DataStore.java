@@ -16,24 +16,60 @@ import se.kirc.geisa.data.plink.Genotype;
 public interface DataStore extends Iterable<DataStoreEntry> {
 	Map<String, IndividualEntry> getIndividuals();
 
-	Map<String, MarkerEntry> getMarkers();
+	MarkerCatalog getMarkers();
 
 	void setGenotype(int individual, int marker, Genotype genotype)
 			throws IOException;
 
-	void setGenotype(IndividualEntry individual, MarkerEntry marker,
-			Genotype genotype) throws IOException;
-
 	Genotype getGenotype(int individual, int marker) throws IOException;
 
-	Genotype getGenotype(IndividualEntry individual, MarkerEntry marker)
-			throws IOException;
-
 	int getIndividualIndex(IndividualEntry individual);
 
-	int getMarkerIndex(MarkerEntry marker);
-
 	DataStoreEntry getEntry(int index) throws IOException;
+
+	/**
+	 * Whether an entry holds the genotypes of a marker, otherwise of an
+	 * individual.
+	 */
+	boolean isMarkerOrdered();
+
+	/**
+	 * Replace a whole entry with packed genotypes.
+	 * 
+	 * @param index
+	 *            the index of the entry.
+	 * @param packed
+	 *            the genotypes, packed as in {@link DataStoreEntry}.
+	 * @throws IOException
+	 *             if a write error occurs.
+	 */
+	void setEntry(int index, byte[] packed) throws IOException;
+
+	/**
+	 * Read the packed genotypes of an entry into an existing array.
+	 * 
+	 * @param index
+	 *            the index of the entry.
+	 * @param destination
+	 *            an array of at least the entry size.
+	 * @throws IOException
+	 *             if a read error occurs.
+	 */
+	void readEntryInto(int index, byte[] destination) throws IOException;
+
+	/**
+	 * Announce that the calling thread reads the entries of a range of
+	 * markers next, in order. A store reading from a file then reads the rows
+	 * of the range once and no further; the other stores ignore it.
+	 * 
+	 * @param first
+	 *            the index of the first entry.
+	 * @param last
+	 *            the index of the last entry.
+	 * @throws IOException
+	 *             if a read error occurs.
+	 */
+	void prefetch(int first, int last) throws IOException;
 	
 	public boolean isVariablePresentInInteractionFile();
 	
@@ -1,6 +1,7 @@
 package se.kirc.geisa.data.store;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -25,35 +26,108 @@ public class DataStoreEntry implements Serializable, Iterable<Genotype> {
 	private int size;
 	private int density;
 
+	/**
+	 * The packed genotypes of an entry viewing a buffer, e.g. a row of a
+	 * memory mapped file, in which case genotypes is null.
+	 */
+	private transient ByteBuffer buffer;
+
 	public DataStoreEntry(byte[] genotypes, int size, int density) {
 		this.genotypes = genotypes;
 		this.size = size;
 		this.density = density;
 	}
 
+	/**
+	 * Constructs an entry viewing the packed genotypes from position 0 to the
+	 * limit of a buffer. The buffer is not copied, until the entry is
+	 * serialized.
+	 * 
+	 * @param genotypes
+	 *            the packed genotypes.
+	 * @param size
+	 *            the number of genotypes.
+	 * @param density
+	 *            the number of genotypes per byte.
+	 */
+	public DataStoreEntry(ByteBuffer genotypes, int size, int density) {
+		this.buffer = genotypes;
+		this.size = size;
+		this.density = density;
+	}
+
 	public int getSize() {
 		return size;
 	}
 
+	public int getDensity() {
+		return density;
+	}
+
+	/**
+	 * Get the packed genotypes, density genotypes per byte with two bits each.
+	 * The array is not copied and should not be modified.
+	 *
+	 * @return the packed genotypes.
+	 */
+	public byte[] getPackedGenotypes() {
+		if (genotypes != null)
+			return genotypes;
+
+		// A buffer view is copied.
+		byte[] result = new byte[buffer.limit()];
+		ByteBuffer view = buffer.duplicate();
+
+		view.position(0);
+		view.get(result);
+
+		return result;
+	}
+
+	/**
+	 * Get the packed genotypes as a read only buffer from position 0. Neither
+	 * an array nor a buffer view is copied.
+	 * 
+	 * @return the packed genotypes.
+	 */
+	public ByteBuffer getGenotypeBuffer() {
+		if (genotypes != null)
+			return ByteBuffer.wrap(genotypes).asReadOnlyBuffer();
+
+		return buffer.asReadOnlyBuffer();
+	}
+
+	private byte getByte(int index) {
+		return genotypes != null ? genotypes[index] : buffer.get(index);
+	}
+
+	/**
+	 * Serialize an entry viewing a buffer as an array.
+	 */
+	private Object writeReplace() {
+		if (genotypes != null)
+			return this;
+
+		return new DataStoreEntry(getPackedGenotypes(), size, density);
+	}
+
 	public Genotype getGenotype(int index) {
 		if (index < 0 || index >= size)
 			throw new IndexOutOfBoundsException();
 
-		return Genotype.getByValue((genotypes[index / density] >> (index
+		return Genotype.getByValue((getByte(index / density) >> (index
 				% density) * 2) & 0x3);
 	}
 
 	public Iterator<Genotype> iterator() {
-		return new EntryIterator(genotypes, size);
+		return new EntryIterator(size);
 	}
 
 	private class EntryIterator implements Iterator<Genotype> {
-		private byte[] genotypes;
 		private int size;
 		private int index;
 
-		public EntryIterator(byte[] genotypes, int size) {
-			this.genotypes = genotypes;
+		public EntryIterator(int size) {
 			this.size = size;
 			this.index = 0;
 		}
@@ -67,7 +141,7 @@ public class DataStoreEntry implements Serializable, Iterable<Genotype> {
 				throw new NoSuchElementException();
 
 			Genotype genotype = Genotype
-					.getByValue((genotypes[index / density] >> (index % density) * 2) & 0x3);
+					.getByValue((getByte(index / density) >> (index % density) * 2) & 0x3);
 
 			index++;
 
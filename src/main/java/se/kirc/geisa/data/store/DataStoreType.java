@@ -1,5 +1,5 @@
 package se.kirc.geisa.data.store;
 
 public enum DataStoreType {
-	MEMORY, FILE
+	MEMORY, FILE, MAPPED, OFFHEAP, STREAM
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*
+ * IndividualTable.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.data.store;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Sex;
+
+/**
+ * The individuals of a data set held column by column: the affection status,
+ * sex and interaction variable as one byte per individual, and the covariates
+ * as a dense column major matrix. Unknown covariates are NaN.
+ */
+public class IndividualTable implements Serializable {
+	private static final long serialVersionUID = -2985196113964851207L;
+
+	private String[] ids;
+	private Map<String, Integer> indices;
+	private byte[] affectionStatus;
+	private byte[] sexes;
+	private byte[] interactionVariables;
+	private double[] covariates;
+	private int covariateCount;
+
+	/**
+	 * Constructs the table from individual entries, in the order given.
+	 * 
+	 * @param individuals
+	 *            the individuals.
+	 */
+	public IndividualTable(Collection<IndividualEntry> individuals) {
+		int size = individuals.size();
+
+		ids = new String[size];
+		indices = new HashMap<String, Integer>(size * 2);
+		affectionStatus = new byte[size];
+		sexes = new byte[size];
+		interactionVariables = new byte[size];
+
+		// The number of covariates is given by the first individual with any.
+		for (IndividualEntry individual : individuals)
+			if (individual.getCovariate() != null
+					&& individual.getCovariate().size() > 0) {
+				covariateCount = individual.getCovariate().size();
+				break;
+			}
+		covariates = new double[size * covariateCount];
+
+		int i = 0;
+
+		for (IndividualEntry individual : individuals) {
+			AffectionStatus status = individual.getAffectionStatus();
+			Sex sex = individual.getSex();
+			List<Float> covariate = individual.getCovariate();
+
+			ids[i] = individual.getId().intern();
+			indices.put(ids[i], i);
+			affectionStatus[i] = (byte) (status == null ? AffectionStatus.MISSING
+					.getValue() : status.getValue());
+			sexes[i] = (byte) (sex == null ? Sex.UNKNOWN.getValue() : sex
+					.getValue());
+			interactionVariables[i] = toByte(individual.getInteractionVariable());
+			for (int c = 0; c < covariateCount; ++c)
+				covariates[c * size + i] = covariate != null
+						&& c < covariate.size() ? covariate.get(c) : Double.NaN;
+			++i;
+		}
+	}
+
+	/**
+	 * Clamp an interaction variable to a byte, keeping its sign.
+	 */
+	public static byte toByte(int interactionVariable) {
+		return (byte) Math.max(Byte.MIN_VALUE,
+				Math.min(Byte.MAX_VALUE, interactionVariable));
+	}
+
+	/**
+	 * Get the number of individuals.
+	 */
+	public int getSize() {
+		return ids.length;
+	}
+
+	public String getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Get the index of an individual.
+	 * 
+	 * @return the index, or -1 if there is no such individual.
+	 */
+	public int getIndex(String id) {
+		Integer index = indices.get(id);
+
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Get the affection status values of all individuals. The array is not
+	 * copied.
+	 */
+	public byte[] getAffectionStatus() {
+		return affectionStatus;
+	}
+
+	/**
+	 * Get the sex values of all individuals. The array is not copied.
+	 */
+	public byte[] getSexes() {
+		return sexes;
+	}
+
+	/**
+	 * Get the interaction variables of all individuals, -1 if missing. The
+	 * array is not copied.
+	 */
+	public byte[] getInteractionVariables() {
+		return interactionVariables;
+	}
+
+	/**
+	 * Get the covariates. Covariate c of individual i is found at
+	 * c * getSize() + i. The array is not copied.
+	 */
+	public double[] getCovariates() {
+		return covariates;
+	}
+
+	/**
+	 * Get the number of covariates of each individual.
+	 */
+	public int getCovariateCount() {
+		return covariateCount;
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * MarkerCatalog.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.data.store;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import se.kirc.geisa.data.plink.Allele;
+
+/**
+ * The markers of a data set held column by column and addressed by their
+ * ordinal: a chromosome code into a table of interned chromosome names, the
+ * base pair position and both alleles packed in one byte. The IDs are kept in
+ * a single character pool with an open addressing hash index.
+ * 
+ * A catalog may hold only some of the markers of a data set. The row of each
+ * marker in the genotype file is then kept as well.
+ */
+public class MarkerCatalog implements Serializable {
+	private static final long serialVersionUID = 4610236885527390871L;
+
+	/**
+	 * The largest number of distinct chromosome names.
+	 */
+	public static final int MAX_CHROMOSOMES = 256;
+
+	private static final Allele[] ALLELES = Allele.values();
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private int size;
+	private int rowCount;
+	private String[] chromosomeNames;
+	private boolean[] xChromosomes;
+	private int chromosomeCount;
+	private byte[] chromosomes;
+	private int[] positions;
+	private int[] rows;
+	private byte[] alleles;
+	private char[] idPool;
+	private int[] idOffsets;
+	private int[] slots;
+
+	/**
+	 * Constructs an empty catalog.
+	 */
+	public MarkerCatalog() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty catalog.
+	 * 
+	 * @param capacity
+	 *            the expected number of markers.
+	 */
+	public MarkerCatalog(int capacity) {
+		capacity = Math.max(capacity, 1);
+		chromosomeNames = new String[MAX_CHROMOSOMES];
+		xChromosomes = new boolean[MAX_CHROMOSOMES];
+		chromosomes = new byte[capacity];
+		positions = new int[capacity];
+		rows = new int[capacity];
+		alleles = new byte[capacity];
+		idPool = new char[capacity * 8];
+		idOffsets = new int[capacity + 1];
+		slots = new int[Integer.highestOneBit(capacity) * 4];
+	}
+
+	/**
+	 * Add a marker after the last one.
+	 * 
+	 * @param id
+	 *            the ID of the marker.
+	 * @param chromosome
+	 *            the name of the chromosome.
+	 * @param position
+	 *            the base pair position.
+	 * @param firstAllele
+	 *            the first allele.
+	 * @param secondAllele
+	 *            the second allele.
+	 * @return the ordinal of the marker.
+	 * @throws IllegalArgumentException
+	 *             if there are too many distinct chromosome names.
+	 */
+	public int add(String id, String chromosome, int position,
+			Allele firstAllele, Allele secondAllele) {
+		if (size == chromosomes.length)
+			resize(size * 2);
+
+		int offset = idOffsets[size];
+
+		if (offset + id.length() > idPool.length)
+			idPool = Arrays.copyOf(idPool,
+					grow(idPool.length, offset + id.length()));
+		id.getChars(0, id.length(), idPool, offset);
+		idOffsets[size + 1] = offset + id.length();
+
+		chromosomes[size] = (byte) getChromosomeCode(chromosome);
+		positions[size] = position;
+		rows[size] = rowCount++;
+		alleles[size] = (byte) (firstAllele.ordinal() << 4 | secondAllele
+				.ordinal());
+
+		// Only the first marker of an ID can be found by it.
+		if (getIndex(id) < 0) {
+			if ((size + 1) * 2 > slots.length)
+				rehash(slots.length * 2);
+			insert(size);
+		}
+		return size++;
+	}
+
+	/**
+	 * Skip the next row of the genotype file, whose marker is not in the
+	 * catalog.
+	 */
+	public void skipRow() {
+		++rowCount;
+	}
+
+	/**
+	 * Shrink the columns to the number of markers.
+	 */
+	public void trimToSize() {
+		resize(size);
+		idPool = Arrays.copyOf(idPool, idOffsets[size]);
+	}
+
+	/**
+	 * Get the number of markers.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public String getId(int marker) {
+		return new String(idPool, idOffsets[marker], idOffsets[marker + 1]
+				- idOffsets[marker]);
+	}
+
+	/**
+	 * Get the ordinal of a marker.
+	 * 
+	 * @return the ordinal, or -1 if there is no such marker.
+	 */
+	public int getIndex(String id) {
+		int mask = slots.length - 1;
+
+		for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+			int marker = slots[slot] - 1;
+
+			if (marker < 0)
+				return -1;
+			if (matches(marker, id))
+				return marker;
+		}
+	}
+
+	public String getChromosome(int marker) {
+		return chromosomeNames[chromosomes[marker] & 0xff];
+	}
+
+	/**
+	 * Get the code of the chromosome of a marker. Markers on the same
+	 * chromosome have the same code.
+	 */
+	public int getChromosomeCode(int marker) {
+		return chromosomes[marker] & 0xff;
+	}
+
+	/**
+	 * Whether a marker is on the X chromosome.
+	 */
+	public boolean isXChromosome(int marker) {
+		return xChromosomes[chromosomes[marker] & 0xff];
+	}
+
+	public int getPosition(int marker) {
+		return positions[marker];
+	}
+
+	/**
+	 * Get the row of a marker in the genotype file.
+	 */
+	public int getRow(int marker) {
+		return rows[marker];
+	}
+
+	/**
+	 * Get the number of markers in the genotype file, including those not in
+	 * the catalog.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Whether the markers are all the markers of the genotype file, in order.
+	 */
+	public boolean isComplete() {
+		return rowCount == size;
+	}
+
+	public Allele getFirstAllele(int marker) {
+		return ALLELES[alleles[marker] >> 4 & 0xf];
+	}
+
+	public Allele getSecondAllele(int marker) {
+		return ALLELES[alleles[marker] & 0xf];
+	}
+
+	/**
+	 * Get the code of a chromosome name, adding it if it is new.
+	 */
+	private int getChromosomeCode(String chromosome) {
+		// Consecutive markers are usually on the same chromosome.
+		if (size > 0 && chromosomeNames[chromosomes[size - 1] & 0xff]
+				.equals(chromosome))
+			return chromosomes[size - 1] & 0xff;
+		for (int code = 0; code < chromosomeCount; ++code)
+			if (chromosomeNames[code].equals(chromosome))
+				return code;
+		if (chromosomeCount == MAX_CHROMOSOMES)
+			throw new IllegalArgumentException(String.format(
+					"More than %d chromosomes.", MAX_CHROMOSOMES));
+		chromosomeNames[chromosomeCount] = chromosome.intern();
+		xChromosomes[chromosomeCount] = chromosome.equalsIgnoreCase("X");
+		return chromosomeCount++;
+	}
+
+	private boolean matches(int marker, String id) {
+		int offset = idOffsets[marker];
+
+		if (idOffsets[marker + 1] - offset != id.length())
+			return false;
+		for (int i = 0; i < id.length(); ++i)
+			if (idPool[offset + i] != id.charAt(i))
+				return false;
+		return true;
+	}
+
+	private void insert(int marker) {
+		int mask = slots.length - 1;
+		int hash = 0;
+
+		for (int i = idOffsets[marker]; i < idOffsets[marker + 1]; ++i)
+			hash = 31 * hash + idPool[i];
+
+		int slot = mix(hash) & mask;
+
+		while (slots[slot] != 0)
+			slot = (slot + 1) & mask;
+		slots[slot] = marker + 1;
+	}
+
+	private void rehash(int capacity) {
+		int[] old = slots;
+
+		slots = new int[capacity];
+		for (int value : old)
+			if (value != 0)
+				insert(value - 1);
+	}
+
+	private void resize(int capacity) {
+		capacity = Math.max(capacity, 1);
+		chromosomes = Arrays.copyOf(chromosomes, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		rows = Arrays.copyOf(rows, capacity);
+		alleles = Arrays.copyOf(alleles, capacity);
+		idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+	}
+
+	/**
+	 * Double a capacity until it is at least the required one.
+	 */
+	private static int grow(int capacity, int required) {
+		long grown = Math.max((long) capacity * 2, required);
+
+		return (int) Math.min(grown, Integer.MAX_VALUE - 8);
+	}
+
+	/**
+	 * The hash of an ID, equal to the hash of its characters in the pool.
+	 */
+	private static int hash(String id) {
+		return mix(id.hashCode());
+	}
+
+	private static int mix(int hash) {
+		hash *= 0x9e3779b9;
+		return hash ^ hash >>> 16;
+	}
+}
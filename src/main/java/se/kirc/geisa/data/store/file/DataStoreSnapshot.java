@@ -0,0 +1,321 @@
+/*
+ * DataStoreSnapshot.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package se.kirc.geisa.data.store.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Allele;
+import se.kirc.geisa.data.plink.Sex;
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * A snapshot of a loaded data set in a single file, which is memory mapped by
+ * later runs instead of parsing the data set again.
+ * 
+ * The file starts with a header holding a magic number, the format version, a
+ * hash of the input files and the size of the tables. The tables follow, one
+ * column at a time: the individuals with their affection status, sex,
+ * interaction variable and covariates, then the markers. Last comes the
+ * marker ordered genotype matrix, with the rows of a SNP-major BED file.
+ * 
+ * The hash covers the path, length and modification time of every input file,
+ * so a snapshot is rebuilt when an input changes without reading the inputs.
+ */
+public final class DataStoreSnapshot {
+	private final static long MAGIC = 0x4745495341534e50L;
+	private final static int VERSION = 2;
+	private final static int HASH_SIZE = 20;
+	private final static int HEADER_SIZE = 8 + 4 + HASH_SIZE + 4;
+
+	private DataStoreSnapshot() {
+	}
+
+	/**
+	 * Calculate the hash identifying the input files.
+	 * 
+	 * @param inputs
+	 *            the input files, null for a missing one.
+	 * @return the hash.
+	 */
+	public static byte[] hash(File... inputs) {
+		return hash(null, inputs);
+	}
+
+	/**
+	 * Calculate the hash identifying the input files and the selection of
+	 * markers loaded from them.
+	 * 
+	 * @param selection
+	 *            a description of the selection, null for all markers.
+	 * @param inputs
+	 *            the input files, null for a missing one.
+	 * @return the hash.
+	 */
+	public static byte[] hash(String selection, File... inputs) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			out.writeBoolean(selection != null);
+			if (selection != null)
+				out.writeUTF(selection);
+			for (File input : inputs) {
+				out.writeBoolean(input != null);
+				if (input == null)
+					continue;
+				out.writeUTF(input.getAbsolutePath());
+				out.writeLong(input.length());
+				out.writeLong(input.lastModified());
+			}
+			out.close();
+
+			return digest.digest(bytes.toByteArray());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Open a snapshot as a memory mapped data store.
+	 * 
+	 * @param snapshot
+	 *            the snapshot file.
+	 * @param hash
+	 *            the hash of the current input files.
+	 * @return the data store, or null if the snapshot is missing, of another
+	 *         version or made from other input files.
+	 * @throws IOException
+	 *             if a read error occurs.
+	 */
+	public static DataStore open(File snapshot, byte[] hash) throws IOException {
+		if (!snapshot.isFile())
+			return null;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(snapshot)));
+
+		try {
+			byte[] stored = new byte[HASH_SIZE];
+
+			if (snapshot.length() < HEADER_SIZE || in.readLong() != MAGIC
+					|| in.readInt() != VERSION)
+				return null;
+			in.readFully(stored);
+			if (!Arrays.equals(stored, hash))
+				return null;
+
+			long offset = HEADER_SIZE + (long) in.readInt();
+			int count = in.readInt();
+			int mapped = in.readInt();
+			List<IndividualEntry> individuals = new ArrayList<IndividualEntry>(
+					count);
+
+			// The individual table.
+			for (int i = 0; i < count; ++i)
+				individuals.add(new IndividualEntry(in.readUTF()));
+			for (IndividualEntry individual : individuals)
+				individual.setAffectionStatus(readEnum(in,
+						AffectionStatus.values()));
+			for (IndividualEntry individual : individuals)
+				individual.setSex(readEnum(in, Sex.values()));
+			for (IndividualEntry individual : individuals)
+				individual.setInteractionVariable(in.readInt());
+			for (IndividualEntry individual : individuals) {
+				int covariates = in.readInt();
+
+				if (covariates < 0)
+					continue;
+
+				List<Float> covariate = new ArrayList<Float>(covariates);
+
+				for (int c = 0; c < covariates; ++c)
+					covariate.add(in.readFloat());
+				individual.setCovariate(covariate);
+			}
+
+			// The marker table.
+			int markerCount = in.readInt();
+			MarkerCatalog markers = new MarkerCatalog(markerCount);
+			String[] ids = new String[markerCount];
+			String[] chromosomes = new String[markerCount];
+			Allele[] firstAlleles = new Allele[markerCount];
+			Allele[] secondAlleles = new Allele[markerCount];
+
+			for (int m = 0; m < markerCount; ++m)
+				ids[m] = in.readUTF();
+			for (int m = 0; m < markerCount; ++m)
+				chromosomes[m] = in.readUTF();
+			for (int m = 0; m < markerCount; ++m)
+				firstAlleles[m] = readEnum(in, Allele.values());
+			for (int m = 0; m < markerCount; ++m)
+				secondAlleles[m] = readEnum(in, Allele.values());
+			for (int m = 0; m < markerCount; ++m)
+				markers.add(ids[m], chromosomes[m], in.readInt(),
+						firstAlleles[m], secondAlleles[m]);
+
+			boolean variablePresent = in.readBoolean();
+
+			if (snapshot.length() != offset + (long) ((mapped - 1) / 4 + 1)
+					* markerCount)
+				return null;
+
+			// Only the individuals of the genotype matrix index its rows, the
+			// others were only in the interaction file.
+			DataStore store = new MappedBedDataStore(individuals.subList(0,
+					mapped), markers, snapshot, offset);
+
+			for (IndividualEntry individual : individuals.subList(mapped,
+					count))
+				store.getIndividuals().put(individual.getId(), individual);
+			store.setVariablePresentInInteractionFile(variablePresent);
+
+			return store;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write a snapshot of a loaded data store. The snapshot is written to a
+	 * temporary file which then replaces the snapshot, so that a partial
+	 * snapshot is never opened.
+	 * 
+	 * @param snapshot
+	 *            the snapshot file.
+	 * @param hash
+	 *            the hash of the input files.
+	 * @param store
+	 *            the marker ordered data store.
+	 * @throws IOException
+	 *             if a write error occurs.
+	 */
+	public static void write(File snapshot, byte[] hash, DataStore store)
+			throws IOException {
+		if (!store.isMarkerOrdered())
+			throw new IllegalArgumentException(
+					"Only a marker ordered data store can be written as a snapshot.");
+
+		Collection<IndividualEntry> individuals = store.getIndividuals()
+				.values();
+		MarkerCatalog markers = store.getMarkers();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream tables = new DataOutputStream(bytes);
+		int mapped = 0;
+
+		// The individuals of the genotype matrix come first.
+		for (IndividualEntry individual : individuals)
+			if (store.getIndividualIndex(individual) >= 0)
+				++mapped;
+
+		// The individual table.
+		tables.writeInt(individuals.size());
+		tables.writeInt(mapped);
+		for (IndividualEntry individual : individuals)
+			tables.writeUTF(individual.getId());
+		for (IndividualEntry individual : individuals)
+			writeEnum(tables, individual.getAffectionStatus());
+		for (IndividualEntry individual : individuals)
+			writeEnum(tables, individual.getSex());
+		for (IndividualEntry individual : individuals)
+			tables.writeInt(individual.getInteractionVariable());
+		for (IndividualEntry individual : individuals) {
+			List<Float> covariate = individual.getCovariate();
+
+			tables.writeInt(covariate == null ? -1 : covariate.size());
+			if (covariate != null)
+				for (Float value : covariate)
+					tables.writeFloat(value);
+		}
+
+		// The marker table.
+		tables.writeInt(markers.getSize());
+		for (int m = 0; m < markers.getSize(); ++m)
+			tables.writeUTF(markers.getId(m));
+		for (int m = 0; m < markers.getSize(); ++m)
+			tables.writeUTF(markers.getChromosome(m));
+		for (int m = 0; m < markers.getSize(); ++m)
+			writeEnum(tables, markers.getFirstAllele(m));
+		for (int m = 0; m < markers.getSize(); ++m)
+			writeEnum(tables, markers.getSecondAllele(m));
+		for (int m = 0; m < markers.getSize(); ++m)
+			tables.writeInt(markers.getPosition(m));
+		tables.writeBoolean(store.isVariablePresentInInteractionFile());
+		tables.close();
+
+		File tmp = new File(snapshot.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp), 1 << 20));
+
+		try {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.write(hash);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+
+			// The genotype matrix.
+			byte[] row = new byte[(mapped - 1) / 4 + 1];
+
+			for (int m = 0; m < markers.getSize(); ++m) {
+				store.readEntryInto(m, row);
+				out.write(row);
+			}
+		} finally {
+			out.close();
+		}
+
+		if (snapshot.exists() && !snapshot.delete() || !tmp.renameTo(snapshot))
+			throw new IOException("Could not replace the snapshot " + snapshot);
+	}
+
+	private static void writeEnum(DataOutputStream out, Enum<?> value)
+			throws IOException {
+		out.writeInt(value == null ? -1 : value.ordinal());
+	}
+
+	private static <T> T readEnum(DataInputStream in, T[] values)
+			throws IOException {
+		int ordinal = in.readInt();
+
+		return ordinal < 0 ? null : values[ordinal];
+	}
+}
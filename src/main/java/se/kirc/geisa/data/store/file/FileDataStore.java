@@ -24,6 +24,8 @@ package se.kirc.geisa.data.store.file;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -31,14 +33,33 @@ import java.util.NoSuchElementException;
 import se.kirc.geisa.data.store.AbstractDataStore;
 import se.kirc.geisa.data.store.DataStoreEntry;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
+/**
+ * A data store in a temporary file. Whole entries are read and written with
+ * positional bulk operations on the file channel, and consecutive entries are
+ * collected in a write buffer. The buffer is flushed by the first read after
+ * a write, so once the data is loaded the reads take no lock and the threads
+ * read in parallel.
+ */
 public abstract class FileDataStore extends AbstractDataStore {
 	private static final long serialVersionUID = -7646700457690510105L;
+
+	private final static int WRITE_BUFFER_SIZE = 1 << 20;
+
 	protected RandomAccessFile file;
+	private transient FileChannel channel;
+	private transient ByteBuffer buffer;
+	private transient ByteBuffer single;
+	private long bufferPosition;
+
+	/**
+	 * Whether the write buffer holds entries not yet in the file.
+	 */
+	private volatile boolean buffered;
 
 	public FileDataStore(Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) throws IOException {
+			MarkerCatalog markers) throws IOException {
 		super(individuals, markers);
 
 		// Create a temp file which is removed when the program exits.
@@ -47,19 +68,104 @@ public abstract class FileDataStore extends AbstractDataStore {
 
 		// Create a random access file that will be used for accessing data.
 		file = new RandomAccessFile(tmp, "rw");
+		channel = file.getChannel();
+		buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		single = ByteBuffer.allocate(1);
 	}
 
 	public DataStoreEntry getEntry(int index) throws IOException {
 		// Get the genotype data.
 		byte[] data = new byte[entrySize];
 
-		// Read the data from the store.
-		file.seek(entrySize * index);
-		file.read(data);
+		readEntryInto(index, data);
 
 		return new DataStoreEntry(data, size, GENOTYPE_DENSITY);
 	}
 
+	public synchronized void setEntry(int index, byte[] packed)
+			throws IOException {
+		long position = (long) entrySize * index;
+
+		// Append to the write buffer if the entry follows the buffered ones.
+		if (position != bufferPosition + buffer.position()
+				|| buffer.remaining() < entrySize)
+			flush();
+		if (buffer.position() == 0)
+			bufferPosition = position;
+
+		if (entrySize > buffer.capacity())
+			writeFully(ByteBuffer.wrap(packed, 0, entrySize), position);
+		else {
+			buffer.put(packed, 0, entrySize);
+			buffered = true;
+		}
+	}
+
+	public void readEntryInto(int index, byte[] destination)
+			throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(destination, 0, entrySize);
+		long position = (long) entrySize * index;
+
+		if (buffered)
+			synchronizedFlush();
+
+		// Entries that were never written are read as zeros.
+		while (data.hasRemaining()) {
+			int count = channel.read(data, position + data.position());
+
+			if (count < 0) {
+				while (data.hasRemaining())
+					data.put((byte) 0);
+			}
+		}
+	}
+
+	/**
+	 * Read a single byte, zero if it was never written.
+	 */
+	protected int readByte(long position) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(1);
+
+		if (buffered)
+			synchronizedFlush();
+
+		return channel.read(data, position) > 0 ? data.get(0) & 0xff : 0;
+	}
+
+	/**
+	 * Write a single byte.
+	 */
+	protected synchronized void writeByte(long position, int value)
+			throws IOException {
+		flush();
+		single.clear();
+		single.put((byte) value);
+		single.flip();
+		writeFully(single, position);
+	}
+
+	private synchronized void synchronizedFlush() throws IOException {
+		flush();
+	}
+
+	/**
+	 * Write the buffered entries to the file.
+	 */
+	private void flush() throws IOException {
+		if (buffer.position() == 0)
+			return;
+
+		buffer.flip();
+		writeFully(buffer, bufferPosition);
+		buffer.clear();
+		buffered = false;
+	}
+
+	private void writeFully(ByteBuffer data, long position) throws IOException {
+		while (data.hasRemaining())
+			position += channel.write(data, position);
+	}
+
 	public Iterator<DataStoreEntry> iterator() {
 		return new EntryIterator(size);
 	}
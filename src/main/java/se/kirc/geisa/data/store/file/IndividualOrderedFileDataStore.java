@@ -5,7 +5,7 @@ import java.util.Collection;
 
 import se.kirc.geisa.data.plink.Genotype;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 /**
  * 
@@ -20,32 +20,34 @@ public class IndividualOrderedFileDataStore extends FileDataStore {
 
 	public IndividualOrderedFileDataStore(
 			Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) throws IOException {
+			MarkerCatalog markers) throws IOException {
 		super(individuals, markers);
+
+		// Calculate the entry size.
+		entrySize = (markers.getSize() - 1) / GENOTYPE_DENSITY + 1;
+		size = markers.getSize();
+	}
+
+	public boolean isMarkerOrdered() {
+		return false;
 	}
 
 	public void setGenotype(int individual, int marker, Genotype genotype)
 			throws IOException {
 		// Calculate the index of the genotype.
-		int index = entrySize * individual + marker / GENOTYPE_DENSITY;
+		long index = (long) entrySize * individual + marker / GENOTYPE_DENSITY;
 
-		// Seek to the index and write the genotype.
-		file.seek(index);
-		file.write(file.read()
+		// Read the byte at the index and write the genotype.
+		writeByte(index, readByte(index)
 				| (genotype.getValue() & 0x3) << (marker % GENOTYPE_DENSITY) * 2);
-
-		// Calculate the entry size.
-		entrySize = (markers.size() - 1) / GENOTYPE_DENSITY + 1;
-		size = markers.size();
 	}
 
 	public Genotype getGenotype(int individual, int marker) throws IOException {
 		// Calculate the index of the genotype.
-		int index = entrySize * individual + marker / GENOTYPE_DENSITY;
+		long index = (long) entrySize * individual + marker / GENOTYPE_DENSITY;
 
-		// Seek to the index and read the genotype.
-		file.seek(index);
+		// Read the genotype.
 		return Genotype
-				.getByValue((file.read() >> (marker % GENOTYPE_DENSITY) * 2) & 0x3);
+				.getByValue((readByte(index) >> (marker % GENOTYPE_DENSITY) * 2) & 0x3);
 	}
 }
@@ -0,0 +1,225 @@
+/*
+ * MappedBedDataStore.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package se.kirc.geisa.data.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.store.AbstractDataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * A read only, marker ordered data store viewing a SNP-major BED file mapped
+ * into memory. The genotypes are never loaded or copied, an entry is a view of
+ * its row in the file. The packed genotype codes of the BED file are the
+ * genotype values of the other data stores. Rows in the same format at an
+ * offset of another file, e.g. a {@link DataStoreSnapshot}, can be mapped as
+ * well.
+ * 
+ * Since a single mapping is limited to 2 GB, the file is mapped in chunks of
+ * whole rows. The rows of markers left out of the catalog are mapped but never
+ * read.
+ */
+public class MappedBedDataStore extends AbstractDataStore {
+	private static final long serialVersionUID = -2280357406839437711L;
+
+	private final static int HEADER_SIZE = 3;
+
+	private File file;
+	private long offset;
+	private int rows;
+	private int fileRows;
+	private int rowsPerMapping;
+	private transient ByteBuffer[] mappings;
+
+	public MappedBedDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers, File bed) throws IOException {
+		this(individuals, markers, bed, HEADER_SIZE, false);
+
+		// Read the header and verify the magic number and the mode.
+		RandomAccessFile file = new RandomAccessFile(bed, "r");
+
+		try {
+			if (file.read() != 0x6c || file.read() != 0x1b)
+				throw new IOException("Invalid header in BED file.");
+			if ((file.read() & 0x1) == 0)
+				throw new IOException(
+						"Only SNP-major BED files can be memory mapped.");
+		} finally {
+			file.close();
+		}
+
+		map();
+	}
+
+	/**
+	 * Constructs a store viewing SNP-major rows starting at an offset of a
+	 * file.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @param offset
+	 *            the position of the first row.
+	 */
+	public MappedBedDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers, File file, long offset)
+			throws IOException {
+		this(individuals, markers, file, offset, true);
+	}
+
+	private MappedBedDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers, File file, long offset,
+			boolean map) throws IOException {
+		super(individuals, markers);
+
+		this.file = file;
+		this.offset = offset;
+		this.size = individuals.size();
+		this.entrySize = (size - 1) / GENOTYPE_DENSITY + 1;
+		this.rows = markers.getSize();
+		this.fileRows = markers.getRowCount();
+		this.rowsPerMapping = Math.max(1, Integer.MAX_VALUE / entrySize);
+
+		if (map)
+			map();
+	}
+
+	/**
+	 * Map the rows of the file.
+	 */
+	private void map() throws IOException {
+		RandomAccessFile file = new RandomAccessFile(this.file, "r");
+
+		try {
+			if (file.length() < offset + (long) entrySize * fileRows)
+				throw new IOException("Truncated file: " + this.file);
+
+			FileChannel channel = file.getChannel();
+
+			mappings = new ByteBuffer[(fileRows + rowsPerMapping - 1)
+					/ rowsPerMapping];
+			for (int m = 0; m < mappings.length; ++m) {
+				long position = offset + (long) m * rowsPerMapping
+						* entrySize;
+				int count = Math.min(rowsPerMapping, fileRows - m
+						* rowsPerMapping);
+
+				mappings[m] = channel.map(FileChannel.MapMode.READ_ONLY,
+						position, (long) count * entrySize);
+			}
+		} finally {
+			// The mappings stay valid after the file is closed.
+			file.close();
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+	public DataStoreEntry getEntry(int index) throws IOException {
+		if (index < 0 || index >= rows)
+			throw new IndexOutOfBoundsException("Marker index: " + index);
+
+		int row = markers.getRow(index);
+		ByteBuffer view = mappings[row / rowsPerMapping].duplicate();
+		int position = (row % rowsPerMapping) * entrySize;
+
+		view.position(position);
+		view.limit(position + entrySize);
+
+		return new DataStoreEntry(view.slice(), size, GENOTYPE_DENSITY);
+	}
+
+	public boolean isMarkerOrdered() {
+		return true;
+	}
+
+	public void setEntry(int index, byte[] packed) {
+		throw new UnsupportedOperationException(
+				"A memory mapped BED file is read only.");
+	}
+
+	public void readEntryInto(int index, byte[] destination)
+			throws IOException {
+		int row = markers.getRow(index);
+		ByteBuffer view = mappings[row / rowsPerMapping].duplicate();
+
+		view.position((row % rowsPerMapping) * entrySize);
+		view.get(destination, 0, entrySize);
+	}
+
+	public void setGenotype(int individual, int marker, Genotype genotype)
+			throws IOException {
+		throw new UnsupportedOperationException(
+				"A memory mapped BED file is read only.");
+	}
+
+	public Genotype getGenotype(int individual, int marker) throws IOException {
+		int row = markers.getRow(marker);
+		int index = (row % rowsPerMapping) * entrySize + individual
+				/ GENOTYPE_DENSITY;
+
+		return Genotype.getByValue((mappings[row / rowsPerMapping]
+				.get(index) >> (individual % GENOTYPE_DENSITY) * 2) & 0x3);
+	}
+
+	public Iterator<DataStoreEntry> iterator() {
+		return new EntryIterator();
+	}
+
+	private class EntryIterator implements Iterator<DataStoreEntry> {
+		private int index;
+
+		public boolean hasNext() {
+			return index < rows;
+		}
+
+		public DataStoreEntry next() {
+			if (index >= rows)
+				throw new NoSuchElementException();
+
+			try {
+				return getEntry(index++);
+			} catch (IOException e) {
+				throw new NoSuchElementException();
+			}
+		}
+
+		public void remove() {
+			// This is not implemented.
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -5,7 +5,7 @@ import java.util.Collection;
 
 import se.kirc.geisa.data.plink.Genotype;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 /**
  * 
@@ -19,33 +19,35 @@ public class MarkerOrderedFileDataStore extends FileDataStore {
 	private static final long serialVersionUID = 4825009183221944630L;
 
 	public MarkerOrderedFileDataStore(Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) throws IOException {
+			MarkerCatalog markers) throws IOException {
 		super(individuals, markers);
+
+		// Calculate the entry size and amount of entries.
+		size = individuals.size();
+		entrySize = (size - 1) / GENOTYPE_DENSITY + 1;
+	}
+
+	public boolean isMarkerOrdered() {
+		return true;
 	}
 
 	public void setGenotype(int individual, int marker, Genotype genotype)
 			throws IOException {
 		// Calculate the index of the genotype.
-		int index = entrySize * marker + individual / GENOTYPE_DENSITY;
+		long index = (long) entrySize * marker + individual / GENOTYPE_DENSITY;
 
-		// Seek to the index and write the genotype.
-		file.seek(index);
-		file.write(file.read()
+		// Read the byte at the index and write the genotype.
+		writeByte(index, readByte(index)
 				| (genotype.getValue() & 0x3) << (individual % GENOTYPE_DENSITY) * 2);
-
-		// Calculate the entry size and amount of entries.
-		entrySize = (individuals.size() - 1) / GENOTYPE_DENSITY + 1;
-		size = individuals.size();
 	}
 
 	public Genotype getGenotype(int individual, int marker) throws IOException,
 			IllegalStateException {
 		// Calculate the index of the genotype.
-		int index = entrySize * marker + individual / GENOTYPE_DENSITY;
+		long index = (long) entrySize * marker + individual / GENOTYPE_DENSITY;
 
-		// Seek to the index and read the genotype.
-		file.seek(index);
+		// Read the genotype.
 		return Genotype
-				.getByValue((file.read() >> (individual % GENOTYPE_DENSITY) * 2) & 0x3);
+				.getByValue((readByte(index) >> (individual % GENOTYPE_DENSITY) * 2) & 0x3);
 	}
 }
@@ -0,0 +1,237 @@
+/*
+ * StreamingBedDataStore.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.data.store.file;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.store.AbstractDataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * A read only, marker ordered data store streaming the rows of a SNP-major BED
+ * file. Nothing is loaded up front: the rows are read in blocks as they are
+ * requested, and every entry is a copy of its row, so only the entries still
+ * referenced by queued tasks are held in memory. Each thread reads ahead into
+ * a block of its own with positional reads, so the threads do not wait for
+ * each other and a thread reading its markers in file order reads every row
+ * once, whatever order the other threads read in. The rows of markers left out
+ * of the catalog are skipped.
+ */
+public class StreamingBedDataStore extends AbstractDataStore {
+	private static final long serialVersionUID = 4409338254162846619L;
+
+	private final static int HEADER_SIZE = 3;
+	private final static int READ_BUFFER_SIZE = 1 << 20;
+
+	private File bed;
+	private int rows;
+	private int bufferSize;
+	private transient RandomAccessFile file;
+	private transient FileChannel channel;
+	private transient ThreadLocal<ReadAhead> readAhead;
+	private transient AtomicLong bytesRead;
+
+	/**
+	 * The block of rows read ahead by one thread.
+	 */
+	private class ReadAhead {
+		private byte[] buffer = new byte[Math.max(1, bufferSize / entrySize)
+				* entrySize];
+		private int first;
+		private int rows;
+
+		/**
+		 * The row after the last one of the announced range, which is not
+		 * read ahead past.
+		 */
+		private int limit = Integer.MAX_VALUE;
+	}
+
+	public StreamingBedDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers, File bed) throws IOException {
+		this(individuals, markers, bed, READ_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructs a store reading blocks of about the given number of bytes.
+	 */
+	StreamingBedDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers, File bed, int bufferSize)
+			throws IOException {
+		super(individuals, markers);
+
+		this.bed = bed;
+		this.bufferSize = bufferSize;
+		this.size = individuals.size();
+		this.entrySize = (size - 1) / GENOTYPE_DENSITY + 1;
+		this.rows = markers.getSize();
+
+		open();
+
+		// Verify the magic number, the mode and the length.
+		if (file.read() != 0x6c || file.read() != 0x1b)
+			throw new IOException("Invalid header in BED file.");
+		if ((file.read() & 0x1) == 0)
+			throw new IOException("Only SNP-major BED files can be streamed.");
+		if (file.length() < HEADER_SIZE + (long) entrySize
+				* markers.getRowCount())
+			throw new IOException("Truncated file: " + bed);
+	}
+
+	private void open() throws IOException {
+		file = new RandomAccessFile(bed, "r");
+		channel = file.getChannel();
+		readAhead = new ThreadLocal<ReadAhead>() {
+			@Override
+			protected ReadAhead initialValue() {
+				return new ReadAhead();
+			}
+		};
+		bytesRead = new AtomicLong();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		open();
+	}
+
+	public DataStoreEntry getEntry(int index) throws IOException {
+		byte[] data = new byte[entrySize];
+
+		readEntryInto(index, data);
+
+		return new DataStoreEntry(data, size, GENOTYPE_DENSITY);
+	}
+
+	public boolean isMarkerOrdered() {
+		return true;
+	}
+
+	public void setEntry(int index, byte[] packed) {
+		throw new UnsupportedOperationException(
+				"A streamed BED file is read only.");
+	}
+
+	public void readEntryInto(int index, byte[] destination)
+			throws IOException {
+		if (index < 0 || index >= rows)
+			throw new IndexOutOfBoundsException("Marker index: " + index);
+
+		int row = markers.getRow(index);
+		ReadAhead block = readAhead.get();
+
+		if (row >= block.limit)
+			block.limit = Integer.MAX_VALUE;
+		// Read the block of rows starting at the requested one.
+		if (row < block.first || row >= block.first + block.rows) {
+			int end = row + 1;
+
+			// Up to the last row of the following markers fitting the buffer.
+			// and the announced range.
+			for (int next = index + 1; next < rows
+					&& markers.getRow(next) < row + block.buffer.length / entrySize
+					&& markers.getRow(next) < block.limit; ++next)
+				end = markers.getRow(next) + 1;
+
+			int count = end - row;
+			ByteBuffer data = ByteBuffer.wrap(block.buffer, 0, count * entrySize);
+			long position = HEADER_SIZE + (long) entrySize * row;
+
+			block.rows = 0;
+			while (data.hasRemaining())
+				if (channel.read(data, position + data.position()) < 0)
+					throw new EOFException("Truncated file: " + bed);
+			bytesRead.addAndGet(count * entrySize);
+			block.first = row;
+			block.rows = count;
+		}
+
+		System.arraycopy(block.buffer, (row - block.first) * entrySize,
+				destination, 0, entrySize);
+	}
+
+	public void prefetch(int first, int last) {
+		if (first < 0 || last >= rows || first > last)
+			throw new IndexOutOfBoundsException("Marker range: " + first
+					+ "-" + last);
+
+		readAhead.get().limit = markers.getRow(last) + 1;
+	}
+
+	/**
+	 * Get the number of bytes read from the BED file by all threads.
+	 */
+	long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public void setGenotype(int individual, int marker, Genotype genotype)
+			throws IOException {
+		throw new UnsupportedOperationException(
+				"A streamed BED file is read only.");
+	}
+
+	public Genotype getGenotype(int individual, int marker) throws IOException {
+		return getEntry(marker).getGenotype(individual);
+	}
+
+	public Iterator<DataStoreEntry> iterator() {
+		return new EntryIterator();
+	}
+
+	private class EntryIterator implements Iterator<DataStoreEntry> {
+		private int index;
+
+		public boolean hasNext() {
+			return index < rows;
+		}
+
+		public DataStoreEntry next() {
+			if (index >= rows)
+				throw new NoSuchElementException();
+
+			try {
+				return getEntry(index++);
+			} catch (IOException e) {
+				throw new NoSuchElementException();
+			}
+		}
+
+		public void remove() {
+			// This is not implemented.
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -4,7 +4,7 @@ import java.util.Collection;
 
 import se.kirc.geisa.data.plink.Genotype;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 /**
  * 
@@ -19,13 +19,17 @@ public class IndividualOrderedMemoryDataStore extends MemoryDataStore {
 
 	public IndividualOrderedMemoryDataStore(
 			Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) {
+			MarkerCatalog markers) {
 		super(individuals, markers);
 
 		// Calculate the entry size and create a byte array large enough.
-		entrySize = (markers.size() - 1) / GENOTYPE_DENSITY + 1;
-		size = markers.size();
-		genotypes = new byte[entrySize * individuals.size()];
+		entrySize = (markers.getSize() - 1) / GENOTYPE_DENSITY + 1;
+		size = markers.getSize();
+		genotypes = new byte[checkedLength(entrySize, individuals.size())];
+	}
+
+	public boolean isMarkerOrdered() {
+		return false;
 	}
 
 	public void setGenotype(int individual, int marker, Genotype genotype) {
@@ -4,7 +4,7 @@ import java.util.Collection;
 
 import se.kirc.geisa.data.plink.Genotype;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 /**
  * 
@@ -19,13 +19,17 @@ public class MarkerOrderedMemoryDataStore extends MemoryDataStore {
 
 	public MarkerOrderedMemoryDataStore(
 			Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) {
+			MarkerCatalog markers) {
 		super(individuals, markers);
 
 		// Calculate the entry size and create a byte array large enough.
 		size = individuals.size();
 		entrySize = (size - 1) / GENOTYPE_DENSITY + 1;
-		genotypes = new byte[entrySize * markers.size()];
+		genotypes = new byte[checkedLength(entrySize, markers.getSize())];
+	}
+
+	public boolean isMarkerOrdered() {
+		return true;
 	}
 
 	public void setGenotype(int individual, int marker, Genotype genotype) {
@@ -30,17 +30,33 @@ import java.util.NoSuchElementException;
 import se.kirc.geisa.data.store.AbstractDataStore;
 import se.kirc.geisa.data.store.DataStoreEntry;
 import se.kirc.geisa.data.store.IndividualEntry;
-import se.kirc.geisa.data.store.MarkerEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
 
 public abstract class MemoryDataStore extends AbstractDataStore {
 	private static final long serialVersionUID = 791817834483838L;
 	protected byte[] genotypes;
 
 	public MemoryDataStore(Collection<IndividualEntry> individuals,
-			Collection<MarkerEntry> markers) {
+			MarkerCatalog markers) {
 		super(individuals, markers);
 	}
 
+	/**
+	 * Get the length of an array holding all entries.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the entries do not fit in an array.
+	 */
+	protected static int checkedLength(int entrySize, int entries) {
+		long length = (long) entrySize * entries;
+
+		if (length > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The genotypes (" + length
+					+ " bytes) do not fit in a memory data store.");
+
+		return (int) length;
+	}
+
 	public DataStoreEntry getEntry(int index) throws IOException,
 			IllegalStateException {
 		// Get the genotype data.
@@ -50,6 +66,15 @@ public abstract class MemoryDataStore extends AbstractDataStore {
 		return new DataStoreEntry(data, size, GENOTYPE_DENSITY);
 	}
 
+	public void setEntry(int index, byte[] packed) {
+		System.arraycopy(packed, 0, genotypes, entrySize * index, entrySize);
+	}
+
+	public void readEntryInto(int index, byte[] destination) {
+		System.arraycopy(genotypes, entrySize * index, destination, 0,
+				entrySize);
+	}
+
 	public Iterator<DataStoreEntry> iterator() {
 		return new EntryIterator(size);
 	}
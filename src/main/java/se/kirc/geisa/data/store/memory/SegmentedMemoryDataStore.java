@@ -0,0 +1,185 @@
+/*
+ * SegmentedMemoryDataStore.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package se.kirc.geisa.data.store.memory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.store.AbstractDataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * A marker ordered data store outside of the Java heap. The genotypes are kept
+ * in direct buffers of at most 1 GB, each holding whole entries, so the total
+ * size is not limited by the size of an array and the garbage collector never
+ * scans or copies them. An entry is a view of its segment.
+ * 
+ * The available memory is set with -XX:MaxDirectMemorySize.
+ */
+public class SegmentedMemoryDataStore extends AbstractDataStore {
+	private static final long serialVersionUID = 3376541207391860158L;
+
+	private final static int SEGMENT_SIZE = 1 << 30;
+
+	private int rows;
+	private int rowsPerSegment;
+	private transient ByteBuffer[] segments;
+
+	public SegmentedMemoryDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers) {
+		this(individuals, markers, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructs a store with segments of at most the given size, or a single
+	 * entry if larger.
+	 */
+	SegmentedMemoryDataStore(Collection<IndividualEntry> individuals,
+			MarkerCatalog markers, int segmentSize) {
+		super(individuals, markers);
+
+		// Calculate the entry size and the entries per segment.
+		size = individuals.size();
+		entrySize = (size - 1) / GENOTYPE_DENSITY + 1;
+		rows = markers.getSize();
+		rowsPerSegment = Math.max(1, segmentSize / entrySize);
+
+		allocate();
+	}
+
+	/**
+	 * Allocate the zeroed segments.
+	 */
+	private void allocate() {
+		segments = new ByteBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+		for (int s = 0; s < segments.length; ++s)
+			segments[s] = ByteBuffer.allocateDirect(Math.min(rowsPerSegment,
+					rows - s * rowsPerSegment) * entrySize);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		byte[] data = new byte[entrySize];
+
+		out.defaultWriteObject();
+		for (int index = 0; index < rows; ++index) {
+			readEntryInto(index, data);
+			out.write(data);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		byte[] data = new byte[entrySize];
+
+		in.defaultReadObject();
+		allocate();
+		for (int index = 0; index < rows; ++index) {
+			in.readFully(data);
+			setEntry(index, data);
+		}
+	}
+
+	/**
+	 * Get a view of an entry, positioned at its first byte.
+	 */
+	private ByteBuffer view(int index) {
+		if (index < 0 || index >= rows)
+			throw new IndexOutOfBoundsException("Marker index: " + index);
+
+		ByteBuffer view = segments[index / rowsPerSegment].duplicate();
+		int position = (index % rowsPerSegment) * entrySize;
+
+		view.limit(position + entrySize);
+		view.position(position);
+
+		return view;
+	}
+
+	public boolean isMarkerOrdered() {
+		return true;
+	}
+
+	public DataStoreEntry getEntry(int index) {
+		return new DataStoreEntry(view(index).slice(), size, GENOTYPE_DENSITY);
+	}
+
+	public void setEntry(int index, byte[] packed) {
+		view(index).put(packed, 0, entrySize);
+	}
+
+	public void readEntryInto(int index, byte[] destination) {
+		view(index).get(destination, 0, entrySize);
+	}
+
+	public void setGenotype(int individual, int marker, Genotype genotype) {
+		ByteBuffer segment = segments[marker / rowsPerSegment];
+
+		// Calculate the index of the genotype within its segment.
+		int index = (marker % rowsPerSegment) * entrySize + individual
+				/ GENOTYPE_DENSITY;
+
+		// Set the genotype data.
+		segment.put(index, (byte) (segment.get(index) | (genotype.getValue() & 0x3) << (individual % GENOTYPE_DENSITY) * 2));
+	}
+
+	public Genotype getGenotype(int individual, int marker) {
+		// Calculate the index of the genotype within its segment.
+		int index = (marker % rowsPerSegment) * entrySize + individual
+				/ GENOTYPE_DENSITY;
+
+		// Read the genotype.
+		return Genotype.getByValue((segments[marker / rowsPerSegment]
+				.get(index) >> (individual % GENOTYPE_DENSITY) * 2) & 0x3);
+	}
+
+	public Iterator<DataStoreEntry> iterator() {
+		return new EntryIterator();
+	}
+
+	private class EntryIterator implements Iterator<DataStoreEntry> {
+		private int index;
+
+		public boolean hasNext() {
+			return index < rows;
+		}
+
+		public DataStoreEntry next() {
+			if (index >= rows)
+				throw new NoSuchElementException();
+
+			return getEntry(index++);
+		}
+
+		public void remove() {
+			// This is not implemented.
+			throw new UnsupportedOperationException();
+		}
+	}
+}
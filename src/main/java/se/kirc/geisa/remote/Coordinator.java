@@ -0,0 +1,513 @@
+/*
+ * Coordinator.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import se.kirc.geisa.Messages;
+import se.kirc.geisa.ResultColumn;
+import se.kirc.geisa.TaskResult;
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * The coordinator of a distributed analysis. It accepts {@link Worker}s
+ * holding its key on a TCP port and hands the tasks out to them. A task is wrapped by
+ * {@link #remote(Callable)} into one which waits for its results from a
+ * worker, so the tasks are submitted and consumed as if run locally. The
+ * results are sent back in the compact form of {@link ResultCodec}. Each
+ * worker is sent a few units per thread ahead; the units of a lost worker are
+ * given to the other workers. The coordinator reports its progress while
+ * tasks are waiting, and fails them if no worker is connected for too long.
+ */
+public class Coordinator {
+	/**
+	 * A unit waiting for its results.
+	 */
+	private static class PendingUnit {
+		private WorkUnit unit;
+		private CountDownLatch done = new CountDownLatch(1);
+		private WorkResult result;
+		private IOException failure;
+
+		private PendingUnit(WorkUnit unit) {
+			this.unit = unit;
+		}
+
+		private void complete(WorkResult result) {
+			this.result = result;
+			done.countDown();
+		}
+
+		private void fail(IOException failure) {
+			this.failure = failure;
+			done.countDown();
+		}
+
+		private Iterable<TaskResult> get(MarkerCatalog markers)
+				throws InterruptedException, ExecutionException {
+			done.await();
+			if (failure != null)
+				throw new ExecutionException(failure);
+			if (result.getError() != null)
+				throw new ExecutionException(new RemoteTaskException(
+						result.getError()));
+			try {
+				return ResultCodec.decode(result.getResults(), markers);
+			} catch (IOException e) {
+				throw new ExecutionException(e);
+			}
+		}
+	}
+
+	/**
+	 * The connection to one worker, with a thread sending it units and one
+	 * receiving their results.
+	 */
+	private class Connection {
+		private Socket socket;
+		private String name;
+		private ObjectOutputStream out;
+		private ObjectInputStream in;
+		private Semaphore credits;
+		private Map<Long, PendingUnit> outstanding = new ConcurrentHashMap<Long, PendingUnit>();
+		private Thread sender;
+		private int sent;
+
+		private Connection(Socket socket) {
+			this.socket = socket;
+			this.name = socket.getRemoteSocketAddress().toString();
+		}
+
+		/**
+		 * Check the handshake of the worker and start serving it. No object
+		 * is read before the worker has proven that it holds the key.
+		 */
+		private void open() throws IOException {
+			byte[] challenge = Protocol.challenge();
+
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(Protocol.HANDSHAKE_TIMEOUT);
+			out = new ObjectOutputStream(new BufferedOutputStream(
+					socket.getOutputStream()));
+			out.writeInt(Protocol.MAGIC);
+			out.writeInt(Protocol.VERSION);
+			out.write(challenge);
+			out.flush();
+			in = new ProtocolInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+
+			if (in.readInt() != Protocol.MAGIC
+					|| in.readInt() != Protocol.VERSION) {
+				socket.close();
+				return;
+			}
+			byte[] proof = new byte[Protocol.NONCE_SIZE];
+			byte[] workerChallenge = new byte[Protocol.NONCE_SIZE];
+			in.readFully(proof);
+			in.readFully(workerChallenge);
+			long workerFingerprint = in.readLong();
+			int threads = in.readInt();
+
+			int answer = Protocol.ACCEPTED;
+			if (!Protocol.verify(key, Protocol.WORKER, challenge, proof))
+				answer = Protocol.UNAUTHORIZED;
+			else if (workerFingerprint != fingerprint)
+				answer = Protocol.DIFFERENT_DATA;
+			out.writeInt(answer);
+			if (answer == Protocol.ACCEPTED)
+				out.write(Protocol.prove(key, Protocol.COORDINATOR,
+						workerChallenge));
+			out.flush();
+			if (answer != Protocol.ACCEPTED) {
+				System.err.println(String.format(Messages
+						.getString(answer == Protocol.UNAUTHORIZED ? "status.remote.unauthorized"
+								: "status.remote.rejected"), Calendar
+						.getInstance(), name));
+				socket.close();
+				return;
+			}
+			socket.setSoTimeout(0);
+			System.err.println(String.format(
+					Messages.getString("status.remote.connected"),
+					Calendar.getInstance(), name, threads));
+
+			credits = new Semaphore(Math.max(1, threads)
+					* Protocol.UNITS_PER_THREAD);
+			synchronized (connections) {
+				connections.add(this);
+			}
+			sender = new Thread(new Runnable() {
+				public void run() {
+					send();
+				}
+			});
+			sender.setDaemon(true);
+			sender.start();
+			receive();
+		}
+
+		private void send() {
+			try {
+				while (true) {
+					credits.acquire();
+					PendingUnit pending = units.take();
+					long id = pending.unit.getId();
+					outstanding.put(id, pending);
+					synchronized (out) {
+						out.writeLong(id);
+						try {
+							out.writeObject(pending.unit);
+						} catch (ObjectStreamException e) {
+							// The unit cannot be serialized. The stream
+							// tells the worker to skip it and stays usable,
+							// so the unit fails rather than the worker.
+							if (outstanding.remove(id) != null) {
+								credits.release();
+								pending.fail(e);
+							}
+						}
+						if (++sent % Protocol.RESET_INTERVAL == 0)
+							out.reset();
+						out.flush();
+					}
+				}
+			} catch (InterruptedException e) {
+				// The connection is closed or lost.
+			} catch (IOException e) {
+				lost();
+			}
+			// A unit sent while the connection was lost.
+			if (!closed)
+				requeue();
+		}
+
+		private void receive() {
+			try {
+				while (true) {
+					WorkResult result = (WorkResult) in.readObject();
+					PendingUnit pending = outstanding.remove(result.getId());
+
+					credits.release();
+					if (pending != null) {
+						completed.incrementAndGet();
+						pending.complete(result);
+					}
+				}
+			} catch (IOException e) {
+				if (!closed)
+					lost();
+			} catch (ClassNotFoundException e) {
+				lost();
+			} catch (RuntimeException e) {
+				// Not a result, such as a null or another object.
+				lost();
+			}
+		}
+
+		/**
+		 * Give the units of a lost worker to the others.
+		 */
+		private void lost() {
+			int count;
+
+			synchronized (connections) {
+				if (!connections.remove(this))
+					return;
+			}
+			if (sender != null)
+				sender.interrupt();
+			count = requeue();
+			System.err.println(String.format(
+					Messages.getString("status.remote.lost"),
+					Calendar.getInstance(), name, count));
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already lost.
+			}
+		}
+
+		/**
+		 * Drop a worker which failed before or while it was served.
+		 */
+		private void abort() {
+			lost();
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already closed.
+			}
+		}
+
+		private int requeue() {
+			int count = 0;
+
+			for (Long id : new ArrayList<Long>(outstanding.keySet())) {
+				PendingUnit pending = outstanding.remove(id);
+				if (pending != null) {
+					units.add(pending);
+					if (failure != null && units.remove(pending))
+						pending.fail(failure);
+					++count;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Tell the worker that the analysis is finished.
+		 */
+		private void close() {
+			sender.interrupt();
+			try {
+				synchronized (out) {
+					out.writeLong(Protocol.FINISHED);
+					out.flush();
+				}
+				socket.close();
+			} catch (IOException e) {
+				// Nothing left to tell.
+			}
+		}
+	}
+
+	private ServerSocket server;
+	private byte[] key;
+	private long fingerprint;
+	private MarkerCatalog markers;
+	private long permutationColumns;
+	private BlockingQueue<PendingUnit> units = new LinkedBlockingQueue<PendingUnit>();
+	private AtomicLong ids = new AtomicLong();
+	private List<Connection> connections = new ArrayList<Connection>();
+	private AtomicLong completed = new AtomicLong();
+	private long timeout;
+	private volatile IOException failure;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a new coordinator and starts accepting workers.
+	 * 
+	 * @param address
+	 *            the local address to listen on, or null for the loopback
+	 *            address.
+	 * @param port
+	 *            the TCP port, or 0 for any free port.
+	 * @param key
+	 *            the key shared with the workers, see
+	 *            {@link Protocol#readKey(java.io.File)}.
+	 * @param dataStore
+	 *            the data store, holding the same data set as the workers.
+	 * @param permutationColumns
+	 *            the columns of the permutation results which are read, or
+	 *            null for all columns.
+	 * @param timeout
+	 *            the time in milliseconds tasks wait while no worker is
+	 *            connected before they and all later tasks fail, or 0 to wait
+	 *            forever.
+	 * @throws IOException
+	 *             if the port cannot be opened.
+	 */
+	public Coordinator(InetAddress address, int port, byte[] key,
+			DataStore dataStore, Set<ResultColumn> permutationColumns,
+			long timeout) throws IOException {
+		this.server = new ServerSocket(port, 50,
+				address == null ? InetAddress.getLoopbackAddress() : address);
+		this.key = key;
+		this.fingerprint = Protocol.fingerprint(dataStore);
+		this.markers = dataStore.getMarkers();
+		this.permutationColumns = ResultCodec.mask(permutationColumns);
+		this.timeout = timeout;
+
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		Thread monitor = new Thread(new Runnable() {
+			public void run() {
+				try {
+					monitor();
+				} catch (InterruptedException e) {
+					// Not interrupted.
+				}
+			}
+		});
+		monitor.setDaemon(true);
+		monitor.start();
+	}
+
+	/**
+	 * Report the progress while tasks are waiting or running, and fail the
+	 * tasks when no worker has been connected for the timeout.
+	 */
+	private void monitor() throws InterruptedException {
+		long idleSince = System.currentTimeMillis();
+		long reported = idleSince;
+		long tick = timeout > 0 ? Math.min(timeout, 1000) : 1000;
+
+		while (!closed && failure == null) {
+			Thread.sleep(tick);
+			long now = System.currentTimeMillis();
+			int workers;
+			int running = 0;
+
+			synchronized (connections) {
+				workers = connections.size();
+				for (Connection connection : connections)
+					running += connection.outstanding.size();
+			}
+			if (workers > 0 || units.isEmpty())
+				idleSince = now;
+			else if (timeout > 0 && now - idleSince >= timeout) {
+				giveUp();
+				break;
+			}
+			if (now - reported >= Protocol.PROGRESS_INTERVAL
+					&& (running > 0 || !units.isEmpty())) {
+				System.err.println(String.format(
+						Messages.getString("status.remote.progress"),
+						Calendar.getInstance(), units.size(), running,
+						workers, completed.get()));
+				reported = now;
+			}
+		}
+	}
+
+	/**
+	 * Fail the waiting tasks and all later ones.
+	 */
+	private void giveUp() {
+		PendingUnit pending;
+
+		failure = new IOException(String.format(
+				Messages.getString("remote.error.noworkers"),
+				(timeout + 999) / 1000));
+		System.err.println(failure.getMessage());
+		while ((pending = units.poll()) != null)
+			pending.fail(failure);
+	}
+
+	private void accept() {
+		while (!closed) {
+			try {
+				final Connection connection = new Connection(server.accept());
+				Thread receiver = new Thread(new Runnable() {
+					public void run() {
+						try {
+							connection.open();
+						} catch (Throwable e) {
+							// The worker left or failed during the handshake.
+							connection.abort();
+						}
+					}
+				});
+				receiver.setDaemon(true);
+				receiver.start();
+			} catch (IOException e) {
+				// The server socket is closed.
+			}
+		}
+	}
+
+	/**
+	 * Get the port the coordinator listens on.
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Wrap a task to be run by a worker. The task has to be serializable.
+	 * 
+	 * @param task
+	 *            the task.
+	 * @return a task waiting for the results of the worker.
+	 */
+	public Callable<Iterable<TaskResult>> remote(
+			final Callable<Iterable<TaskResult>> task) {
+		return new Callable<Iterable<TaskResult>>() {
+			public Iterable<TaskResult> call() throws Exception {
+				PendingUnit pending = new PendingUnit(new WorkUnit(
+						ids.getAndIncrement(), task, permutationColumns));
+
+				if (failure != null)
+					throw new ExecutionException(failure);
+				units.add(pending);
+				// Given up meanwhile, the unit may have been missed.
+				if (failure != null && units.remove(pending))
+					throw new ExecutionException(failure);
+				return pending.get(markers);
+			}
+		};
+	}
+
+	/**
+	 * Get the reason the coordinator failed its tasks.
+	 * 
+	 * @return the failure, or null if the tasks are run.
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Stop accepting workers and tell the connected ones that the analysis
+	 * is finished. All tasks have to be completed.
+	 */
+	public void close() {
+		closed = true;
+		try {
+			server.close();
+		} catch (IOException e) {
+			// Closed anyway.
+		}
+		synchronized (connections) {
+			for (Connection connection : connections)
+				connection.close();
+			connections.clear();
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Protocol.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.DigestOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * The constants of the protocol between a {@link Coordinator} and its
+ * {@link Worker}s. Both ends write a stream of serialized objects over one TCP
+ * connection. Before any object is read, both ends prove that they hold the
+ * shared key: the coordinator opens with the magic number, the protocol
+ * version and a random challenge, and the worker answers with its proof of
+ * the challenge, a challenge of its own, the fingerprint of its data set and
+ * its number of threads. The coordinator answers whether it accepts the
+ * worker, and its proof. The coordinator then sends {@link WorkUnit}s, each
+ * preceded by its id, and finally the id {@link #FINISHED}, while the worker
+ * sends a {@link WorkResult} for each unit in the order they complete. Only
+ * the classes of the protocol are read from the streams; a unit holding
+ * another class is refused with an error result, and one that cannot be
+ * serialized fails on the coordinator.
+ */
+public final class Protocol {
+	final static int MAGIC = 0x47454953;
+	final static int VERSION = 3;
+
+	/**
+	 * The id sent instead of a unit when the analysis is finished.
+	 */
+	final static long FINISHED = -1;
+
+	/**
+	 * The answers of the coordinator to a worker.
+	 */
+	final static int ACCEPTED = 0;
+	final static int UNAUTHORIZED = 1;
+	final static int DIFFERENT_DATA = 2;
+
+	/**
+	 * The roles proving that they hold the key, so that a proof cannot be
+	 * reflected back.
+	 */
+	final static byte COORDINATOR = 'C';
+	final static byte WORKER = 'W';
+
+	/**
+	 * The size of the challenges and proofs.
+	 */
+	final static int NONCE_SIZE = 32;
+
+	/**
+	 * The time in milliseconds a peer may take to complete the handshake.
+	 */
+	final static int HANDSHAKE_TIMEOUT = 30000;
+
+	private final static String MAC = "HmacSHA256";
+	private final static SecureRandom random = new SecureRandom();
+
+	/**
+	 * The number of units sent before the objects shared between them, such
+	 * as the individuals of a permutation block, are sent again.
+	 */
+	final static int RESET_INTERVAL = 256;
+
+	/**
+	 * The number of units sent to a worker ahead per thread, so that it does
+	 * not wait for the network between its units.
+	 */
+	final static int UNITS_PER_THREAD = 2;
+
+	/**
+	 * The time in milliseconds between the progress reports of a
+	 * coordinator.
+	 */
+	final static int PROGRESS_INTERVAL = 60000;
+
+	/**
+	 * The number of genotype entries, spread over the data set, which are
+	 * part of its fingerprint.
+	 */
+	final static int FINGERPRINT_SAMPLES = 64;
+
+	private Protocol() {
+	}
+
+	/**
+	 * Read the shared key from a file. Surrounding white space is ignored.
+	 * 
+	 * @param file
+	 *            the key file, or null for the empty key.
+	 * @return the key.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public static byte[] readKey(File file) throws IOException {
+		byte[] secret = new byte[0];
+
+		if (file != null) {
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				secret = new byte[(int) in.length()];
+				in.readFully(secret);
+			} finally {
+				in.close();
+			}
+		}
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(
+					new String(secret, Charset.forName("UTF-8")).trim()
+							.getBytes(Charset.forName("UTF-8")));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Get a random challenge.
+	 */
+	static byte[] challenge() {
+		byte[] challenge = new byte[NONCE_SIZE];
+
+		random.nextBytes(challenge);
+		return challenge;
+	}
+
+	/**
+	 * Prove that a role holds the key, answering a challenge.
+	 * 
+	 * @param key
+	 *            the key.
+	 * @param role
+	 *            the role answering.
+	 * @param challenge
+	 *            the challenge of the other end.
+	 * @return the proof.
+	 */
+	static byte[] prove(byte[] key, byte role, byte[] challenge) {
+		try {
+			Mac mac = Mac.getInstance(MAC);
+
+			mac.init(new SecretKeySpec(key, MAC));
+			mac.update(role);
+			return mac.doFinal(challenge);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Check the proof of the other end.
+	 */
+	static boolean verify(byte[] key, byte role, byte[] challenge,
+			byte[] proof) {
+		return MessageDigest.isEqual(prove(key, role, challenge), proof);
+	}
+
+	/**
+	 * Get the fingerprint of a data set, which has to be the same on the
+	 * coordinator and the workers since the tasks address the markers and
+	 * individuals by their ordinals. It covers the markers, the phenotypes,
+	 * sexes, interaction variables and covariates of the individuals, the
+	 * size of the genotypes and a sample of their entries.
+	 * 
+	 * @param dataStore
+	 *            the data store.
+	 * @return the fingerprint.
+	 * @throws IOException
+	 *             if the sampled genotypes cannot be read.
+	 */
+	public static long fingerprint(DataStore dataStore) throws IOException {
+		MarkerCatalog markers = dataStore.getMarkers();
+		Map<String, IndividualEntry> individuals = dataStore.getIndividuals();
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+		DataOutputStream out = new DataOutputStream(new DigestOutputStream(
+				new OutputStream() {
+					@Override
+					public void write(int b) {
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) {
+					}
+				}, digest));
+
+		out.writeInt(markers.getSize());
+		for (int m = 0; m < markers.getSize(); ++m) {
+			out.writeUTF(markers.getId(m));
+			out.writeUTF(markers.getChromosome(m));
+			out.writeInt(markers.getPosition(m));
+		}
+		out.writeInt(individuals.size());
+		for (IndividualEntry individual : individuals.values()) {
+			out.writeUTF(individual.getId());
+			out.writeUTF(String.valueOf(individual.getAffectionStatus()));
+			out.writeUTF(String.valueOf(individual.getSex()));
+			out.writeInt(individual.getInteractionVariable());
+			List<Float> covariates = individual.getCovariate();
+			out.writeInt(covariates == null ? -1 : covariates.size());
+			if (covariates != null)
+				for (Float covariate : covariates)
+					out.writeFloat(covariate == null ? Float.NaN : covariate);
+		}
+
+		int entries = dataStore.isMarkerOrdered() ? markers.getSize()
+				: individuals.size();
+		out.writeBoolean(dataStore.isMarkerOrdered());
+		if (entries > 0) {
+			byte[] entry = dataStore.getEntry(0).getPackedGenotypes();
+			int samples = Math.min(entries, FINGERPRINT_SAMPLES);
+
+			out.writeInt(entry.length);
+			for (int s = 0; s < samples; ++s) {
+				dataStore.readEntryInto((int) ((long) s * entries / samples),
+						entry);
+				out.write(entry);
+			}
+		}
+		out.flush();
+
+		return ByteBuffer.wrap(digest.digest()).getLong();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * ProtocolInputStream.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An object stream reading only the classes of the protocol: the classes of
+ * the main package and of this package, and the few others the tasks and
+ * their results are made of. Any other class is refused before it is loaded,
+ * as if it were not found, so that the object holding it is skipped and the
+ * stream can still be read.
+ */
+class ProtocolInputStream extends ObjectInputStream {
+	private final static Set<String> CLASSES = new HashSet<String>(
+			Arrays.asList("[B", "[D", "[I", "[J", "[Z",
+					"[Ljava.lang.String;", "java.lang.Enum",
+					"java.lang.Number", "java.lang.Integer",
+					"java.util.ArrayList", "java.util.HashMap",
+					"se.kirc.geisa.data.store.IndividualTable"));
+
+	/**
+	 * The packages whose classes are read, not including their
+	 * subpackages.
+	 */
+	private final static String[] PACKAGES = { "se.kirc.geisa",
+			"se.kirc.geisa.remote" };
+
+	ProtocolInputStream(InputStream in) throws IOException {
+		super(in);
+	}
+
+	@Override
+	protected Class<?> resolveClass(ObjectStreamClass desc)
+			throws IOException, ClassNotFoundException {
+		String name = desc.getName();
+		int separator = name.lastIndexOf('.');
+		boolean allowed = CLASSES.contains(name);
+
+		for (int p = 0; !allowed && p < PACKAGES.length; ++p)
+			allowed = separator == PACKAGES[p].length()
+					&& name.startsWith(PACKAGES[p]);
+		if (!allowed)
+			throw new ClassNotFoundException(name
+					+ " is not a class of the protocol");
+
+		return super.resolveClass(desc);
+	}
+
+	@Override
+	protected Class<?> resolveProxyClass(String[] interfaces)
+			throws IOException, ClassNotFoundException {
+		throw new ClassNotFoundException(
+				"Proxies are not classes of the protocol");
+	}
+}
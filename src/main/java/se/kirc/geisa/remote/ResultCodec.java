@@ -0,0 +1,175 @@
+/*
+ * ResultCodec.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import se.kirc.geisa.ResultColumn;
+import se.kirc.geisa.TaskResult;
+import se.kirc.geisa.data.plink.Allele;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+/**
+ * The compact form of the results sent from a worker. A result is sent as its
+ * permutation, marker ordinal, alleles and the values of its columns which
+ * are set; the names of the markers are taken from the catalog of the
+ * coordinator, holding the same markers. Of the permutation results only the
+ * columns read by the coordinator are sent.
+ */
+final class ResultCodec {
+	private final static ResultColumn[] COLUMNS = ResultColumn.values();
+
+	/**
+	 * All columns.
+	 */
+	final static long ALL = (1L << COLUMNS.length) - 1;
+
+	private ResultCodec() {
+	}
+
+	/**
+	 * Get the columns as a bit mask.
+	 * 
+	 * @param columns
+	 *            the columns, or null for all columns.
+	 * @return the bit mask.
+	 */
+	static long mask(Set<ResultColumn> columns) {
+		if (columns == null)
+			return ALL;
+
+		long mask = 0;
+		for (ResultColumn column : columns)
+			mask |= 1L << column.ordinal();
+		return mask;
+	}
+
+	/**
+	 * Encode the results.
+	 * 
+	 * @param results
+	 *            the results.
+	 * @param permutationColumns
+	 *            the bit mask of the columns sent of the permutation results.
+	 * @return the encoded results.
+	 * @throws IOException
+	 *             never, the results are written to memory.
+	 */
+	static byte[] encode(Iterable<TaskResult> results, long permutationColumns)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		String interactionMarker = null;
+
+		for (TaskResult result : results) {
+			long columns = result.getPermutation() == 0 ? ALL
+					: permutationColumns;
+			long set = 0;
+
+			for (ResultColumn column : COLUMNS)
+				if ((columns & 1L << column.ordinal()) != 0
+						&& !Double.isNaN(result.get(column)))
+					set |= 1L << column.ordinal();
+
+			out.writeBoolean(true);
+			// The interaction marker is only sent when it changes.
+			boolean changed = !result.getInteractionMarker().equals(
+					interactionMarker);
+			out.writeBoolean(changed);
+			if (changed) {
+				interactionMarker = result.getInteractionMarker();
+				out.writeUTF(interactionMarker);
+			}
+			out.writeInt(result.getPermutation());
+			out.writeInt(result.getMarkerIndex());
+			out.writeShort(ordinal(result.getRiskAllele()) << 8
+					| ordinal(result.getMajorAllele()) << 4
+					| ordinal(result.getMinorAllele()));
+			out.writeLong(set);
+			for (ResultColumn column : COLUMNS)
+				if ((set & 1L << column.ordinal()) != 0)
+					out.writeDouble(result.get(column));
+		}
+		out.writeBoolean(false);
+		out.flush();
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode the results.
+	 * 
+	 * @param data
+	 *            the encoded results.
+	 * @param markers
+	 *            the markers of the data set.
+	 * @return the results.
+	 * @throws IOException
+	 *             if the results are malformed.
+	 */
+	static List<TaskResult> decode(byte[] data, MarkerCatalog markers)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				data));
+		List<TaskResult> results = new ArrayList<TaskResult>();
+		String interactionMarker = null;
+
+		while (in.readBoolean()) {
+			if (in.readBoolean())
+				interactionMarker = in.readUTF();
+			int permutation = in.readInt();
+			int marker = in.readInt();
+			int alleles = in.readShort();
+			long set = in.readLong();
+
+			if (marker < 0 || marker >= markers.getSize())
+				throw new IOException("Marker ordinal: " + marker);
+
+			TaskResult result = new TaskResult(permutation, interactionMarker,
+					markers.getChromosome(marker), markers.getId(marker),
+					marker);
+			result.setAlleles(allele(alleles >> 8), allele(alleles >> 4),
+					allele(alleles));
+			for (ResultColumn column : COLUMNS)
+				if ((set & 1L << column.ordinal()) != 0)
+					result.set(column, in.readDouble());
+			results.add(result);
+		}
+
+		return results;
+	}
+
+	private static int ordinal(Allele allele) {
+		return allele == null ? 0 : allele.ordinal() + 1;
+	}
+
+	private static Allele allele(int ordinal) {
+		ordinal &= 0xf;
+		return ordinal == 0 ? null : Allele.values()[ordinal - 1];
+	}
+}
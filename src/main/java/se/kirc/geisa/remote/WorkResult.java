@@ -0,0 +1,57 @@
+/*
+ * WorkResult.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.Serializable;
+
+/**
+ * The results of a {@link WorkUnit} in the form of {@link ResultCodec}, or the
+ * error it failed with.
+ */
+class WorkResult implements Serializable {
+	private static final long serialVersionUID = -5129876015993244086L;
+
+	private long id;
+	private byte[] results;
+
+	/**
+	 * The stack trace of the error on the worker.
+	 */
+	private String error;
+
+	WorkResult(long id, byte[] results, String error) {
+		this.id = id;
+		this.results = results;
+		this.error = error;
+	}
+
+	long getId() {
+		return id;
+	}
+
+	byte[] getResults() {
+		return results;
+	}
+
+	String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * WorkUnit.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+import se.kirc.geisa.TaskResult;
+
+/**
+ * A task sent to a worker, identified by a number unique to the coordinator.
+ */
+class WorkUnit implements Serializable {
+	private static final long serialVersionUID = 7727409155362826218L;
+
+	private long id;
+	private Callable<Iterable<TaskResult>> task;
+
+	/**
+	 * The bit mask of the columns sent back of the permutation results.
+	 */
+	private long permutationColumns;
+
+	WorkUnit(long id, Callable<Iterable<TaskResult>> task,
+			long permutationColumns) {
+		this.id = id;
+		this.task = task;
+		this.permutationColumns = permutationColumns;
+	}
+
+	long getId() {
+		return id;
+	}
+
+	Callable<Iterable<TaskResult>> getTask() {
+		return task;
+	}
+
+	long getPermutationColumns() {
+		return permutationColumns;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Worker.java
+ * Copyright (C) 2011-2012  KIRC
+ *
+ * This file is part of GEISA. GEISA is an upgrade of Jeira by Daniel Uvehag
+ *
+ * GEISA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * GEISA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package se.kirc.geisa.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.WriteAbortedException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import se.kirc.geisa.Messages;
+import se.kirc.geisa.TaskContext;
+import se.kirc.geisa.data.store.DataStore;
+
+/**
+ * A worker of a distributed analysis. It connects to a {@link Coordinator},
+ * runs the units sent to it on its own threads against its own copy of the
+ * data set and sends their results back.
+ */
+public class Worker {
+	/**
+	 * Reads the units, attaching the local data store to their contexts.
+	 */
+	private class UnitInputStream extends ProtocolInputStream {
+		private UnitInputStream(InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof TaskContext)
+				((TaskContext) obj).attach(dataStore);
+			return obj;
+		}
+	}
+
+	private DataStore dataStore;
+	private int threads;
+	private byte[] key;
+
+	/**
+	 * Constructs a new worker.
+	 * 
+	 * @param dataStore
+	 *            the data store, holding the same data set as the
+	 *            coordinator.
+	 * @param threads
+	 *            the number of threads running the units.
+	 * @param key
+	 *            the key shared with the coordinator, see
+	 *            {@link Protocol#readKey(java.io.File)}.
+	 */
+	public Worker(DataStore dataStore, int threads, byte[] key) {
+		this.dataStore = dataStore;
+		this.threads = threads;
+		this.key = key;
+	}
+
+	/**
+	 * Work for a coordinator until it finishes the analysis.
+	 * 
+	 * @param host
+	 *            the host of the coordinator.
+	 * @param port
+	 *            the port of the coordinator.
+	 * @throws IOException
+	 *             if the connection fails, the coordinator rejects the key or
+	 *             the data set, or does not hold the key itself.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the running units.
+	 */
+	public void run(String host, int port) throws IOException,
+			InterruptedException {
+		Socket socket = new Socket(host, port);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			byte[] challenge = Protocol.challenge();
+
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(Protocol.HANDSHAKE_TIMEOUT);
+			final ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			out.flush();
+			ObjectInputStream in = new UnitInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			if (in.readInt() != Protocol.MAGIC
+					|| in.readInt() != Protocol.VERSION)
+				throw new IOException(Messages
+						.getString("remote.error.protocol"));
+			byte[] coordinatorChallenge = new byte[Protocol.NONCE_SIZE];
+			in.readFully(coordinatorChallenge);
+
+			out.writeInt(Protocol.MAGIC);
+			out.writeInt(Protocol.VERSION);
+			out.write(Protocol.prove(key, Protocol.WORKER,
+					coordinatorChallenge));
+			out.write(challenge);
+			out.writeLong(Protocol.fingerprint(dataStore));
+			out.writeInt(threads);
+			out.flush();
+
+			int answer = in.readInt();
+			if (answer == Protocol.UNAUTHORIZED)
+				throw new IOException(Messages
+						.getString("remote.error.unauthorized"));
+			if (answer != Protocol.ACCEPTED)
+				throw new IOException(Messages
+						.getString("remote.error.rejected"));
+			byte[] proof = new byte[Protocol.NONCE_SIZE];
+			in.readFully(proof);
+			if (!Protocol.verify(key, Protocol.COORDINATOR, challenge, proof))
+				throw new IOException(Messages
+						.getString("remote.error.coordinator"));
+			socket.setSoTimeout(0);
+
+			long id;
+			while ((id = in.readLong()) != Protocol.FINISHED) {
+				final WorkUnit current;
+				try {
+					current = (WorkUnit) in.readObject();
+				} catch (WriteAbortedException e) {
+					// The coordinator could not serialize the unit, and
+					// fails it itself.
+					continue;
+				} catch (ClassNotFoundException e) {
+					// The unit holds a class which is not read, and is
+					// refused.
+					send(out, new WorkResult(id, null, trace(e)));
+					continue;
+				}
+				executor.execute(new Runnable() {
+					public void run() {
+						WorkResult result;
+						try {
+							result = new WorkResult(current.getId(),
+									ResultCodec.encode(current.getTask().call(),
+											current.getPermutationColumns()),
+									null);
+						} catch (Exception e) {
+							result = new WorkResult(current.getId(), null,
+									trace(e));
+						}
+						send(out, result);
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} finally {
+			executor.shutdownNow();
+			socket.close();
+		}
+	}
+
+	private static void send(ObjectOutputStream out, WorkResult result) {
+		try {
+			synchronized (out) {
+				out.writeObject(result);
+				out.reset();
+				out.flush();
+			}
+		} catch (IOException e) {
+			// The coordinator is gone and gives the unit to another worker.
+		}
+	}
+
+	private static String trace(Exception e) {
+		StringWriter trace = new StringWriter();
+
+		e.printStackTrace(new PrintWriter(trace));
+		return trace.toString();
+	}
+}
@@ -0,0 +1,374 @@
+package se.kirc.math.regression;
+
+import java.util.Arrays;
+
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.DecompositionSolver;
+import org.apache.commons.math.linear.LUDecompositionImpl;
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+import org.apache.commons.math.linear.SingularValueDecompositionImpl;
+
+/**
+ * Logistic regression fitted with iteratively reweighted least squares on flat
+ * primitive arrays. It gives the same estimates as {@link LogisticRegression}
+ * but accumulates the symmetric information matrix X'WX directly and solves
+ * each Newton step with an in-place Cholesky decomposition. The full inverse,
+ * needed for the standard errors, is only formed once after the last
+ * iteration.
+ *
+ * If the information matrix is not positive definite the step falls back to
+ * the LU/SVD solvers used by {@link LogisticRegression}.
+ *
+ * An instance can be refitted with {@link #fit(LogisticRegressionConfiguration)},
+ * reusing its arrays as long as the number of variables does not change.
+ */
+public class FastLogisticRegression implements LogisticRegressionModel {
+	/**
+	 * Pivots below this value are treated as singular, the same absolute
+	 * threshold as used by the LU decomposition in {@link LogisticRegression}.
+	 */
+	private final static double SINGULARITY_THRESHOLD = 1e-11;
+
+	private int size;
+	private double[] column;
+	private double[] beta;
+	private double[] previousBeta;
+	private double[] information;
+	private double[] diagonal;
+	private double[] score;
+	private double[] varianceCovariance;
+	private double[] standardError;
+	private int iterations;
+	private double difference = 1;
+
+	private double[] x;
+	private double[] y;
+	private int observations;
+	private double logLikelihood = Double.NaN;
+
+	/**
+	 * Constructs an empty model, to be fitted with
+	 * {@link #fit(LogisticRegressionConfiguration)}.
+	 */
+	public FastLogisticRegression() {
+	}
+
+	public FastLogisticRegression(LogisticRegressionConfiguration config)
+			throws DimensionMismatchException {
+		fit(config);
+	}
+
+	/**
+	 * Fit the model to a new configuration, replacing the previous fit.
+	 *
+	 * @param config
+	 *            the configuration.
+	 * @return this model.
+	 * @throws DimensionMismatchException
+	 *             if the dimensions of the configuration do not agree.
+	 */
+	public FastLogisticRegression fit(LogisticRegressionConfiguration config)
+			throws DimensionMismatchException {
+		x = config.getXData();
+		y = config.getYData();
+		observations = config.getObservations();
+		int variables = config.getVariables();
+		double convergenceThreshold = config.getConvergenceThreshold();
+
+		// Dimension check. There should be one response per observation.
+		if (y.length < observations)
+			throw new DimensionMismatchException("x and y should have the same dimensions.");
+
+		// One beta value per variable + intercept.
+		if (config.getBetaData().length != variables + 1)
+			throw new DimensionMismatchException(
+					"Supplied beta vector has wrong dimension ("
+							+ config.getBetaData().length + " instead of "
+							+ (variables + 1) + ").");
+
+		if (size != variables + 1 || beta == null) {
+			size = variables + 1;
+			beta = new double[size];
+			previousBeta = new double[size];
+			information = new double[size * size];
+			diagonal = new double[size];
+			score = new double[size];
+			column = new double[size];
+			standardError = new double[size];
+		}
+		System.arraycopy(config.getBetaData(), 0, beta, 0, size);
+		difference = 1;
+		logLikelihood = Double.NaN;
+
+		boolean factorized = false;
+
+		// Iterate as much as possible/necessary.
+		for (iterations = 0; iterations < config.getIterations(); ++iterations) {
+			System.arraycopy(beta, 0, previousBeta, 0, size);
+			accumulate(variables);
+
+			// Solve information * step = score. The step replaces the score.
+			for (int i = 0; i < size; ++i)
+				diagonal[i] = information[i * size + i];
+			factorized = cholesky(information, size);
+
+			if (factorized)
+				solve(information, size, score);
+			else
+				fallback();
+
+			// Add new beta values and sum the absolute difference.
+			difference = 0;
+			for (int i = 0; i < size; ++i) {
+				beta[i] += score[i];
+				difference += Math.abs(score[i]);
+			}
+
+			// If the difference is within the convergence threshold, break the
+			// iteration.
+			if (difference <= convergenceThreshold)
+				break;
+		}
+
+		// The variance-covariance matrix is the inverse of the last
+		// information matrix, unknown if there was no iteration.
+		if (factorized || config.getIterations() <= 0) {
+			if (varianceCovariance == null || varianceCovariance.length != size * size)
+				varianceCovariance = new double[size * size];
+			if (factorized)
+				invert(information, size, varianceCovariance, column);
+			else
+				Arrays.fill(varianceCovariance, Double.NaN);
+		}
+
+		for (int i = 0; i < size; ++i)
+			standardError[i] = Math.sqrt(varianceCovariance[i * size + i]);
+
+		return this;
+	}
+
+	/**
+	 * Calculate the score and the upper triangle of the information matrix
+	 * for the current beta values.
+	 */
+	private void accumulate(int variables) {
+		Arrays.fill(score, 0);
+		Arrays.fill(information, 0);
+
+		for (int i = 0, row = 0; i < observations; ++i, row += variables) {
+			// f(z) = e^z / (e^z + 1)
+			double p = probability(beta, row, variables);
+			double residual = y[i] - p;
+			double weight = p * (1 - p);
+
+			// Score and information for the intercept.
+			score[0] += residual;
+			information[0] += weight;
+			for (int j = 0; j < variables; ++j)
+				information[j + 1] += weight * x[row + j];
+
+			// Score and information for the variables (upper triangle).
+			for (int a = 0; a < variables; ++a) {
+				double wa = weight * x[row + a];
+				int offset = (a + 1) * size;
+
+				score[a + 1] += residual * x[row + a];
+				for (int b = a; b < variables; ++b)
+					information[offset + b + 1] += wa * x[row + b];
+			}
+		}
+	}
+
+	/**
+	 * f(z) = e^z / (e^z + 1) for the observation starting at row, evaluated
+	 * without overflowing e^z for large z.
+	 */
+	private double probability(double[] coefficients, int row, int variables) {
+		double z = coefficients[0];
+
+		for (int j = 0; j < variables; ++j)
+			z += coefficients[j + 1] * x[row + j];
+
+		if (z >= 0)
+			return 1 / (1 + Math.exp(-z));
+		double e = Math.exp(z);
+		return e / (1 + e);
+	}
+
+	/**
+	 * Solve the Newton step with a general solver when the information matrix
+	 * could not be factorized, keeping the full inverse as
+	 * {@link LogisticRegression} does.
+	 */
+	private void fallback() {
+		RealMatrix matrix = new Array2DRowRealMatrix(size, size);
+
+		// The factorization attempt only destroyed the lower triangle and the
+		// diagonal.
+		for (int a = 0; a < size; ++a) {
+			information[a * size + a] = diagonal[a];
+			for (int b = a; b < size; ++b) {
+				matrix.setEntry(a, b, information[a * size + b]);
+				matrix.setEntry(b, a, information[a * size + b]);
+			}
+		}
+
+		DecompositionSolver solver = new LUDecompositionImpl(matrix).getSolver();
+
+		if (!solver.isNonSingular())
+			solver = new SingularValueDecompositionImpl(matrix).getSolver();
+
+		RealMatrix inverse = solver.getInverse();
+		double[] step = inverse.operate(score);
+
+		System.arraycopy(step, 0, score, 0, size);
+		varianceCovariance = new double[size * size];
+		for (int a = 0; a < size; ++a)
+			for (int b = 0; b < size; ++b)
+				varianceCovariance[a * size + b] = inverse.getEntry(a, b);
+	}
+
+	/**
+	 * In-place Cholesky decomposition, A = LL'. The upper triangle of the
+	 * row-major matrix holds A, and the lower triangle (including the
+	 * diagonal) will hold L. The strict upper triangle is left untouched.
+	 *
+	 * @return false if the matrix is not (numerically) positive definite.
+	 */
+	static boolean cholesky(double[] a, int n) {
+		for (int j = 0; j < n; ++j) {
+			double d = a[j * n + j];
+
+			for (int k = 0; k < j; ++k)
+				d -= a[j * n + k] * a[j * n + k];
+			if (!(d > SINGULARITY_THRESHOLD))
+				return false;
+			d = Math.sqrt(d);
+			a[j * n + j] = d;
+
+			for (int i = j + 1; i < n; ++i) {
+				double s = a[j * n + i];
+
+				for (int k = 0; k < j; ++k)
+					s -= a[i * n + k] * a[j * n + k];
+				a[i * n + j] = s / d;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Solve LL'x = b in place using the factor in the lower triangle.
+	 */
+	static void solve(double[] l, int n, double[] b) {
+		// Forward substitution, Ly = b.
+		for (int i = 0; i < n; ++i) {
+			double s = b[i];
+
+			for (int k = 0; k < i; ++k)
+				s -= l[i * n + k] * b[k];
+			b[i] = s / l[i * n + i];
+		}
+
+		// Backward substitution, L'x = y.
+		for (int i = n - 1; i >= 0; --i) {
+			double s = b[i];
+
+			for (int k = i + 1; k < n; ++k)
+				s -= l[k * n + i] * b[k];
+			b[i] = s / l[i * n + i];
+		}
+	}
+
+	/**
+	 * Form the full inverse (LL')^-1 from the factor in the lower triangle,
+	 * using column as scratch space.
+	 */
+	static void invert(double[] l, int n, double[] inverse, double[] column) {
+		for (int j = 0; j < n; ++j) {
+			Arrays.fill(column, 0);
+			column[j] = 1;
+			solve(l, n, column);
+
+			for (int i = 0; i < n; ++i)
+				inverse[i * n + j] = column[i];
+		}
+	}
+
+	public RealVector getBeta() {
+		return new ArrayRealVector(beta);
+	}
+
+	public double getBeta(int index) {
+		return beta[index];
+	}
+
+	public RealVector getStandardError() {
+		return new ArrayRealVector(standardError);
+	}
+
+	public double getStandardError(int index) {
+		return standardError[index];
+	}
+
+	public RealVector getZ() {
+		RealVector z = new ArrayRealVector(size);
+
+		for (int i = 0; i < size; ++i)
+			z.setEntry(i, getZ(i));
+
+		return z;
+	}
+
+	public double getZ(int index) {
+		return beta[index] / standardError[index];
+	}
+
+	public RealMatrix getVarianceCovariance() {
+		RealMatrix matrix = new Array2DRowRealMatrix(size, size);
+
+		for (int a = 0; a < size; ++a)
+			for (int b = 0; b < size; ++b)
+				matrix.setEntry(a, b, varianceCovariance[a * size + b]);
+
+		return matrix;
+	}
+
+	public double getVarianceCovariance(int row, int column) {
+		return varianceCovariance[row * size + column];
+	}
+
+	/**
+	 * Returns the log likelihood for the beta values of the last iteration,
+	 * i.e. before the final Newton step. It is calculated on first request.
+	 */
+	public double getLogLikelihood() {
+		if (Double.isNaN(logLikelihood)) {
+			int variables = size - 1;
+
+			logLikelihood = 0;
+			for (int i = 0, row = 0; i < observations; ++i, row += variables) {
+				double p = probability(previousBeta, row, variables);
+
+				logLikelihood += y[i] * Math.log(p) + (1 - y[i]) * Math.log1p(-p);
+			}
+		}
+
+		return logLikelihood;
+	}
+
+	public double getDifference() {
+		return difference;
+	}
+
+	public boolean isLRStable() {
+		return difference <= LogisticRegressionConfiguration.DEFAULT_CONVERGENCE_THRESHOLD;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+}
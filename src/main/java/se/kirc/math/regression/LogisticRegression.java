@@ -16,7 +16,7 @@ import se.kirc.math.analysis.Log1pRealFunction;
 import se.kirc.math.analysis.LogRealFunction;
 import se.kirc.math.analysis.LogitRealFunction;
 
-public class LogisticRegression {
+public class LogisticRegression implements LogisticRegressionModel {
 	private RealVector beta;
 	private int iterations;
 	private double difference = 1;
@@ -128,10 +128,18 @@ public class LogisticRegression {
 		return z;
 	}
 
+	public double getZ(int index) {
+		return z.getEntry(index);
+	}
+
 	public RealVector getBeta() {
 		return beta;
 	}
 
+	public double getBeta(int index) {
+		return beta.getEntry(index);
+	}
+
 	public RealMatrix getJacobian() {
 		return jacobian;
 	}
@@ -156,7 +164,15 @@ public class LogisticRegression {
 		return varianceCovariance;
 	}
 
+	public double getVarianceCovariance(int row, int column) {
+		return varianceCovariance.getEntry(row, column);
+	}
+
 	public RealVector getStandardError() {
 		return standardError;
 	}
+
+	public double getStandardError(int index) {
+		return standardError.getEntry(index);
+	}
 }
@@ -1,5 +1,7 @@
 package se.kirc.math.regression;
 
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.ArrayRealVector;
 import org.apache.commons.math.linear.RealMatrix;
 import org.apache.commons.math.linear.RealVector;
 
@@ -13,6 +15,16 @@ public class LogisticRegressionConfiguration {
 	private int iterations;
 	private double convergenceThreshold;
 
+	/**
+	 * Flat, observation major (i.e. one row per observation) copy of the
+	 * design. Either this or x is set, the other one is derived on demand.
+	 */
+	private double[] xData;
+	private double[] yData;
+	private double[] betaData;
+	private int observations;
+	private int variables;
+
 	/**
 	 * 
 	 */
@@ -23,6 +35,15 @@ public class LogisticRegressionConfiguration {
 	 * @return the x
 	 */
 	public RealMatrix getX() {
+		if (x == null && xData != null) {
+			// The matrix form holds one column per observation.
+			x = new Array2DRowRealMatrix(variables, observations);
+
+			for (int i = 0; i < observations; ++i)
+				for (int j = 0; j < variables; ++j)
+					x.setEntry(j, i, xData[i * variables + j]);
+		}
+
 		return x;
 	}
 
@@ -32,12 +53,18 @@ public class LogisticRegressionConfiguration {
 	 */
 	public void setX(RealMatrix x) {
 		this.x = x;
+		this.xData = null;
+		this.observations = x.getColumnDimension();
+		this.variables = x.getRowDimension();
 	}
 
 	/**
 	 * @return the y
 	 */
 	public RealVector getY() {
+		if (y == null && yData != null)
+			y = new ArrayRealVector(yData, 0, observations);
+
 		return y;
 	}
 
@@ -47,12 +74,16 @@ public class LogisticRegressionConfiguration {
 	 */
 	public void setY(RealVector y) {
 		this.y = y;
+		this.yData = null;
 	}
 
 	/**
 	 * @return the beta
 	 */
 	public RealVector getBeta() {
+		if (beta == null && betaData != null)
+			beta = new ArrayRealVector(betaData);
+
 		return beta;
 	}
 
@@ -62,6 +93,7 @@ public class LogisticRegressionConfiguration {
 	 */
 	public void setBeta(RealVector beta) {
 		this.beta = beta;
+		this.betaData = null;
 	}
 
 	/**
@@ -93,4 +125,95 @@ public class LogisticRegressionConfiguration {
 	public void setConvergenceThreshold(double convergenceThreshold) {
 		this.convergenceThreshold = convergenceThreshold;
 	}
+
+	/**
+	 * Returns the design as a flat, observation major array, i.e. the value
+	 * of variable j for observation i is found at i * getVariables() + j. The
+	 * intercept is not part of the design.
+	 * 
+	 * @return the flat design.
+	 */
+	public double[] getXData() {
+		if (xData == null && x != null) {
+			xData = new double[observations * variables];
+
+			for (int i = 0; i < observations; ++i)
+				for (int j = 0; j < variables; ++j)
+					xData[i * variables + j] = x.getEntry(j, i);
+		}
+
+		return xData;
+	}
+
+	/**
+	 * Sets the design from a flat, observation major array. Only the first
+	 * observations * variables entries are used, which allows the caller to
+	 * reuse a larger buffer.
+	 * 
+	 * @param xData
+	 *            the flat design.
+	 * @param observations
+	 *            the number of observations (rows).
+	 * @param variables
+	 *            the number of variables (columns), excluding the intercept.
+	 */
+	public void setXData(double[] xData, int observations, int variables) {
+		this.xData = xData;
+		this.x = null;
+		this.observations = observations;
+		this.variables = variables;
+	}
+
+	/**
+	 * @return the response as an array with at least getObservations()
+	 *         entries.
+	 */
+	public double[] getYData() {
+		if (yData == null && y != null)
+			yData = y.getData();
+
+		return yData;
+	}
+
+	/**
+	 * @param yData
+	 *            the response, with at least getObservations() entries.
+	 */
+	public void setYData(double[] yData) {
+		this.yData = yData;
+		this.y = null;
+	}
+
+	/**
+	 * @return the initial beta values, intercept first.
+	 */
+	public double[] getBetaData() {
+		if (betaData == null && beta != null)
+			betaData = beta.getData();
+
+		return betaData;
+	}
+
+	/**
+	 * @param betaData
+	 *            the initial beta values, intercept first.
+	 */
+	public void setBetaData(double[] betaData) {
+		this.betaData = betaData;
+		this.beta = null;
+	}
+
+	/**
+	 * @return the number of observations.
+	 */
+	public int getObservations() {
+		return observations;
+	}
+
+	/**
+	 * @return the number of variables, excluding the intercept.
+	 */
+	public int getVariables() {
+		return variables;
+	}
 }
@@ -10,6 +10,11 @@ public class LogisticRegressionConfigurationBuilder {
 	private RealVector beta;
 	private int iterations;
 	private double convergenceThreshold;
+	private double[] xData;
+	private double[] yData;
+	private double[] betaData;
+	private int observations;
+	private int variables;
 
 	public LogisticRegressionConfigurationBuilder() {
 		// Initialize default values.
@@ -19,18 +24,45 @@ public class LogisticRegressionConfigurationBuilder {
 
 	public LogisticRegressionConfigurationBuilder withX(RealMatrix x) {
 		this.x = x;
+		this.xData = null;
+
+		return this;
+	}
+
+	public LogisticRegressionConfigurationBuilder withX(double[] x,
+			int observations, int variables) {
+		this.xData = x;
+		this.x = null;
+		this.observations = observations;
+		this.variables = variables;
 
 		return this;
 	}
 
 	public LogisticRegressionConfigurationBuilder withY(RealVector y) {
 		this.y = y;
+		this.yData = null;
+
+		return this;
+	}
+
+	public LogisticRegressionConfigurationBuilder withY(double[] y) {
+		this.yData = y;
+		this.y = null;
 
 		return this;
 	}
 
 	public LogisticRegressionConfigurationBuilder withBeta(RealVector beta) {
 		this.beta = beta;
+		this.betaData = null;
+
+		return this;
+	}
+
+	public LogisticRegressionConfigurationBuilder withBeta(double[] beta) {
+		this.betaData = beta;
+		this.beta = null;
 
 		return this;
 	}
@@ -53,16 +85,28 @@ public class LogisticRegressionConfigurationBuilder {
 		LogisticRegressionConfiguration config = new LogisticRegressionConfiguration();
 
 		// Initialize beta if missing.
-		if (beta == null) {
-			beta = new ArrayRealVector(x.getRowDimension() + 1);
-			beta.set(0);
+		if (beta == null && betaData == null) {
+			if (x != null) {
+				beta = new ArrayRealVector(x.getRowDimension() + 1);
+				beta.set(0);
+			} else
+				betaData = new double[variables + 1];
 		}
 
-		config.setBeta(beta);
+		if (beta != null)
+			config.setBeta(beta);
+		else
+			config.setBetaData(betaData);
 		config.setConvergenceThreshold(convergenceThreshold);
 		config.setIterations(iterations);
-		config.setX(x);
-		config.setY(y);
+		if (x != null)
+			config.setX(x);
+		else
+			config.setXData(xData, observations, variables);
+		if (y != null)
+			config.setY(y);
+		else
+			config.setYData(yData);
 
 		return config;
 	}
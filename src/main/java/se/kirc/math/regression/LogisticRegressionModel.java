@@ -0,0 +1,34 @@
+package se.kirc.math.regression;
+
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * A fitted logistic regression model. The first coefficient is always the
+ * intercept, followed by one coefficient per variable in the design.
+ */
+public interface LogisticRegressionModel {
+	RealVector getBeta();
+
+	double getBeta(int index);
+
+	RealVector getStandardError();
+
+	double getStandardError(int index);
+
+	RealVector getZ();
+
+	double getZ(int index);
+
+	RealMatrix getVarianceCovariance();
+
+	double getVarianceCovariance(int row, int column);
+
+	double getLogLikelihood();
+
+	double getDifference();
+
+	int getIterations();
+
+	boolean isLRStable();
+}
@@ -0,0 +1,224 @@
+package se.kirc.math.regression;
+
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * Closed form logistic regression for a saturated model over a set of
+ * categorical cells, i.e. a design with as many parameters (including the
+ * intercept) as there are cells. The maximum likelihood estimate of the log
+ * odds of each cell is log(cases / controls) with the variance 1 / cases +
+ * 1 / controls, and the estimates of different cells are independent. Every
+ * coefficient is a linear contrast of these log odds, which gives the betas,
+ * standard errors and the variance-covariance matrix without any iterations.
+ *
+ * All cells must contain both cases and controls, otherwise the estimates are
+ * infinite.
+ */
+public class SaturatedLogisticRegression implements LogisticRegressionModel {
+	/**
+	 * Contrasts for a design where the first cell is the reference and each
+	 * other cell has an indicator variable.
+	 */
+	private final static double[][] CELL_REFERENCE = {
+		{ 1, 0, 0, 0 },
+		{ -1, 1, 0, 0 },
+		{ -1, 0, 1, 0 },
+		{ -1, 0, 0, 1 } };
+
+	/**
+	 * Contrasts for a 2x2 factorial design with the variables A, B and AxB.
+	 * The cells are ordered A0B0, A1B0, A0B1, A1B1.
+	 */
+	private final static double[][] FACTORIAL = {
+		{ 1, 0, 0, 0 },
+		{ -1, 1, 0, 0 },
+		{ -1, 0, 1, 0 },
+		{ 1, -1, -1, 1 } };
+
+	private int size;
+	private double[][] contrasts;
+	private double[] logOdds;
+	private double[] variance;
+	private double[] beta;
+	private double[] varianceCovariance;
+	private double logLikelihood;
+
+	/**
+	 * Constructs an empty model with the given contrasts, to be fitted with
+	 * {@link #fit(int[], int[])}.
+	 *
+	 * @param contrasts
+	 *            one row of cell weights per coefficient, intercept first.
+	 */
+	public SaturatedLogisticRegression(double[][] contrasts) {
+		this.contrasts = contrasts;
+		size = contrasts.length;
+		logOdds = new double[size];
+		variance = new double[size];
+		beta = new double[size];
+		varianceCovariance = new double[size * size];
+	}
+
+	/**
+	 * Constructs a saturated model from the cell counts and the contrasts
+	 * mapping the log odds of the cells to the coefficients.
+	 *
+	 * @param cases
+	 *            the number of cases in each cell.
+	 * @param controls
+	 *            the number of controls in each cell.
+	 * @param contrasts
+	 *            one row of cell weights per coefficient, intercept first.
+	 */
+	public SaturatedLogisticRegression(int[] cases, int[] controls,
+			double[][] contrasts) throws DimensionMismatchException {
+		this(contrasts);
+		fit(cases, controls);
+	}
+
+	/**
+	 * Fit the model to new cell counts, replacing the previous fit.
+	 *
+	 * @param cases
+	 *            the number of cases in each cell.
+	 * @param controls
+	 *            the number of controls in each cell.
+	 * @return this model.
+	 */
+	public SaturatedLogisticRegression fit(int[] cases, int[] controls)
+			throws DimensionMismatchException {
+		if (cases.length != size || controls.length != size)
+			throw new DimensionMismatchException(
+					"A saturated model needs one coefficient per cell.");
+
+		logLikelihood = 0;
+		for (int c = 0; c < size; ++c) {
+			logOdds[c] = Math.log((double) cases[c] / controls[c]);
+			variance[c] = 1.0 / cases[c] + 1.0 / controls[c];
+
+			double n = cases[c] + controls[c];
+			logLikelihood += cases[c] * Math.log(cases[c] / n)
+					+ controls[c] * Math.log(controls[c] / n);
+		}
+
+		// beta = C * logOdds, cov = C * diag(variance) * C'
+		for (int a = 0; a < size; ++a) {
+			beta[a] = 0;
+			for (int c = 0; c < size; ++c)
+				beta[a] += contrasts[a][c] * logOdds[c];
+
+			for (int b = 0; b <= a; ++b) {
+				double covariance = 0;
+
+				for (int c = 0; c < size; ++c)
+					covariance += contrasts[a][c] * contrasts[b][c] * variance[c];
+				varianceCovariance[a * size + b] = covariance;
+				varianceCovariance[b * size + a] = covariance;
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Model with the first cell as reference and one indicator variable for
+	 * each of the other cells.
+	 */
+	public static SaturatedLogisticRegression cellReference(int[] cases,
+			int[] controls) {
+		return new SaturatedLogisticRegression(cases, controls, CELL_REFERENCE);
+	}
+
+	/**
+	 * Unfitted model with the first cell as reference.
+	 */
+	public static SaturatedLogisticRegression cellReference() {
+		return new SaturatedLogisticRegression(CELL_REFERENCE);
+	}
+
+	/**
+	 * Model with the variables A, B and the product AxB. The cells are
+	 * ordered A0B0, A1B0, A0B1, A1B1.
+	 */
+	public static SaturatedLogisticRegression factorial(int[] cases,
+			int[] controls) {
+		return new SaturatedLogisticRegression(cases, controls, FACTORIAL);
+	}
+
+	/**
+	 * Unfitted model with the variables A, B and the product AxB.
+	 */
+	public static SaturatedLogisticRegression factorial() {
+		return new SaturatedLogisticRegression(FACTORIAL);
+	}
+
+	public RealVector getBeta() {
+		return new ArrayRealVector(beta);
+	}
+
+	public double getBeta(int index) {
+		return beta[index];
+	}
+
+	public RealVector getStandardError() {
+		RealVector standardError = new ArrayRealVector(size);
+
+		for (int i = 0; i < size; ++i)
+			standardError.setEntry(i, getStandardError(i));
+
+		return standardError;
+	}
+
+	public double getStandardError(int index) {
+		return Math.sqrt(varianceCovariance[index * size + index]);
+	}
+
+	public RealVector getZ() {
+		RealVector z = new ArrayRealVector(size);
+
+		for (int i = 0; i < size; ++i)
+			z.setEntry(i, getZ(i));
+
+		return z;
+	}
+
+	public double getZ(int index) {
+		return beta[index] / getStandardError(index);
+	}
+
+	public RealMatrix getVarianceCovariance() {
+		RealMatrix matrix = new Array2DRowRealMatrix(size, size);
+
+		for (int a = 0; a < size; ++a)
+			for (int b = 0; b < size; ++b)
+				matrix.setEntry(a, b, varianceCovariance[a * size + b]);
+
+		return matrix;
+	}
+
+	public double getVarianceCovariance(int row, int column) {
+		return varianceCovariance[row * size + column];
+	}
+
+	public double getLogLikelihood() {
+		return logLikelihood;
+	}
+
+	/**
+	 * The estimates are exact, there is no remaining difference.
+	 */
+	public double getDifference() {
+		return 0;
+	}
+
+	public int getIterations() {
+		return 0;
+	}
+
+	public boolean isLRStable() {
+		return true;
+	}
+}
@@ -0,0 +1,42 @@
+package se.kirc.geisa;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BatchSizerTest {
+	@Test
+	public void testInitial() {
+		assertEquals(BatchSizer.GRAIN, new BatchSizer(1).getBatchSize());
+		assertEquals(200, new BatchSizer(200).getBatchSize());
+		assertEquals(208, new BatchSizer(201).getBatchSize());
+	}
+
+	@Test
+	public void testAdaptive() {
+		BatchSizer sizer = new BatchSizer(200);
+
+		// A millisecond per marker, rounded up to whole grains.
+		sizer.record(100, 100000000L);
+		assertEquals(256, sizer.getBatchSize());
+
+		// Expensive markers give the smallest batch, free ones the largest.
+		sizer = new BatchSizer(200);
+		sizer.record(1, 10 * BatchSizer.TARGET_DURATION);
+		assertEquals(BatchSizer.GRAIN, sizer.getBatchSize());
+		sizer = new BatchSizer(200);
+		sizer.record(1000, 0);
+		assertEquals(BatchSizer.MAX_BATCH_SIZE, sizer.getBatchSize());
+	}
+
+	@Test
+	public void testWindow() {
+		BatchSizer sizer = new BatchSizer(200);
+
+		// Cheap markers first, then the cost rises to a millisecond.
+		sizer.record(4000, 4000000L);
+		for (int i = 0; i < 20; ++i)
+			sizer.record(1000, 1000000000L);
+		assertEquals(256, sizer.getBatchSize(), 8);
+	}
+}
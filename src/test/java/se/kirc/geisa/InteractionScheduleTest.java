@@ -0,0 +1,27 @@
+package se.kirc.geisa;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class InteractionScheduleTest {
+	@Test
+	public void testComplete() {
+		InteractionSchedule schedule = new InteractionSchedule();
+
+		schedule.submit("rs1");
+		schedule.submit("rs2");
+		schedule.submit("rs1");
+
+		// Not complete until the last task is submitted and consumed.
+		assertFalse(schedule.isComplete("rs1", 2));
+		schedule.complete("rs1");
+		assertFalse(schedule.isComplete("rs1", 1));
+		assertTrue(schedule.isComplete("rs1", 2));
+		assertFalse(schedule.isComplete("rs2", 1));
+
+		schedule.remove("rs1");
+		assertFalse(schedule.isComplete("rs1", 2));
+	}
+}
@@ -0,0 +1,123 @@
+package se.kirc.geisa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderedResultQueueTest {
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	private static Callable<Iterable<TaskResult>> task(final int marker,
+			final CountDownLatch start) {
+		return new Callable<Iterable<TaskResult>>() {
+			public Iterable<TaskResult> call() throws Exception {
+				if (start != null)
+					start.await();
+				return Collections.singletonList(new TaskResult(0, "i", "1",
+						"rs" + marker, marker));
+			}
+		};
+	}
+
+	@Test
+	public void testSubmissionOrder() throws Exception {
+		OrderedResultQueue queue = new OrderedResultQueue(executor, 4);
+		CountDownLatch slow = new CountDownLatch(1);
+
+		// The first task completes last.
+		queue.submit(task(0, slow));
+		for (int m = 1; m < 4; ++m)
+			queue.submit(task(m, null)).get();
+		slow.countDown();
+		queue.close();
+
+		for (int m = 0; m < 4; ++m)
+			assertEquals(m, queue.take().get().iterator().next()
+					.getMarkerIndex());
+		assertNull(queue.take());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testSlowFirstTask() throws Exception {
+		final OrderedResultQueue queue = new OrderedResultQueue(executor, 2, 8);
+		CountDownLatch slow = new CountDownLatch(1);
+		final Exception[] error = new Exception[1];
+
+		// More tasks than the capacity complete behind the first one.
+		queue.submit(task(0, slow));
+		Thread submitter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					for (int m = 1; m < 8; ++m)
+						queue.submit(task(m, null)).get();
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		});
+		submitter.start();
+		submitter.join(10000);
+		assertFalse(submitter.isAlive());
+		assertEquals(null, error[0]);
+
+		slow.countDown();
+		queue.close();
+		for (int m = 0; m < 8; ++m)
+			assertEquals(m, queue.take().get().iterator().next()
+					.getMarkerIndex());
+		assertNull(queue.take());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testFailedTask() throws Exception {
+		OrderedResultQueue queue = new OrderedResultQueue(executor, 2);
+
+		queue.submit(new Callable<Iterable<TaskResult>>() {
+			public Iterable<TaskResult> call() throws Exception {
+				throw new IllegalStateException();
+			}
+		}, "i");
+		queue.submit(task(1, null));
+		queue.close();
+
+		// The interaction marker of a failed task is still known.
+		OrderedResultQueue.SequencedTask failed = queue.take();
+		assertEquals("i", failed.getInteractionMarker());
+		try {
+			failed.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(IllegalStateException.class, e.getCause().getClass());
+		}
+		assertEquals(1, queue.take().get().iterator().next().getMarkerIndex());
+		assertNull(queue.take());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		OrderedResultQueue queue = new OrderedResultQueue(executor, 1);
+
+		queue.close();
+		assertNull(queue.take());
+		executor.shutdown();
+	}
+}
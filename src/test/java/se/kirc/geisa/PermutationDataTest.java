@@ -0,0 +1,67 @@
+package se.kirc.geisa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PermutationDataTest {
+	private static final int LIMIT = 3;
+
+	/**
+	 * A marker below the cut off has APP and MULT 0 and no convergence
+	 * flags, in the original as in the permutations, so neither statistic is
+	 * ever compared.
+	 */
+	@Test
+	public void testBelowCutOff() {
+		PermutationData app = new PermutationData();
+		PermutationData mult = new PermutationData();
+		app.setValue(0);
+		mult.setValue(0);
+		for (int i = 0; i < LIMIT; i++) {
+			assertFalse(app.isSettled(LIMIT) && mult.isSettled(LIMIT));
+			app.setPositivePermutation(0, false, false, ResultColumn.APP, false);
+			mult.setPositivePermutation(0, false, false, ResultColumn.MULT, false);
+		}
+		assertEquals(0, app.getCountedPermutations());
+		assertEquals(0, mult.getCountedPermutations());
+		assertTrue(app.isSettled(LIMIT));
+		assertTrue(mult.isSettled(LIMIT));
+	}
+
+	/**
+	 * A marker whose multiplicative model is never compared is settled once
+	 * its APP reaches the limit.
+	 */
+	@Test
+	public void testMultiplicativeNotCounted() {
+		PermutationData app = new PermutationData();
+		PermutationData mult = new PermutationData();
+		app.setValue(0.5);
+		mult.setValue(0.5);
+		for (int i = 0; i < LIMIT; i++) {
+			app.setPositivePermutation(0.1, true, false, ResultColumn.APP, false);
+			mult.setPositivePermutation(0.1, true, false, ResultColumn.MULT, false);
+		}
+		assertTrue(app.isSettled(LIMIT));
+		assertTrue(mult.isSettled(LIMIT));
+	}
+
+	/**
+	 * A statistic compared in some permutation is only settled by its exceed
+	 * count.
+	 */
+	@Test
+	public void testCountedOnce() {
+		PermutationData mult = new PermutationData();
+		mult.setValue(0.01);
+		mult.setPositivePermutation(0.5, true, true, ResultColumn.MULT, false);
+		for (int i = 0; i < 2 * LIMIT; i++)
+			mult.setPositivePermutation(0.001, true, false, ResultColumn.MULT, false);
+		assertEquals(1, mult.getCountedPermutations());
+		assertEquals(0, mult.getExceedCount());
+		assertFalse(mult.isSettled(LIMIT));
+	}
+}
@@ -0,0 +1,85 @@
+package se.kirc.geisa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PermutationGeneratorTest {
+	private static final int SIZE = 203;
+
+	@Test
+	public void testIdentity() {
+		PermutationGenerator generator = new PermutationGenerator(42);
+		int[] permutation = generator.permutation(PermutationGenerator.stream("rs1"), 0, SIZE);
+
+		for (int i = 0; i < SIZE; ++i)
+			assertEquals(i, permutation[i]);
+	}
+
+	@Test
+	public void testPermutation() {
+		PermutationGenerator generator = new PermutationGenerator(42);
+		long stream = PermutationGenerator.stream("rs1");
+
+		for (int k = 1; k < 20; ++k) {
+			int[] permutation = generator.permutation(stream, k, SIZE);
+			boolean[] seen = new boolean[SIZE];
+
+			for (int i = 0; i < SIZE; ++i) {
+				assertFalse(seen[permutation[i]]);
+				seen[permutation[i]] = true;
+			}
+		}
+	}
+
+	@Test
+	public void testReproducible() {
+		long stream = PermutationGenerator.stream("rs1");
+		int[] later = new PermutationGenerator(42).permutation(stream, 7, SIZE);
+
+		// Generating other permutations first does not matter.
+		PermutationGenerator generator = new PermutationGenerator(42);
+		for (int k = 1; k < 7; ++k)
+			generator.permutation(stream, k, SIZE);
+
+		assertArrayEquals(later, generator.permutation(stream, 7, SIZE));
+	}
+
+	@Test
+	public void testDistinct() {
+		PermutationGenerator generator = new PermutationGenerator(42);
+		long stream = PermutationGenerator.stream("rs1");
+		int[] first = generator.permutation(stream, 1, SIZE);
+
+		assertFalse(Arrays.equals(first, generator.permutation(stream, 2, SIZE)));
+		assertFalse(Arrays.equals(first, generator.permutation(
+				PermutationGenerator.stream("rs2"), 1, SIZE)));
+		assertFalse(Arrays.equals(first, new PermutationGenerator(43)
+				.permutation(stream, 1, SIZE)));
+	}
+
+	@Test
+	public void testPermuteArray() {
+		PermutationGenerator generator = new PermutationGenerator(42);
+		long stream = PermutationGenerator.stream("rs1");
+		byte[] values = new byte[SIZE];
+		List<Byte> list = new ArrayList<Byte>();
+
+		for (int i = 0; i < SIZE; ++i) {
+			values[i] = (byte) i;
+			list.add(values[i]);
+		}
+
+		List<Byte> expected = generator.permute(list, stream, 3);
+		byte[] actual = generator.permute(values, stream, 3);
+
+		for (int i = 0; i < SIZE; ++i)
+			assertEquals((byte) expected.get(i), actual[i]);
+	}
+}
@@ -0,0 +1,158 @@
+package se.kirc.geisa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.distribution.ChiSquaredDistributionImpl;
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.LUDecompositionImpl;
+import org.apache.commons.math.linear.RealMatrix;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.count.Bits;
+import se.kirc.geisa.count.IndividualMasks;
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Sex;
+import se.kirc.math.regression.FastLogisticRegression;
+import se.kirc.math.regression.LogisticRegressionConfiguration;
+
+public class ScoreScreenTest {
+	private static final int SIZE = 300;
+	private static final double THRESHOLD = 1e-10;
+
+	private List<AffectionStatus> statuses;
+	private List<Integer> interactions;
+	private List<Sex> sexes;
+	private double[] covariates;
+	private IndividualMasks masks;
+	private Random random;
+
+	@Before
+	public void setUp() {
+		random = new Random(5);
+		statuses = new ArrayList<AffectionStatus>();
+		interactions = new ArrayList<Integer>();
+		sexes = new ArrayList<Sex>();
+		covariates = new double[SIZE];
+
+		for (int i = 0; i < SIZE; ++i) {
+			statuses.add(random.nextInt(20) == 0 ? AffectionStatus.MISSING
+					: random.nextBoolean() ? AffectionStatus.AFFECTED
+							: AffectionStatus.UNAFFECTED);
+			interactions.add(random.nextInt(20) == 0 ? -1 : random.nextInt(2));
+			sexes.add(Sex.values()[random.nextInt(3)]);
+			covariates[i] = random.nextInt(20) == 0 ? Double.NaN
+					: random.nextGaussian();
+		}
+		masks = new IndividualMasks(statuses, interactions, sexes);
+	}
+
+	/**
+	 * The score statistic calculated with dense matrices.
+	 */
+	private double expected(long[] risk) throws MathException {
+		List<Integer> rows = new ArrayList<Integer>();
+
+		for (int i = 0; i < SIZE; ++i)
+			if (Bits.get(masks.getKnown(), i) && !Double.isNaN(covariates[i]))
+				rows.add(i);
+
+		double[] x = new double[rows.size() * 2];
+		double[] y = new double[rows.size()];
+
+		for (int r = 0; r < rows.size(); ++r) {
+			int i = rows.get(r);
+
+			x[r * 2] = interactions.get(i);
+			x[r * 2 + 1] = covariates[i];
+			y[r] = statuses.get(i) == AffectionStatus.AFFECTED ? 1 : 0;
+		}
+
+		LogisticRegressionConfiguration config = new LogisticRegressionConfiguration();
+
+		config.setXData(x, rows.size(), 2);
+		config.setYData(y);
+		config.setBetaData(new double[3]);
+		config.setIterations(100);
+		config.setConvergenceThreshold(THRESHOLD);
+
+		FastLogisticRegression regression = new FastLogisticRegression(config);
+		RealMatrix null1 = new Array2DRowRealMatrix(3, 3);
+		RealMatrix cross = new Array2DRowRealMatrix(3, 2);
+		RealMatrix tested = new Array2DRowRealMatrix(2, 2);
+		RealMatrix score = new Array2DRowRealMatrix(2, 1);
+
+		for (int r = 0; r < rows.size(); ++r) {
+			int i = rows.get(r);
+			double[] x1 = { 1, x[r * 2], x[r * 2 + 1] };
+			double g = Bits.get(risk, i) ? 1 : 0;
+			double[] x2 = { g, g * x[r * 2] };
+			double z = regression.getBeta(0) + regression.getBeta(1) * x1[1]
+					+ regression.getBeta(2) * x1[2];
+			double p = 1 / (1 + Math.exp(-z));
+			double w = p * (1 - p);
+
+			for (int a = 0; a < 3; ++a) {
+				for (int b = 0; b < 3; ++b)
+					null1.addToEntry(a, b, w * x1[a] * x1[b]);
+				for (int b = 0; b < 2; ++b)
+					cross.addToEntry(a, b, w * x1[a] * x2[b]);
+			}
+			for (int a = 0; a < 2; ++a) {
+				for (int b = 0; b < 2; ++b)
+					tested.addToEntry(a, b, w * x2[a] * x2[b]);
+				score.addToEntry(a, 0, (y[r] - p) * x2[a]);
+			}
+		}
+
+		RealMatrix efficient = tested.subtract(cross.transpose().multiply(
+				new LUDecompositionImpl(null1).getSolver().getInverse())
+				.multiply(cross));
+
+		// Adjust the score of the interaction term for the risk factor.
+		double adjusted = score.getEntry(1, 0) - efficient.getEntry(1, 0)
+				/ efficient.getEntry(0, 0) * score.getEntry(0, 0);
+		double variance = efficient.getEntry(1, 1) - efficient.getEntry(1, 0)
+				* efficient.getEntry(0, 1) / efficient.getEntry(0, 0);
+
+		return 1 - new ChiSquaredDistributionImpl(1)
+				.cumulativeProbability(adjusted * adjusted / variance);
+	}
+
+	@Test
+	public void testStatistic() throws MathException {
+		ScoreScreen screen = new ScoreScreen(masks, covariates, 1, 100,
+				THRESHOLD);
+
+		for (int k = 0; k < 5; ++k) {
+			long[] risk = new long[Bits.words(SIZE)];
+
+			for (int i = 0; i < SIZE; ++i)
+				if (random.nextInt(3) == 0)
+					Bits.set(risk, i);
+
+			assertEquals(expected(risk), screen.getPValue(risk), 1e-8);
+		}
+	}
+
+	@Test
+	public void testInteraction() throws MathException {
+		ScoreScreen screen = new ScoreScreen(masks, covariates, 1, 100,
+				THRESHOLD);
+		long[] risk = new long[Bits.words(SIZE)];
+
+		// The risk factor is only associated with the exposed cases.
+		for (int i = 0; i < SIZE; ++i)
+			if (interactions.get(i) == 1 ? statuses.get(i) == AffectionStatus.AFFECTED
+					: random.nextBoolean())
+				Bits.set(risk, i);
+
+		assertTrue(screen.getPValue(risk) < 1e-6);
+	}
+}
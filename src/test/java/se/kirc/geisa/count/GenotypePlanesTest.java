@@ -0,0 +1,54 @@
+package se.kirc.geisa.count;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.store.AbstractDataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+
+public class GenotypePlanesTest {
+	private static final int SIZE = 203;
+
+	@Test
+	public void testPackedEntry() {
+		Random random = new Random(17);
+		byte[] packed = new byte[(SIZE + 3) / 4];
+
+		// Fill the padding with garbage as well.
+		random.nextBytes(packed);
+
+		DataStoreEntry entry = new DataStoreEntry(packed, SIZE,
+				AbstractDataStore.GENOTYPE_DENSITY);
+		GenotypePlanes planes = GenotypePlanes.of(entry, SIZE);
+		int total = 0;
+
+		for (Genotype genotype : Genotype.values()) {
+			long[] plane = planes.getPlane(genotype);
+
+			for (int i = 0; i < SIZE; ++i)
+				assertEquals(entry.getGenotype(i) == genotype, Bits.get(plane, i));
+			total += Bits.count(plane);
+		}
+
+		assertEquals(SIZE, total);
+	}
+
+	@Test
+	public void testIterable() {
+		List<Genotype> genotypes = new ArrayList<Genotype>();
+
+		for (int i = 0; i < SIZE; ++i)
+			genotypes.add(Genotype.values()[i % 4]);
+
+		GenotypePlanes planes = GenotypePlanes.of(genotypes, SIZE);
+
+		for (int i = 0; i < SIZE; ++i)
+			assertEquals(true, Bits.get(planes.getPlane(genotypes.get(i)), i));
+	}
+}
@@ -0,0 +1,115 @@
+package se.kirc.geisa.count;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.plink.Sex;
+
+public class RiskCounterTest {
+	private static final int SIZE = 150;
+
+	private List<Genotype> genotypes;
+	private List<AffectionStatus> statuses;
+	private List<Integer> interactions;
+	private List<Sex> sexes;
+	private GenotypePlanes planes;
+	private IndividualMasks masks;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(11);
+
+		genotypes = new ArrayList<Genotype>();
+		statuses = new ArrayList<AffectionStatus>();
+		interactions = new ArrayList<Integer>();
+		sexes = new ArrayList<Sex>();
+
+		for (int i = 0; i < SIZE; ++i) {
+			genotypes.add(Genotype.values()[random.nextInt(4)]);
+			statuses.add(AffectionStatus.values()[random.nextInt(3)]);
+			interactions.add(random.nextInt(4) - 1);
+			sexes.add(Sex.values()[random.nextInt(3)]);
+		}
+
+		planes = GenotypePlanes.of(genotypes, SIZE);
+		masks = new IndividualMasks(statuses, interactions, sexes);
+	}
+
+	@Test
+	public void testCountAlleles() {
+		int[] expected = new int[4];
+
+		for (int i = 0; i < SIZE; ++i) {
+			int offset;
+
+			if (statuses.get(i) == AffectionStatus.AFFECTED)
+				offset = RiskCounter.CASE_PRIMARY;
+			else if (statuses.get(i) == AffectionStatus.UNAFFECTED)
+				offset = RiskCounter.CONTROL_PRIMARY;
+			else
+				continue;
+
+			switch (genotypes.get(i)) {
+			case HOMOZYGOTE_PRIMARY:
+				expected[offset] += 2;
+				break;
+			case HETEROZYGOTE:
+				expected[offset]++;
+				expected[offset + 1]++;
+				break;
+			case HOMOZYGOTE_SECONDARY:
+				expected[offset + 1] += 2;
+				break;
+			default:
+				break;
+			}
+		}
+
+		int[] actual = RiskCounter.countAlleles(planes, masks);
+
+		for (int i = 0; i < 4; ++i)
+			assertEquals(expected[i], actual[i]);
+	}
+
+	@Test
+	public void testCountTable() {
+		long[] valid = RiskCounter.valid(planes, masks);
+
+		// Dominant for males, inverted risk factor and swapped interaction.
+		long[] risk = RiskCounter.riskFactors(planes, valid, masks.getMales(),
+				Genotype.HOMOZYGOTE_SECONDARY, true);
+		int[][][] actual = RiskCounter.countTable(risk, valid,
+				masks.getEnvPresent(true), masks.getEnvAbsent(true), masks);
+		int[][][] expected = new int[2][2][2];
+
+		for (int i = 0; i < SIZE; ++i) {
+			Genotype genotype = genotypes.get(i);
+			AffectionStatus status = statuses.get(i);
+			int interaction = interactions.get(i);
+
+			if (genotype == Genotype.UNKNOWN
+					|| status == AffectionStatus.MISSING || interaction == -1)
+				continue;
+
+			boolean carrier = genotype == Genotype.HOMOZYGOTE_SECONDARY
+					|| (sexes.get(i) == Sex.MALE && genotype == Genotype.HETEROZYGOTE);
+			int r = carrier ? 0 : 1;
+			int e = interaction == 0 ? 1 : 0;
+
+			expected[r][e][status.getValue() - 1]++;
+		}
+
+		for (int r = 0; r < 2; ++r)
+			for (int e = 0; e < 2; ++e)
+				for (int s = 0; s < 2; ++s)
+					assertEquals(expected[r][e][s], actual[r][e][s]);
+	}
+}
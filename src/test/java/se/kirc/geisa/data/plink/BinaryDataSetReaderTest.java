@@ -3,10 +3,13 @@
  */
 package se.kirc.geisa.data.plink;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.junit.Before;
@@ -16,6 +19,9 @@ import se.kirc.geisa.data.plink.binary.BinaryDataSet;
 import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
 import se.kirc.geisa.data.store.DataStore;
 import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+import se.kirc.geisa.data.store.memory.IndividualOrderedMemoryDataStore;
+import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
 
 /**
  * @author danuve
@@ -59,4 +65,117 @@ public class BinaryDataSetReaderTest {
 	}
 	
 	
+
+	/**
+	 * Test method for {@link se.kirc.geisa.data.plink.binary.BinaryDataSetReader#loadGenotypes(DataStore)}
+	 * with the rows loaded in parallel.
+	 * @throws IOException 
+	 */
+	@Test
+	public void testLoadGenotypesInParallel() throws IOException {
+		Collection<IndividualEntry> individuals = reader.loadIndividuals();
+		MarkerCatalog markers = reader.loadMarkers();
+		DataStore parallel = new MarkerOrderedMemoryDataStore(individuals, markers);
+
+		// An individual ordered store is loaded transposed.
+		store = new IndividualOrderedMemoryDataStore(individuals, markers);
+		reader.loadGenotypes(store);
+		reader.setThreads(4);
+		reader.loadGenotypes(parallel);
+
+		for (int m = 0; m < markers.getSize(); ++m)
+			for (int i = 0; i < individuals.size(); ++i)
+				assertEquals(store.getGenotype(i, m), parallel.getGenotype(i, m));
+	}
+
+	/**
+	 * Test method for {@link se.kirc.geisa.data.plink.binary.BinaryDataSetReader#loadGenotypes(DataStore)}
+	 * with an individual-major BED file.
+	 * @throws IOException 
+	 */
+	@Test
+	public void testLoadIndividualMajor() throws IOException {
+		Collection<IndividualEntry> individuals = reader.loadIndividuals();
+		MarkerCatalog markers = reader.loadMarkers();
+		File bedFile = File.createTempFile("geisa-test", ".bed");
+		FileOutputStream out = new FileOutputStream(bedFile);
+
+		bedFile.deleteOnExit();
+		store = new MarkerOrderedMemoryDataStore(individuals, markers);
+		reader.loadGenotypes(store);
+
+		// Write the genotypes one individual per row.
+		out.write(new byte[] { 0x6c, 0x1b, 0x00 });
+		for (int i = 0; i < individuals.size(); ++i) {
+			byte[] row = new byte[(markers.getSize() - 1) / 4 + 1];
+
+			for (int m = 0; m < markers.getSize(); ++m)
+				row[m / 4] |= store.getGenotype(i, m).getValue() << (m % 4) * 2;
+			out.write(row);
+		}
+		out.close();
+
+		BinaryDataSetReader individualMajor = new BinaryDataSetReader(
+				new BinaryDataSet(dataSet.getInteractionFile(), bedFile,
+						dataSet.getBIMFile(), dataSet.getFAMFile()));
+		DataStore transposed = new MarkerOrderedMemoryDataStore(individuals,
+				markers);
+
+		individualMajor.loadGenotypes(transposed);
+		for (int m = 0; m < markers.getSize(); ++m)
+			assertArrayEquals(store.getEntry(m).getPackedGenotypes(),
+					transposed.getEntry(m).getPackedGenotypes());
+
+		// Only the selected columns are transposed.
+		individualMajor.setMarkerSelection(getSelection());
+		assertSelected(individualMajor, individuals);
+	}
+
+	/**
+	 * Test method for {@link se.kirc.geisa.data.plink.binary.BinaryDataSetReader#loadMarkers()}
+	 * with a selection of markers.
+	 * @throws IOException 
+	 */
+	@Test
+	public void testLoadSelection() throws IOException {
+		Collection<IndividualEntry> individuals = reader.loadIndividuals();
+
+		store = new MarkerOrderedMemoryDataStore(individuals,
+				reader.loadMarkers());
+		reader.loadGenotypes(store);
+		reader.setMarkerSelection(getSelection());
+		reader.setThreads(2);
+		assertSelected(reader, individuals);
+	}
+
+	private MarkerSelection getSelection() {
+		MarkerSelection selection = new MarkerSelection();
+
+		selection.addRegions("1:2-3, 1:7-10");
+		selection.addExtract(Arrays.asList("rs1", "rs2", "rs3", "rs6", "rs9"));
+		return selection;
+	}
+
+	/**
+	 * Assert that a reader loads the markers of the selection, and the same
+	 * genotypes as the store with all markers.
+	 */
+	private void assertSelected(DataSetReader reader,
+			Collection<IndividualEntry> individuals) throws IOException {
+		MarkerCatalog selected = reader.loadMarkers();
+		DataStore partial = new MarkerOrderedMemoryDataStore(individuals,
+				selected);
+
+		reader.loadGenotypes(partial);
+		assertEquals(4, selected.getSize());
+		assertEquals(10, selected.getRowCount());
+		for (int m = 0; m < selected.getSize(); ++m) {
+			int index = store.getMarkers().getIndex(selected.getId(m));
+
+			assertEquals(new int[] { 1, 2, 6, 9 }[m], index);
+			assertEquals(index, selected.getRow(m));
+			assertArrayEquals(store.getEntry(index).getPackedGenotypes(),
+					partial.getEntry(m).getPackedGenotypes());
+		}
+	}
 }
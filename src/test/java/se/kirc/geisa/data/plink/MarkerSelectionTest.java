@@ -0,0 +1,52 @@
+package se.kirc.geisa.data.plink;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MarkerSelectionTest {
+	@Test
+	public void testRegions() {
+		MarkerSelection selection = new MarkerSelection();
+
+		assertTrue(selection.isAll());
+		selection.addRegions("6:100-200,X");
+		assertFalse(selection.isAll());
+
+		assertTrue(selection.isSelected("rs1", "6", 100));
+		assertTrue(selection.isSelected("rs1", "6", 200));
+		assertFalse(selection.isSelected("rs1", "6", 201));
+		assertFalse(selection.isSelected("rs1", "5", 150));
+		assertTrue(selection.isSelected("rs1", "x", 12345));
+	}
+
+	@Test
+	public void testExtract() {
+		MarkerSelection selection = new MarkerSelection();
+
+		selection.addExtract(Arrays.asList("rs1", "rs2"));
+		selection.addRequired("rs3");
+		assertTrue(selection.isSelected("rs1", "1", 1));
+		assertTrue(selection.isSelected("rs3", "1", 1));
+		assertFalse(selection.isSelected("rs4", "1", 1));
+
+		// A marker has to be in both the regions and the extract list.
+		selection.addRegions("2");
+		assertFalse(selection.isSelected("rs1", "1", 1));
+		assertTrue(selection.isSelected("rs2", "2", 1));
+		assertTrue(selection.isSelected("rs3", "1", 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRange() {
+		new MarkerSelection().addRegions("6:200-100");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingRange() {
+		new MarkerSelection().addRegions("6:200");
+	}
+}
@@ -0,0 +1,96 @@
+package se.kirc.geisa.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
+import se.kirc.geisa.data.store.file.DataStoreSnapshot;
+import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
+
+public class DataStoreSnapshotTest {
+	private BinaryDataSet dataSet;
+	private DataStore loaded;
+	private File snapshot;
+	private byte[] hash;
+
+	@Before
+	public void setUp() throws IOException {
+		dataSet = new BinaryDataSet(new File("./src/test/resources/test.txt"),
+				new File("./src/test/resources/test.bed"), new File(
+						"./src/test/resources/test.bim"), new File(
+						"./src/test/resources/test.fam"));
+
+		BinaryDataSetReader reader = new BinaryDataSetReader(dataSet);
+
+		loaded = new MarkerOrderedMemoryDataStore(reader.loadIndividuals(),
+				reader.loadMarkers());
+		reader.loadInteractionData(loaded);
+		reader.loadGenotypes(loaded);
+
+		snapshot = File.createTempFile("geisa-test", ".snapshot");
+		snapshot.deleteOnExit();
+		hash = DataStoreSnapshot.hash(dataSet.getBEDFile(),
+				dataSet.getBIMFile(), dataSet.getFAMFile(),
+				dataSet.getInteractionFile());
+		DataStoreSnapshot.write(snapshot, hash, loaded);
+	}
+
+	@Test
+	public void testOpen() throws IOException {
+		DataStore store = DataStoreSnapshot.open(snapshot, hash);
+		List<IndividualEntry> expected = new ArrayList<IndividualEntry>(loaded
+				.getIndividuals().values());
+		List<IndividualEntry> actual = new ArrayList<IndividualEntry>(store
+				.getIndividuals().values());
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			assertEquals(expected.get(i).getId(), actual.get(i).getId());
+			assertEquals(expected.get(i).getAffectionStatus(), actual.get(i)
+					.getAffectionStatus());
+			assertEquals(expected.get(i).getSex(), actual.get(i).getSex());
+			assertEquals(expected.get(i).getInteractionVariable(), actual
+					.get(i).getInteractionVariable());
+			assertEquals(expected.get(i).getCovariate(), actual.get(i)
+					.getCovariate());
+		}
+
+		MarkerCatalog expectedMarkers = loaded.getMarkers();
+		MarkerCatalog markers = store.getMarkers();
+
+		assertEquals(expectedMarkers.getSize(), markers.getSize());
+		for (int m = 0; m < markers.getSize(); ++m) {
+			assertEquals(expectedMarkers.getId(m), markers.getId(m));
+			assertEquals(expectedMarkers.getChromosome(m),
+					markers.getChromosome(m));
+			assertEquals(expectedMarkers.getPosition(m), markers.getPosition(m));
+			assertEquals(expectedMarkers.getFirstAllele(m),
+					markers.getFirstAllele(m));
+			assertEquals(expectedMarkers.getSecondAllele(m),
+					markers.getSecondAllele(m));
+			assertArrayEquals(loaded.getEntry(m).getPackedGenotypes(), store
+					.getEntry(m).getPackedGenotypes());
+		}
+		assertEquals(loaded.isVariablePresentInInteractionFile(),
+				store.isVariablePresentInInteractionFile());
+	}
+
+	@Test
+	public void testStale() throws IOException {
+		assertNull(DataStoreSnapshot.open(snapshot, DataStoreSnapshot.hash(
+				dataSet.getBEDFile(), dataSet.getBIMFile(),
+				dataSet.getFAMFile(), null)));
+		assertNull(DataStoreSnapshot.open(new File(snapshot.getPath()
+				+ ".missing"), hash));
+	}
+}
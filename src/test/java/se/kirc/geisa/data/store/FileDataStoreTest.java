@@ -0,0 +1,126 @@
+package se.kirc.geisa.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
+import se.kirc.geisa.data.store.file.IndividualOrderedFileDataStore;
+import se.kirc.geisa.data.store.file.MarkerOrderedFileDataStore;
+import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
+
+public class FileDataStoreTest {
+	private Collection<IndividualEntry> individuals;
+	private MarkerCatalog markers;
+	private BinaryDataSetReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		BinaryDataSet dataSet = new BinaryDataSet(new File(
+				"./src/test/resources/test.txt"), new File(
+				"./src/test/resources/test.bed"), new File(
+				"./src/test/resources/test.bim"), new File(
+				"./src/test/resources/test.fam"));
+
+		reader = new BinaryDataSetReader(dataSet);
+		individuals = reader.loadIndividuals();
+		markers = reader.loadMarkers();
+	}
+
+	@Test
+	public void testLoadGenotypes() throws IOException {
+		DataStore memory = new MarkerOrderedMemoryDataStore(individuals, markers);
+		DataStore file = new MarkerOrderedFileDataStore(individuals, markers);
+
+		reader.loadGenotypes(memory);
+		reader.loadGenotypes(file);
+
+		for (int m = 0; m < markers.getSize(); ++m) {
+			assertArrayEquals(memory.getEntry(m).getPackedGenotypes(), file
+					.getEntry(m).getPackedGenotypes());
+			for (int i = 0; i < individuals.size(); ++i)
+				assertEquals(memory.getGenotype(i, m), file.getGenotype(i, m));
+		}
+	}
+
+	@Test
+	public void testEntries() throws IOException {
+		MarkerOrderedFileDataStore store = new MarkerOrderedFileDataStore(
+				individuals, markers);
+		byte[] packed = new byte[store.getEntrySize()];
+		byte[] read = new byte[store.getEntrySize()];
+
+		// Written out of order, the last entry is never written.
+		for (int m = markers.getSize() - 2; m >= 0; --m) {
+			for (int b = 0; b < packed.length; ++b)
+				packed[b] = (byte) (m * 31 + b);
+			store.setEntry(m, packed);
+		}
+
+		for (int m = 0; m < markers.getSize() - 1; ++m) {
+			store.readEntryInto(m, read);
+			for (int b = 0; b < packed.length; ++b)
+				assertEquals((byte) (m * 31 + b), read[b]);
+		}
+		store.readEntryInto(markers.getSize() - 1, read);
+		assertArrayEquals(new byte[read.length], read);
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		final DataStore memory = new MarkerOrderedMemoryDataStore(individuals,
+				markers);
+		final DataStore file = new MarkerOrderedFileDataStore(individuals,
+				markers);
+		final Exception[] errors = new Exception[4];
+		Thread[] threads = new Thread[errors.length];
+
+		reader.loadGenotypes(memory);
+		reader.loadGenotypes(file);
+
+		// The loaded entries are read by several threads at once.
+		for (int t = 0; t < threads.length; ++t) {
+			final int thread = t;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int r = 0; r < 100; ++r)
+							for (int m = 0; m < markers.getSize(); ++m)
+								assertArrayEquals(memory.getEntry(m)
+										.getPackedGenotypes(), file.getEntry(m)
+										.getPackedGenotypes());
+					} catch (Exception e) {
+						errors[thread] = e;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t].join();
+			assertEquals(null, errors[t]);
+		}
+	}
+
+	@Test
+	public void testSetGenotype() throws IOException {
+		IndividualOrderedFileDataStore store = new IndividualOrderedFileDataStore(
+				individuals, markers);
+
+		store.setGenotype(1, 2, Genotype.HETEROZYGOTE);
+		store.setGenotype(1, 3, Genotype.HOMOZYGOTE_SECONDARY);
+
+		assertEquals(Genotype.HETEROZYGOTE, store.getGenotype(1, 2));
+		assertEquals(Genotype.HOMOZYGOTE_SECONDARY, store.getGenotype(1, 3));
+		assertEquals(Genotype.HOMOZYGOTE_PRIMARY, store.getGenotype(1, 1));
+		assertEquals(Genotype.HOMOZYGOTE_PRIMARY, store.getGenotype(0, 2));
+	}
+}
@@ -0,0 +1,60 @@
+package se.kirc.geisa.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Sex;
+
+public class IndividualTableTest {
+	@Test
+	public void testColumns() {
+		List<IndividualEntry> individuals = new ArrayList<IndividualEntry>();
+
+		for (int i = 0; i < 3; ++i) {
+			IndividualEntry individual = new IndividualEntry("ind" + i);
+
+			individual.setAffectionStatus(AffectionStatus.values()[i]);
+			individual.setSex(Sex.values()[2 - i]);
+			individual.setInteractionVariable(i - 1);
+			individuals.add(individual);
+		}
+		individuals.get(0).setCovariate(Arrays.asList(1.5f, 2.5f));
+		individuals.get(2).setCovariate(Arrays.asList(3.5f, 4.5f));
+
+		// Only in the interaction file, without an affection status.
+		individuals.add(new IndividualEntry("extra"));
+
+		IndividualTable table = new IndividualTable(individuals);
+
+		assertEquals(4, table.getSize());
+		assertEquals(2, table.getIndex("ind2"));
+		assertEquals(-1, table.getIndex("ind3"));
+		assertEquals("extra", table.getId(3));
+		for (int i = 0; i < 3; ++i) {
+			assertEquals(AffectionStatus.values()[i].getValue(),
+					table.getAffectionStatus()[i]);
+			assertEquals(Sex.values()[2 - i].getValue(), table.getSexes()[i]);
+			assertEquals(i - 1, table.getInteractionVariables()[i]);
+		}
+		assertEquals(AffectionStatus.MISSING.getValue(),
+				table.getAffectionStatus()[3]);
+
+		// Column major covariates, NaN where unknown.
+		double[] covariates = table.getCovariates();
+
+		assertEquals(2, table.getCovariateCount());
+		assertEquals(1.5, covariates[0], 0);
+		assertTrue(Double.isNaN(covariates[1]));
+		assertEquals(3.5, covariates[2], 0);
+		assertTrue(Double.isNaN(covariates[3]));
+		assertEquals(2.5, covariates[4], 0);
+		assertEquals(4.5, covariates[6], 0);
+	}
+}
@@ -0,0 +1,81 @@
+package se.kirc.geisa.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
+import se.kirc.geisa.data.store.file.MappedBedDataStore;
+import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
+
+public class MappedBedDataStoreTest {
+	private DataStore loaded;
+	private DataStore mapped;
+
+	@Before
+	public void setUp() throws IOException {
+		File bedFile = new File("./src/test/resources/test.bed");
+		BinaryDataSet dataSet = new BinaryDataSet(new File(
+				"./src/test/resources/test.txt"), bedFile, new File(
+				"./src/test/resources/test.bim"), new File(
+				"./src/test/resources/test.fam"));
+		BinaryDataSetReader reader = new BinaryDataSetReader(dataSet);
+		Collection<IndividualEntry> individuals = reader.loadIndividuals();
+		MarkerCatalog markers = reader.loadMarkers();
+
+		loaded = new MarkerOrderedMemoryDataStore(individuals, markers);
+		reader.loadGenotypes(loaded);
+		mapped = new MappedBedDataStore(individuals, markers, bedFile);
+	}
+
+	@Test
+	public void testEntries() throws IOException {
+		for (int m = 0; m < loaded.getMarkers().getSize(); ++m) {
+			DataStoreEntry expected = loaded.getEntry(m);
+			DataStoreEntry actual = mapped.getEntry(m);
+			Iterator<Genotype> it = actual.iterator();
+
+			assertArrayEquals(expected.getPackedGenotypes(),
+					actual.getPackedGenotypes());
+			for (int i = 0; i < loaded.getIndividuals().size(); ++i) {
+				assertEquals(expected.getGenotype(i), actual.getGenotype(i));
+				assertEquals(expected.getGenotype(i), it.next());
+				assertEquals(expected.getGenotype(i), mapped.getGenotype(i, m));
+			}
+		}
+	}
+
+	@Test
+	public void testSerializedEntry() throws IOException,
+			ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+		out.writeObject(mapped.getEntry(1));
+		out.close();
+
+		DataStoreEntry entry = (DataStoreEntry) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+		assertArrayEquals(loaded.getEntry(1).getPackedGenotypes(),
+				entry.getPackedGenotypes());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testReadOnly() throws IOException {
+		mapped.setGenotype(0, 0, Genotype.HETEROZYGOTE);
+	}
+}
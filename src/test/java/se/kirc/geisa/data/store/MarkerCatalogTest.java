@@ -0,0 +1,60 @@
+package se.kirc.geisa.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.Allele;
+
+public class MarkerCatalogTest {
+	@Test
+	public void testColumns() {
+		MarkerCatalog catalog = new MarkerCatalog(1);
+
+		// Grows from the smallest capacity.
+		for (int m = 0; m < 1000; ++m)
+			assertEquals(m, catalog.add("rs" + m, m < 600 ? "1" : "X",
+					m * 10, Allele.values()[m % 5], Allele.values()[4 - m % 5]));
+		catalog.trimToSize();
+
+		assertEquals(1000, catalog.getSize());
+		for (int m = 0; m < 1000; ++m) {
+			assertEquals("rs" + m, catalog.getId(m));
+			assertEquals(m, catalog.getIndex("rs" + m));
+			assertEquals(m < 600 ? "1" : "X", catalog.getChromosome(m));
+			assertEquals(m >= 600, catalog.isXChromosome(m));
+			assertEquals(m * 10, catalog.getPosition(m));
+			assertEquals(Allele.values()[m % 5], catalog.getFirstAllele(m));
+			assertEquals(Allele.values()[4 - m % 5], catalog.getSecondAllele(m));
+		}
+		assertEquals(catalog.getChromosomeCode(0), catalog.getChromosomeCode(599));
+		assertTrue(catalog.getChromosomeCode(0) != catalog.getChromosomeCode(600));
+		assertEquals(-1, catalog.getIndex("rs1000"));
+		assertEquals(-1, catalog.getIndex("rs"));
+	}
+
+	@Test
+	public void testDuplicateId() {
+		MarkerCatalog catalog = new MarkerCatalog();
+
+		catalog.add("rs1", "x", 1, Allele.A, Allele.C);
+		catalog.add("rs1", "2", 2, Allele.G, Allele.T);
+
+		// Only the first marker of an ID is found by it.
+		assertEquals(2, catalog.getSize());
+		assertEquals(0, catalog.getIndex("rs1"));
+		assertTrue(catalog.isXChromosome(0));
+		assertFalse(catalog.isXChromosome(1));
+		assertEquals("2", catalog.getChromosome(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyChromosomes() {
+		MarkerCatalog catalog = new MarkerCatalog();
+
+		for (int c = 0; c <= MarkerCatalog.MAX_CHROMOSOMES; ++c)
+			catalog.add("rs" + c, "contig" + c, 0, Allele.A, Allele.C);
+	}
+}
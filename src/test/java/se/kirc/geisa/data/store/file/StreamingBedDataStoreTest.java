@@ -0,0 +1,154 @@
+package se.kirc.geisa.data.store.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.plink.MarkerSelection;
+import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
+
+public class StreamingBedDataStoreTest {
+	private DataStore loaded;
+	private DataStore streamed;
+	private BinaryDataSetReader reader;
+	private Collection<IndividualEntry> individuals;
+	private File bedFile;
+
+	@Before
+	public void setUp() throws IOException {
+		bedFile = new File("./src/test/resources/test.bed");
+		BinaryDataSet dataSet = new BinaryDataSet(new File(
+				"./src/test/resources/test.txt"), bedFile, new File(
+				"./src/test/resources/test.bim"), new File(
+				"./src/test/resources/test.fam"));
+		reader = new BinaryDataSetReader(dataSet);
+		individuals = reader.loadIndividuals();
+		MarkerCatalog markers = reader.loadMarkers();
+
+		loaded = new MarkerOrderedMemoryDataStore(individuals, markers);
+		reader.loadGenotypes(loaded);
+
+		// Blocks of three rows.
+		streamed = new StreamingBedDataStore(individuals, markers, bedFile,
+				3 * ((individuals.size() - 1) / 4 + 1));
+	}
+
+	@Test
+	public void testEntriesInOrder() throws IOException {
+		int index = 0;
+
+		for (DataStoreEntry entry : streamed)
+			assertArrayEquals(loaded.getEntry(index++).getPackedGenotypes(),
+					entry.getPackedGenotypes());
+		assertEquals(loaded.getMarkers().getSize(), index);
+	}
+
+	@Test
+	public void testEntriesOutOfOrder() throws IOException {
+		for (int m = loaded.getMarkers().getSize() - 1; m >= 0; m -= 2) {
+			assertArrayEquals(loaded.getEntry(m).getPackedGenotypes(),
+					streamed.getEntry(m).getPackedGenotypes());
+			for (int i = 0; i < loaded.getIndividuals().size(); ++i)
+				assertEquals(loaded.getGenotype(i, m),
+						streamed.getGenotype(i, m));
+		}
+	}
+
+	@Test
+	public void testThreadsOutOfOrder() throws Exception {
+		final StreamingBedDataStore store = (StreamingBedDataStore) streamed;
+		final int markers = loaded.getMarkers().getSize();
+		final Semaphore[] turns = { new Semaphore(1), new Semaphore(0) };
+		final Exception[] errors = new Exception[2];
+		Thread[] threads = new Thread[2];
+
+		// Each thread reads its half in order, taking turns with the other.
+		for (int t = 0; t < 2; ++t) {
+			final int half = t;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int m = half * markers / 2; m < (half + 1)
+								* markers / 2; ++m) {
+							turns[half].acquire();
+							assertArrayEquals(loaded.getEntry(m)
+									.getPackedGenotypes(), store.getEntry(m)
+									.getPackedGenotypes());
+							turns[1 - half].release();
+						}
+					} catch (Exception e) {
+						errors[half] = e;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(null, errors[0]);
+		assertEquals(null, errors[1]);
+
+		// Every row is read once, except for the rows each thread reads
+		// ahead past its half.
+		int entrySize = (individuals.size() - 1) / 4 + 1;
+		assertTrue(store.getBytesRead() >= markers * entrySize);
+		assertTrue(store.getBytesRead() <= (markers + 2 * 2) * entrySize);
+	}
+
+	@Test
+	public void testPrefetch() throws IOException {
+		StreamingBedDataStore store = (StreamingBedDataStore) streamed;
+		int entrySize = (individuals.size() - 1) / 4 + 1;
+
+		// Only the rows of the announced range are read.
+		store.prefetch(2, 6);
+		for (int m = 2; m <= 6; ++m)
+			assertArrayEquals(loaded.getEntry(m).getPackedGenotypes(), store
+					.getEntry(m).getPackedGenotypes());
+		assertEquals(5 * entrySize, store.getBytesRead());
+
+		// Past the range the rows are read ahead again.
+		assertArrayEquals(loaded.getEntry(7).getPackedGenotypes(), store
+				.getEntry(7).getPackedGenotypes());
+		assertEquals(8 * entrySize, store.getBytesRead());
+	}
+
+	@Test
+	public void testSelection() throws IOException {
+		MarkerSelection selection = new MarkerSelection();
+
+		selection.addExtract(Arrays.asList("rs0", "rs4", "rs5", "rs9"));
+		reader.setMarkerSelection(selection);
+
+		MarkerCatalog markers = reader.loadMarkers();
+		DataStore selected = new StreamingBedDataStore(individuals, markers,
+				bedFile, 3 * ((individuals.size() - 1) / 4 + 1));
+
+		assertEquals(4, markers.getSize());
+		for (int m = 0; m < markers.getSize(); ++m)
+			assertArrayEquals(loaded.getEntry(markers.getRow(m))
+					.getPackedGenotypes(), selected.getEntry(m)
+					.getPackedGenotypes());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testReadOnly() throws IOException {
+		streamed.setGenotype(0, 0, Genotype.HETEROZYGOTE);
+	}
+}
@@ -0,0 +1,98 @@
+package se.kirc.geisa.data.store.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.DataStoreEntry;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.MarkerCatalog;
+
+public class SegmentedMemoryDataStoreTest {
+	private Collection<IndividualEntry> individuals;
+	private MarkerCatalog markers;
+	private DataStore loaded;
+	private SegmentedMemoryDataStore segmented;
+
+	@Before
+	public void setUp() throws IOException {
+		BinaryDataSetReader reader = new BinaryDataSetReader(new BinaryDataSet(
+				new File("./src/test/resources/test.txt"), new File(
+						"./src/test/resources/test.bed"), new File(
+						"./src/test/resources/test.bim"), new File(
+						"./src/test/resources/test.fam")));
+
+		individuals = reader.loadIndividuals();
+		markers = reader.loadMarkers();
+		loaded = new MarkerOrderedMemoryDataStore(individuals, markers);
+		reader.loadGenotypes(loaded);
+
+		// Three entries per segment.
+		segmented = new SegmentedMemoryDataStore(individuals, markers,
+				3 * segmentedEntrySize());
+		reader.loadGenotypes(segmented);
+	}
+
+	private int segmentedEntrySize() {
+		return (individuals.size() - 1) / 4 + 1;
+	}
+
+	private void assertSameEntries(DataStore actual) throws IOException {
+		int index = 0;
+
+		for (DataStoreEntry entry : actual) {
+			assertArrayEquals(loaded.getEntry(index).getPackedGenotypes(),
+					entry.getPackedGenotypes());
+			for (int i = 0; i < individuals.size(); ++i)
+				assertEquals(loaded.getGenotype(i, index),
+						actual.getGenotype(i, index));
+			++index;
+		}
+		assertEquals(markers.getSize(), index);
+	}
+
+	@Test
+	public void testEntries() throws IOException {
+		assertSameEntries(segmented);
+	}
+
+	@Test
+	public void testSetGenotype() {
+		SegmentedMemoryDataStore store = new SegmentedMemoryDataStore(
+				individuals, markers, 1);
+		int last = markers.getSize() - 1;
+
+		store.setGenotype(5, last, Genotype.HETEROZYGOTE);
+		store.setGenotype(6, last, Genotype.UNKNOWN);
+
+		assertEquals(Genotype.HETEROZYGOTE, store.getGenotype(5, last));
+		assertEquals(Genotype.UNKNOWN, store.getGenotype(6, last));
+		assertEquals(Genotype.HOMOZYGOTE_PRIMARY, store.getGenotype(5, 0));
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+		out.writeObject(segmented);
+		out.close();
+
+		assertSameEntries((DataStore) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject());
+	}
+}
@@ -0,0 +1,362 @@
+package se.kirc.geisa.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.kirc.geisa.Messages;
+import se.kirc.geisa.ResultColumn;
+import se.kirc.geisa.TaskResult;
+import se.kirc.geisa.data.plink.AffectionStatus;
+import se.kirc.geisa.data.plink.Allele;
+import se.kirc.geisa.data.plink.Genotype;
+import se.kirc.geisa.data.plink.MarkerSelection;
+import se.kirc.geisa.data.plink.binary.BinaryDataSet;
+import se.kirc.geisa.data.plink.binary.BinaryDataSetReader;
+import se.kirc.geisa.data.store.DataStore;
+import se.kirc.geisa.data.store.IndividualEntry;
+import se.kirc.geisa.data.store.memory.MarkerOrderedMemoryDataStore;
+
+public class CoordinatorTest {
+	private static class SquareTask implements Callable<Iterable<TaskResult>>,
+			Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int value;
+
+		private SquareTask(int value) {
+			this.value = value;
+		}
+
+		public Iterable<TaskResult> call() throws Exception {
+			if (value < 0)
+				throw new IllegalArgumentException("negative");
+			List<TaskResult> results = new ArrayList<TaskResult>();
+			TaskResult result = new TaskResult(value * value, "IM", "1",
+					"rs" + value, value % 10);
+			result.set(ResultColumn.APP, value);
+			result.set(ResultColumn.AP, -value);
+			result.setAlleles(Allele.A, Allele.G, null);
+			results.add(result);
+			return results;
+		}
+	}
+
+	/**
+	 * A task holding a class which is not part of the protocol.
+	 */
+	private static class DatedTask extends SquareTask {
+		private static final long serialVersionUID = 1L;
+
+		@SuppressWarnings("unused")
+		private Date date = new Date();
+
+		private DatedTask(int value) {
+			super(value);
+		}
+	}
+
+	/**
+	 * A task holding an object which cannot be serialized.
+	 */
+	private static class LockedTask extends SquareTask {
+		private static final long serialVersionUID = 1L;
+
+		@SuppressWarnings("unused")
+		private Object lock = new Object();
+
+		private LockedTask(int value) {
+			super(value);
+		}
+	}
+
+	private final static byte[] KEY = "secret".getBytes();
+	private final static String HOST = InetAddress.getLoopbackAddress()
+			.getHostAddress();
+
+	private DataStore dataStore;
+	private BinaryDataSetReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		BinaryDataSet dataSet = new BinaryDataSet(new File(
+				"./src/test/resources/test.txt"), new File(
+				"./src/test/resources/test.bed"), new File(
+				"./src/test/resources/test.bim"), new File(
+				"./src/test/resources/test.fam"));
+		reader = new BinaryDataSetReader(dataSet);
+
+		dataStore = new MarkerOrderedMemoryDataStore(reader.loadIndividuals(),
+				reader.loadMarkers());
+		reader.loadGenotypes(dataStore);
+	}
+
+	private Thread startWorker(final int port, final DataStore dataStore,
+			final List<Exception> errors) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					new Worker(dataStore, 2, KEY).run(HOST, port);
+				} catch (Exception e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	@Test
+	public void testWorkers() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				EnumSet.of(ResultColumn.APP), 0);
+		List<Exception> errors = new ArrayList<Exception>();
+		Thread first = startWorker(coordinator.getPort(), dataStore, errors);
+		Thread second = startWorker(coordinator.getPort(), dataStore, errors);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		List<Future<Iterable<TaskResult>>> futures = new ArrayList<Future<Iterable<TaskResult>>>();
+
+		for (int i = 0; i < 100; ++i)
+			futures.add(executor.submit(coordinator.remote(new SquareTask(i))));
+		// The names are taken from the markers of the coordinator, and only
+		// the requested columns of the permutation results are sent.
+		for (int i = 0; i < 100; ++i) {
+			TaskResult result = futures.get(i).get().iterator().next();
+			assertEquals(i * i, result.getPermutation());
+			assertEquals(i % 10, result.getMarkerIndex());
+			assertEquals(dataStore.getMarkers().getId(i % 10),
+					result.getMarker());
+			assertEquals("IM", result.getInteractionMarker());
+			assertEquals(Allele.A, result.getRiskAllele());
+			assertEquals(Allele.G, result.getMajorAllele());
+			assertEquals(null, result.getMinorAllele());
+			assertEquals(i, result.get(ResultColumn.APP), 0);
+			if (i == 0)
+				assertEquals(0, result.get(ResultColumn.AP), 0);
+			else
+				assertTrue(Double.isNaN(result.get(ResultColumn.AP)));
+		}
+
+		// The errors of a task are passed back.
+		try {
+			executor.submit(coordinator.remote(new SquareTask(-1))).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getCause() instanceof RemoteTaskException);
+			assertTrue(e.getCause().getCause().getMessage()
+					.contains("IllegalArgumentException"));
+		}
+
+		coordinator.close();
+		first.join();
+		second.join();
+		assertTrue(errors.isEmpty());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testRejected() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				null, 0);
+		MarkerSelection selection = new MarkerSelection();
+
+		// A worker holding fewer markers.
+		selection.addExtract(Arrays.asList("rs0", "rs4", "rs5", "rs9"));
+		reader.setMarkerSelection(selection);
+		DataStore other = new MarkerOrderedMemoryDataStore(
+				reader.loadIndividuals(), reader.loadMarkers());
+		reader.loadGenotypes(other);
+
+		try {
+			new Worker(other, 1, KEY).run(HOST, coordinator.getPort());
+			fail();
+		} catch (IOException e) {
+			// The fingerprints differ.
+			assertEquals(Messages.getString("remote.error.rejected"),
+					e.getMessage());
+		}
+		coordinator.close();
+	}
+
+	@Test
+	public void testNoWorkers() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				null, 200);
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		// The waiting task fails, and so do the later ones.
+		for (int i = 0; i < 2; ++i)
+			try {
+				executor.submit(coordinator.remote(new SquareTask(i))).get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().getCause() instanceof IOException);
+			}
+		assertTrue(coordinator.getFailure() != null);
+		coordinator.close();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testNotAResult() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				null, 0);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		Future<Iterable<TaskResult>> future = executor.submit(coordinator
+				.remote(new SquareTask(3)));
+
+		// A worker answering its unit with another object.
+		Socket socket = new Socket(HOST, coordinator.getPort());
+		ObjectOutputStream out = new ObjectOutputStream(
+				socket.getOutputStream());
+		out.flush();
+		ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+		byte[] challenge = new byte[Protocol.NONCE_SIZE];
+		assertEquals(Protocol.MAGIC, in.readInt());
+		assertEquals(Protocol.VERSION, in.readInt());
+		in.readFully(challenge);
+		out.writeInt(Protocol.MAGIC);
+		out.writeInt(Protocol.VERSION);
+		out.write(Protocol.prove(KEY, Protocol.WORKER, challenge));
+		out.write(new byte[Protocol.NONCE_SIZE]);
+		out.writeLong(Protocol.fingerprint(dataStore));
+		out.writeInt(1);
+		out.flush();
+		assertEquals(Protocol.ACCEPTED, in.readInt());
+		in.readFully(challenge);
+		in.readLong();
+		assertTrue(in.readObject() instanceof WorkUnit);
+		out.writeObject("not a result");
+		out.flush();
+
+		// The worker is dropped and its unit given to the next one.
+		List<Exception> errors = new ArrayList<Exception>();
+		Thread worker = startWorker(coordinator.getPort(), dataStore, errors);
+		assertEquals(9, future.get().iterator().next().getPermutation());
+		coordinator.close();
+		worker.join();
+		assertTrue(errors.isEmpty());
+		socket.close();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testFingerprint() throws Exception {
+		long fingerprint = Protocol.fingerprint(dataStore);
+		IndividualEntry individual = dataStore.getIndividuals().values()
+				.iterator().next();
+		AffectionStatus status = individual.getAffectionStatus();
+
+		// The phenotypes are part of the fingerprint.
+		individual
+				.setAffectionStatus(status == AffectionStatus.AFFECTED ? AffectionStatus.UNAFFECTED
+						: AffectionStatus.AFFECTED);
+		assertTrue(fingerprint != Protocol.fingerprint(dataStore));
+		individual.setAffectionStatus(status);
+		assertEquals(fingerprint, Protocol.fingerprint(dataStore));
+
+		// So are the genotypes of the sampled entries.
+		Genotype genotype = dataStore.getGenotype(0, 0);
+		dataStore.setGenotype(0, 0,
+				genotype == Genotype.HETEROZYGOTE ? Genotype.UNKNOWN
+						: Genotype.HETEROZYGOTE);
+		assertTrue(fingerprint != Protocol.fingerprint(dataStore));
+	}
+
+	@Test
+	public void testUnauthorized() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				null, 0);
+
+		try {
+			new Worker(dataStore, 1, "guess".getBytes()).run(HOST,
+					coordinator.getPort());
+			fail();
+		} catch (IOException e) {
+			assertEquals(Messages.getString("remote.error.unauthorized"),
+					e.getMessage());
+		}
+		coordinator.close();
+	}
+
+	@Test
+	public void testForeignClass() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				null, 0);
+		List<Exception> errors = new ArrayList<Exception>();
+		Thread worker = startWorker(coordinator.getPort(), dataStore, errors);
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		// The worker refuses the unit rather than reading it, and goes on
+		// with the next one.
+		Future<Iterable<TaskResult>> refused = executor.submit(coordinator
+				.remote(new DatedTask(1)));
+		Future<Iterable<TaskResult>> next = executor.submit(coordinator
+				.remote(new SquareTask(2)));
+		try {
+			refused.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getCause() instanceof RemoteTaskException);
+			assertTrue(e.getCause().getCause().getMessage()
+					.contains("java.util.Date"));
+		}
+		assertEquals(4, next.get().iterator().next().getPermutation());
+
+		coordinator.close();
+		worker.join();
+		assertTrue(errors.isEmpty());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testNotSerializable() throws Exception {
+		Coordinator coordinator = new Coordinator(null, 0, KEY, dataStore,
+				null, 0);
+		List<Exception> errors = new ArrayList<Exception>();
+		Thread worker = startWorker(coordinator.getPort(), dataStore, errors);
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		// The unit fails on the coordinator, and the worker skips it.
+		Future<Iterable<TaskResult>> failed = executor.submit(coordinator
+				.remote(new LockedTask(1)));
+		Future<Iterable<TaskResult>> next = executor.submit(coordinator
+				.remote(new SquareTask(2)));
+		try {
+			failed.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getCause() instanceof NotSerializableException);
+		}
+		assertEquals(4, next.get().iterator().next().getPermutation());
+
+		coordinator.close();
+		worker.join();
+		assertTrue(errors.isEmpty());
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,129 @@
+package se.kirc.math.regression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FastLogisticRegressionTest {
+	private static final int OBSERVATIONS = 500;
+	private static final int VARIABLES = 3;
+
+	private double[] x;
+	private double[] y;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(4711);
+
+		x = new double[OBSERVATIONS * VARIABLES];
+		y = new double[OBSERVATIONS];
+
+		// Two binary factors and one continuous covariate.
+		for (int i = 0; i < OBSERVATIONS; ++i) {
+			x[i * VARIABLES] = random.nextInt(2);
+			x[i * VARIABLES + 1] = random.nextInt(2);
+			x[i * VARIABLES + 2] = random.nextGaussian();
+
+			double z = -0.5 + 0.8 * x[i * VARIABLES] - 0.3
+					* x[i * VARIABLES + 1] + 0.2 * x[i * VARIABLES + 2];
+			y[i] = random.nextDouble() < 1 / (1 + Math.exp(-z)) ? 1 : 0;
+		}
+	}
+
+	@Test
+	public void testSameEstimatesAsLogisticRegression() throws Exception {
+		LogisticRegressionConfiguration config = new LogisticRegressionConfigurationBuilder()
+				.withX(x, OBSERVATIONS, VARIABLES).withY(y).build();
+
+		LogisticRegression expected = new LogisticRegression(config);
+		FastLogisticRegression actual = new FastLogisticRegression(config);
+
+		assertEquals(expected.getIterations(), actual.getIterations());
+		assertEquals(expected.isLRStable(), actual.isLRStable());
+
+		for (int i = 0; i <= VARIABLES; ++i) {
+			assertEquals(expected.getBeta(i), actual.getBeta(i), 1e-10);
+			assertEquals(expected.getStandardError(i),
+					actual.getStandardError(i), 1e-10);
+			assertEquals(expected.getZ(i), actual.getZ(i), 1e-8);
+
+			for (int j = 0; j <= VARIABLES; ++j)
+				assertEquals(expected.getVarianceCovariance(i, j),
+						actual.getVarianceCovariance(i, j), 1e-10);
+		}
+	}
+
+	@Test
+	public void testNoIterations() throws Exception {
+		LogisticRegressionConfiguration config = new LogisticRegressionConfigurationBuilder()
+				.withX(x, OBSERVATIONS, VARIABLES).withY(y).withIterations(0)
+				.build();
+
+		// The starting estimates are kept, without standard errors.
+		FastLogisticRegression actual = new FastLogisticRegression(config);
+
+		assertEquals(0, actual.getIterations());
+		for (int i = 0; i <= VARIABLES; ++i) {
+			assertEquals(0, actual.getBeta(i), 0);
+			assertTrue(Double.isNaN(actual.getStandardError(i)));
+		}
+	}
+
+	@Test
+	public void testLargeStart() throws Exception {
+		// A start far out, as a diverging warm start gives, where e^z
+		// overflows for the observations of the first factor.
+		LogisticRegressionConfiguration config = new LogisticRegressionConfigurationBuilder()
+				.withX(x, OBSERVATIONS, VARIABLES).withY(y)
+				.withBeta(new double[] { 0, 800, 0, 0 }).withIterations(1)
+				.build();
+
+		FastLogisticRegression actual = new FastLogisticRegression(config);
+
+		for (int i = 0; i <= VARIABLES; ++i)
+			assertTrue(!Double.isNaN(actual.getBeta(i)));
+	}
+
+	@Test
+	public void testSingularDesign() throws Exception {
+		// Duplicate the first variable, making the information matrix
+		// singular. The SVD fallback should still give the same result.
+		for (int i = 0; i < OBSERVATIONS; ++i)
+			x[i * VARIABLES + 1] = x[i * VARIABLES];
+
+		LogisticRegressionConfiguration config = new LogisticRegressionConfigurationBuilder()
+				.withX(x, OBSERVATIONS, VARIABLES).withY(y).build();
+
+		LogisticRegression expected = new LogisticRegression(config);
+		FastLogisticRegression actual = new FastLogisticRegression(config);
+
+		for (int i = 0; i <= VARIABLES; ++i)
+			assertEquals(expected.getBeta(i), actual.getBeta(i), 1e-8);
+	}
+
+	@Test
+	public void testRefit() throws Exception {
+		LogisticRegressionConfiguration full = new LogisticRegressionConfigurationBuilder()
+				.withX(x, OBSERVATIONS, VARIABLES).withY(y).build();
+		LogisticRegressionConfiguration half = new LogisticRegressionConfigurationBuilder()
+				.withX(x, OBSERVATIONS / 2, VARIABLES).withY(y).build();
+
+		FastLogisticRegression expected = new FastLogisticRegression(full);
+		FastLogisticRegression actual = new FastLogisticRegression(half);
+
+		// Refitting replaces the previous fit completely.
+		actual.fit(full);
+		assertEquals(expected.getIterations(), actual.getIterations());
+		assertEquals(expected.getLogLikelihood(), actual.getLogLikelihood(), 0);
+		for (int i = 0; i <= VARIABLES; ++i) {
+			assertEquals(expected.getBeta(i), actual.getBeta(i), 0);
+			for (int j = 0; j <= VARIABLES; ++j)
+				assertEquals(expected.getVarianceCovariance(i, j),
+						actual.getVarianceCovariance(i, j), 0);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package se.kirc.math.regression;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SaturatedLogisticRegressionTest {
+	// Cells A0B0, A1B0, A0B1, A1B1.
+	private static final int[] CASES = { 40, 25, 31, 52 };
+	private static final int[] CONTROLS = { 95, 30, 44, 27 };
+
+	/**
+	 * Expand the cell counts to individual observations with the indicator
+	 * variables of the given design.
+	 */
+	private static LogisticRegressionConfiguration expand(double[][] design) {
+		int observations = 0;
+
+		for (int c = 0; c < CASES.length; ++c)
+			observations += CASES[c] + CONTROLS[c];
+
+		double[] x = new double[observations * 3];
+		double[] y = new double[observations];
+
+		for (int c = 0, i = 0; c < CASES.length; ++c)
+			for (int n = 0; n < CASES[c] + CONTROLS[c]; ++n, ++i) {
+				System.arraycopy(design[c], 0, x, i * 3, 3);
+				y[i] = n < CASES[c] ? 1 : 0;
+			}
+
+		return new LogisticRegressionConfigurationBuilder()
+				.withX(x, observations, 3).withY(y)
+				.withConvergenceThreshold(1e-12).build();
+	}
+
+	private static void assertSameModel(LogisticRegressionModel expected,
+			LogisticRegressionModel actual) {
+		for (int i = 0; i < 4; ++i) {
+			assertEquals(expected.getBeta(i), actual.getBeta(i), 1e-9);
+			assertEquals(expected.getStandardError(i),
+					actual.getStandardError(i), 1e-9);
+
+			for (int j = 0; j < 4; ++j)
+				assertEquals(expected.getVarianceCovariance(i, j),
+						actual.getVarianceCovariance(i, j), 1e-9);
+		}
+	}
+
+	@Test
+	public void testCellReference() throws Exception {
+		double[][] design = { { 0, 0, 0 }, { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } };
+
+		assertSameModel(new FastLogisticRegression(expand(design)),
+				SaturatedLogisticRegression.cellReference(CASES, CONTROLS));
+	}
+
+	@Test
+	public void testFactorial() throws Exception {
+		double[][] design = { { 0, 0, 0 }, { 1, 0, 0 }, { 0, 1, 0 }, { 1, 1, 1 } };
+
+		assertSameModel(new FastLogisticRegression(expand(design)),
+				SaturatedLogisticRegression.factorial(CASES, CONTROLS));
+	}
+}